@@ -0,0 +1,216 @@
+package com.example.automaticirrigationsystem.service;
+
+import com.example.automaticirrigationsystem.domain.Plot;
+import com.example.automaticirrigationsystem.domain.Sensor;
+import com.example.automaticirrigationsystem.domain.Slot;
+import com.example.automaticirrigationsystem.domain.enumeration.CropType;
+import com.example.automaticirrigationsystem.domain.enumeration.Status;
+import com.example.automaticirrigationsystem.dto.PlotDTO;
+import com.example.automaticirrigationsystem.dto.PlotEventDTO;
+import com.example.automaticirrigationsystem.repository.PlotEventOutboxRepository;
+import com.example.automaticirrigationsystem.repository.PlotIrrigationState;
+import com.example.automaticirrigationsystem.repository.PlotRepository;
+import com.example.automaticirrigationsystem.service.mapper.PlotMapperImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.core.task.SyncTaskExecutor;
+
+/**
+ * Benchmarks of {@link IrrigationService#startIrrigate} and {@link IrrigationService#endIrrigate}
+ * against an in-memory repository, outside of any transaction: what is measured is the service
+ * itself, the state cache, the alert index, the event publishing and the mapping of the result.
+ *
+ * <p>An operation starts then ends the irrigation of the next plot, so that every plot is back to
+ * its initial state, and each start finds the cached state of the plot evicted by the last end.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IrrigationServiceBenchmark {
+
+  @Param({"1000"})
+  private int plotsCount;
+
+  @Param({"4", "64"})
+  private int slotsCount;
+
+  private final Map<Long, Plot> plots = new HashMap<>();
+
+  private IrrigationService irrigationService;
+
+  private long nextPlotId;
+
+  @Setup
+  public void setUp() {
+    for (long plotId = 1; plotId <= plotsCount; plotId++) {
+      plots.put(plotId, createPlot(plotId));
+    }
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    PlotRepository plotRepository = inMemoryPlotRepository();
+    PlotStateCache plotStateCache = new PlotStateCache(plotRepository, meterRegistry);
+    plotStateCache.registerMeters();
+    PlotAlertIndex plotAlertIndex = new PlotAlertIndex(plotRepository, meterRegistry);
+    plotAlertIndex.rebuild();
+    PlotEventBroadcaster plotEventBroadcaster = new PlotEventBroadcaster(
+        new PlotEventOutboxRepository(null) {
+          @Override
+          public void appendAll(List<PlotEventDTO> events) {
+            // the outbox write is left to the database benchmarks
+          }
+        }, new SyncTaskExecutor(), meterRegistry);
+    plotEventBroadcaster.registerMeters();
+    WaterSupply waterSupply = new WaterSupply(plotRepository, meterRegistry);
+    waterSupply.start();
+    PlotLocks plotLocks = new PlotLocks(meterRegistry);
+    plotLocks.start();
+    // only asked whether a sensor is being called, the plots have their sensor UP
+    SensorCallingScheduler sensorCallingScheduler = new SensorCallingScheduler(plotRepository,
+        null, plotStateCache, plotAlertIndex, plotEventBroadcaster, waterSupply, plotLocks, null,
+        null, null, meterRegistry);
+    // the water supply has no capacity: no queued plot is started in a transaction of its own
+    irrigationService = new IrrigationService(plotRepository, null, new PlotMapperImpl(),
+        sensorCallingScheduler, plotStateCache, plotAlertIndex, plotEventBroadcaster,
+        waterSupply, plotLocks, null);
+  }
+
+  @Benchmark
+  public void startThenEndIrrigate(Blackhole blackhole) {
+    Long plotId = nextPlotId++ % plotsCount + 1;
+    Optional<PlotDTO> started = irrigationService.startIrrigate(plotId);
+    blackhole.consume(started);
+    blackhole.consume(irrigationService.endIrrigate(plotId));
+  }
+
+  /**
+   * A plot repository serving the plots of the benchmark from memory, with the queries the
+   * irrigation service and its collaborators run.
+   */
+  @SuppressWarnings("unchecked")
+  private PlotRepository inMemoryPlotRepository() {
+    return (PlotRepository) Proxy.newProxyInstance(PlotRepository.class.getClassLoader(),
+        new Class<?>[]{PlotRepository.class}, (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "findById":
+              return Optional.ofNullable(plots.get((Long) args[0]));
+            case "findIrrigationStateByIdIn":
+              return ((Collection<Long>) args[0]).stream()
+                  .map(plots::get)
+                  .filter(Objects::nonNull)
+                  .map(InMemoryPlotState::new)
+                  .collect(Collectors.toList());
+            case "findIdsByHasAlertIsTrue":
+            case "findIrrigatedDemands":
+              return List.of();
+            default:
+              throw new UnsupportedOperationException(method.getName());
+          }
+        });
+  }
+
+  private Plot createPlot(long plotId) {
+    Plot plot = new Plot();
+    plot.setId(plotId);
+    plot.setPlotCode("benchmark-plot-" + plotId);
+    plot.setPlotLength(10D);
+    plot.setPlotWidth(10D);
+    plot.setIsIrrigated(false);
+    plot.setSensorCallCount(0);
+    plot.setLastSensorCallTime("");
+    plot.setHasAlert(false);
+    plot.setStartIrrigationTime("");
+    plot.setLastIrrigationTime("");
+    plot.setWaterAmount(100);
+    plot.setCropType(CropType.BEANS);
+    plot.setVersion(0L);
+    plot.setPlotSensor(new Sensor(plotId, "benchmark-sensor-" + plotId, Status.UP, plot));
+    for (long i = 0; i < slotsCount; i++) {
+      Slot slot = new Slot();
+      slot.setId(plotId * slotsCount + i);
+      slot.setStatus(Status.DOWN);
+      slot.setPlot(plot);
+      plot.getPlotTimerSlots().add(slot);
+    }
+    return plot;
+  }
+
+  /**
+   * The irrigation state of a plot, read from the plot as the projection query would.
+   */
+  private static final class InMemoryPlotState implements PlotIrrigationState {
+
+    private final Plot plot;
+
+    private InMemoryPlotState(Plot plot) {
+      this.plot = plot;
+    }
+
+    @Override
+    public Long getId() {
+      return plot.getId();
+    }
+
+    @Override
+    public Integer getSensorCallCount() {
+      return plot.getSensorCallCount();
+    }
+
+    @Override
+    public Status getSensorStatus() {
+      return plot.getPlotSensor().getStatus();
+    }
+
+    @Override
+    public Integer getSlotsCount() {
+      return plot.getPlotTimerSlots().size();
+    }
+
+    @Override
+    public Long getSensorId() {
+      return plot.getPlotSensor().getId();
+    }
+
+    @Override
+    public Boolean getIsIrrigated() {
+      return plot.getIsIrrigated();
+    }
+
+    @Override
+    public Boolean getHasAlert() {
+      return plot.getHasAlert();
+    }
+
+    @Override
+    public String getLastSensorCallTime() {
+      return plot.getLastSensorCallTime();
+    }
+
+    @Override
+    public String getStartIrrigationTime() {
+      return plot.getStartIrrigationTime();
+    }
+  }
+}
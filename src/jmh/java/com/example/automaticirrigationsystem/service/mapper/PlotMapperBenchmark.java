@@ -0,0 +1,78 @@
+package com.example.automaticirrigationsystem.service.mapper;
+
+import com.example.automaticirrigationsystem.domain.Plot;
+import com.example.automaticirrigationsystem.domain.Sensor;
+import com.example.automaticirrigationsystem.domain.Slot;
+import com.example.automaticirrigationsystem.domain.enumeration.CropType;
+import com.example.automaticirrigationsystem.domain.enumeration.Status;
+import com.example.automaticirrigationsystem.dto.PlotDTO;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the {@link PlotMapper} on plots with many slots, as done for every plot returned by
+ * the REST API.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PlotMapperBenchmark {
+
+  @Param({"10", "100", "1000"})
+  private int slotsCount;
+
+  private final PlotMapper plotMapper = new PlotMapperImpl();
+
+  private Plot plot;
+
+  private PlotDTO plotDTO;
+
+  @Setup
+  public void setUp() {
+    plot = new Plot();
+    plot.setId(1L);
+    plot.setPlotCode("benchmark-plot");
+    plot.setPlotLength(10D);
+    plot.setPlotWidth(10D);
+    plot.setIsIrrigated(false);
+    plot.setSensorCallCount(0);
+    plot.setLastSensorCallTime("");
+    plot.setHasAlert(false);
+    plot.setStartIrrigationTime("");
+    plot.setLastIrrigationTime("");
+    plot.setWaterAmount(100);
+    plot.setCropType(CropType.RICE);
+    plot.setPlotSensor(new Sensor(1L, "benchmark-sensor", Status.UP, plot));
+    for (long slotId = 1; slotId <= slotsCount; slotId++) {
+      Slot slot = new Slot();
+      slot.setId(slotId);
+      slot.setStatus(Status.DOWN);
+      slot.setPlot(plot);
+      plot.getPlotTimerSlots().add(slot);
+    }
+    plotDTO = plotMapper.toDto(plot);
+  }
+
+  @Benchmark
+  public PlotDTO toDto() {
+    return plotMapper.toDto(plot);
+  }
+
+  @Benchmark
+  public Plot toEntity() {
+    return plotMapper.toEntity(plotDTO);
+  }
+}
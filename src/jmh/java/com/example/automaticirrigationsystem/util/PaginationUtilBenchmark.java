@@ -0,0 +1,57 @@
+package com.example.automaticirrigationsystem.util;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * Benchmarks of the {@link PaginationUtil} headers written on every page of plots or sensors. The
+ * uri builder is created on each call, as it is from the current request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PaginationUtilBenchmark {
+
+  private static final String REQUEST_URI =
+      "http://localhost:8080/api/plots?page=0&size=20&sort=id,asc";
+
+  private static final long TOTAL_ELEMENTS = 100_000;
+
+  /**
+   * The first page has no previous link, the others have both.
+   */
+  @Param({"0", "2500"})
+  private int pageNumber;
+
+  private Page<Long> page;
+
+  @Setup
+  public void setUp() {
+    page = new PageImpl<>(List.of(), PageRequest.of(pageNumber, 20), TOTAL_ELEMENTS);
+  }
+
+  @Benchmark
+  public HttpHeaders generatePaginationHttpHeaders() {
+    return PaginationUtil.generatePaginationHttpHeaders(
+        UriComponentsBuilder.fromUriString(REQUEST_URI), page);
+  }
+}
@@ -0,0 +1,16 @@
+package com.example.automaticirrigationsystem.aop.transition;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks the parameter of a {@link PlotTransition} method holding the plot id, or the collection of
+ * plot ids, the method writes.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface PlotId {
+
+}
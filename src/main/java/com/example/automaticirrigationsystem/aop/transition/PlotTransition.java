@@ -0,0 +1,17 @@
+package com.example.automaticirrigationsystem.aop.transition;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * A custom annotation as a pointcut, thus wherever this annotation appears on a method, the plot
+ * transition aspect runs that method holding the locks of the plots given by its {@link PlotId}
+ * parameter, and runs it again if it conflicts with another write of those plots.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface PlotTransition {
+
+}
@@ -0,0 +1,83 @@
+package com.example.automaticirrigationsystem.aop.transition;
+
+import com.example.automaticirrigationsystem.service.PlotLocks;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs the plot transitions through the {@link PlotLocks}. The aspect comes first, around the
+ * transaction of the method, so that the locks are held until the transaction completes and a
+ * conflicting transaction is run again from the start.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RequiredArgsConstructor
+public class PlotTransitionAspect {
+
+  private final PlotLocks plotLocks;
+
+  /**
+   * Advice that runs a plot transition holding the locks of its plots.
+   *
+   * @param joinPoint join point for advice.
+   * @return result.
+   * @throws Throwable if an error occurs
+   */
+  @Around("execution(* *(..)) && @annotation("
+      + "com.example.automaticirrigationsystem.aop.transition.PlotTransition)")
+  public Object lockAround(ProceedingJoinPoint joinPoint) throws Throwable {
+    try {
+      return plotLocks.runTransition(plotIds(joinPoint), () -> {
+        try {
+          return joinPoint.proceed();
+        } catch (RuntimeException | Error e) {
+          throw e;
+        } catch (Throwable e) {
+          throw new UndeclaredThrowableException(e);
+        }
+      });
+    } catch (UndeclaredThrowableException e) {
+      throw e.getUndeclaredThrowable();
+    }
+  }
+
+  private static List<Long> plotIds(ProceedingJoinPoint joinPoint) {
+    Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+    Annotation[][] annotations = method.getParameterAnnotations();
+    Object[] args = joinPoint.getArgs();
+    List<Long> plotIds = new ArrayList<>();
+    for (int i = 0; i < args.length; i++) {
+      for (Annotation annotation : annotations[i]) {
+        if (annotation instanceof PlotId) {
+          addPlotIds(plotIds, args[i]);
+        }
+      }
+    }
+    return plotIds;
+  }
+
+  private static void addPlotIds(List<Long> plotIds, Object arg) {
+    if (arg instanceof Long) {
+      plotIds.add((Long) arg);
+    } else if (arg instanceof Collection) {
+      for (Object plotId : (Collection<?>) arg) {
+        if (plotId instanceof Long) {
+          plotIds.add((Long) plotId);
+        }
+      }
+    }
+  }
+}
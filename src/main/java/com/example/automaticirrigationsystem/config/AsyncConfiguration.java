@@ -1,10 +1,176 @@
 package com.example.automaticirrigationsystem.config;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionHandler;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.aop.interceptor.AsyncUncaughtExceptionHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.AsyncConfigurer;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
 @Configuration
 @EnableAsync
-public class AsyncConfiguration {
+@EnableConfigurationProperties(AsyncProperties.class)
+@Slf4j
+@RequiredArgsConstructor
+public class AsyncConfiguration implements AsyncConfigurer {
 
+  private final AsyncProperties asyncProperties;
+  private final MeterRegistry meterRegistry;
+
+  @Value("${tries.scheduler-pool-size:2}")
+  private int sensorRetrySchedulerPoolSize;
+
+  /**
+   * Timer used to re-call DOWN sensors. Pending calls are kept as delayed entries, so a couple of
+   * threads are enough to track any number of plots waiting for their sensor. Nothing else runs
+   * on it, so that the sensor calls are never delayed by the maintenance jobs.
+   *
+   * @return the sensor retry scheduler.
+   */
+  @Bean
+  public ThreadPoolTaskScheduler sensorRetryScheduler() {
+    return instrumentedScheduler("sensorRetryScheduler", "sensor-retry-",
+        sensorRetrySchedulerPoolSize);
+  }
+
+  /**
+   * Timer of the background maintenance jobs: the reading rollups, the archive syncs, the outbox
+   * relay, the sensor status flushes and the irrigation schedule. Apart from the sensor retry
+   * scheduler, so that a long rollup or sync never delays the sensor calls.
+   *
+   * @return the maintenance scheduler.
+   */
+  @Bean
+  public ThreadPoolTaskScheduler maintenanceScheduler() {
+    return instrumentedScheduler("maintenanceScheduler", "maintenance-",
+        asyncProperties.getMaintenanceSchedulerSize());
+  }
+
+  /**
+   * Executor doing the actual sensor calls, so the retry scheduler threads only keep time.
+   *
+   * @return the sensor retry executor.
+   */
+  @Bean
+  public ThreadPoolTaskExecutor sensorRetryExecutor() {
+    return instrumentedExecutor("sensorRetryExecutor", "sensor-call-",
+        asyncProperties.getSensorRetry());
+  }
+
+  /**
+   * Executor for {@code @Async} methods and other background work.
+   *
+   * @return the background executor.
+   */
+  @Bean
+  public ThreadPoolTaskExecutor taskExecutor() {
+    return instrumentedExecutor("taskExecutor", "background-", asyncProperties.getBackground());
+  }
+
+  /**
+   * Executor writing the plot events to the event stream subscribers, apart from the background
+   * work so that a client slow to read never holds up anything else.
+   *
+   * @return the plot event executor.
+   */
+  @Bean
+  public ThreadPoolTaskExecutor plotEventExecutor() {
+    return instrumentedExecutor("plotEventExecutor", "plot-event-", asyncProperties.getEvents());
+  }
+
+  @Override
+  public Executor getAsyncExecutor() {
+    return taskExecutor();
+  }
+
+  @Override
+  public AsyncUncaughtExceptionHandler getAsyncUncaughtExceptionHandler() {
+    return (ex, method, params) -> log.error("Exception in async method {}() with cause = '{}'",
+        method.getName(), ex.getMessage(), ex);
+  }
+
+  /**
+   * Builds a bounded executor publishing its queue depth, active threads and rejected tasks.
+   */
+  private ThreadPoolTaskExecutor instrumentedExecutor(String name, String threadNamePrefix,
+      AsyncProperties.Pool pool) {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(pool.getCoreSize());
+    executor.setMaxPoolSize(pool.getMaxSize());
+    executor.setQueueCapacity(pool.getQueueSize());
+    executor.setThreadNamePrefix(threadNamePrefix);
+
+    Counter rejected = Counter.builder("async.executor.rejected")
+        .description("Tasks refused because the executor queue was full")
+        .tag("name", name)
+        .register(meterRegistry);
+    RejectedExecutionHandler policy = pool.getRejectionPolicy().handler();
+    executor.setRejectedExecutionHandler((task, threadPool) -> {
+      rejected.increment();
+      log.warn("Executor {} is saturated, applying {} to the task", name,
+          pool.getRejectionPolicy());
+      policy.rejectedExecution(task, threadPool);
+    });
+
+    // read from the pool Spring creates once the bean is initialized, not from an earlier one
+    Gauge.builder("async.executor.queue.depth", executor, AsyncConfiguration::queueDepth)
+        .description("Tasks waiting in the executor queue")
+        .tag("name", name)
+        .register(meterRegistry);
+    Gauge.builder("async.executor.active", executor, ThreadPoolTaskExecutor::getActiveCount)
+        .description("Threads currently running a task")
+        .tag("name", name)
+        .register(meterRegistry);
+    return executor;
+  }
+
+  /**
+   * Builds a scheduler publishing its scheduled tasks and active threads.
+   */
+  private ThreadPoolTaskScheduler instrumentedScheduler(String name, String threadNamePrefix,
+      int poolSize) {
+    ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+    scheduler.setPoolSize(poolSize);
+    scheduler.setThreadNamePrefix(threadNamePrefix);
+    scheduler.setRemoveOnCancelPolicy(true);
+    scheduler.setWaitForTasksToCompleteOnShutdown(false);
+
+    Gauge.builder("async.scheduler.queue.depth", scheduler, AsyncConfiguration::queueDepth)
+        .description("Tasks scheduled and waiting for their time or a thread")
+        .tag("name", name)
+        .register(meterRegistry);
+    Gauge.builder("async.scheduler.active", scheduler, ThreadPoolTaskScheduler::getActiveCount)
+        .description("Threads currently running a task")
+        .tag("name", name)
+        .register(meterRegistry);
+    return scheduler;
+  }
+
+  private static int queueDepth(ThreadPoolTaskScheduler scheduler) {
+    try {
+      return scheduler.getScheduledThreadPoolExecutor().getQueue().size();
+    } catch (IllegalStateException e) {
+      // not initialized yet, or shut down
+      return 0;
+    }
+  }
+
+  private static int queueDepth(ThreadPoolTaskExecutor executor) {
+    try {
+      return executor.getThreadPoolExecutor().getQueue().size();
+    } catch (IllegalStateException e) {
+      // not initialized yet, or shut down
+      return 0;
+    }
+  }
 }
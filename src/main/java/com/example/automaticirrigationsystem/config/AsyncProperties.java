@@ -0,0 +1,69 @@
+package com.example.automaticirrigationsystem.config;
+
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Sizing of the application executors, bound from the {@code async.*} properties.
+ */
+@Data
+@ConfigurationProperties(prefix = "async")
+public class AsyncProperties {
+
+  /**
+   * Executor running the sensor re-calls fired by the sensor retry scheduler.
+   */
+  private Pool sensorRetry = new Pool();
+
+  /**
+   * Executor backing {@code @Async} methods and any other background work.
+   */
+  private Pool background = new Pool();
+
+  /**
+   * Executor writing the plot events to the subscribers of the event stream.
+   */
+  private Pool events = new Pool();
+
+  /**
+   * Threads of the scheduler running the background maintenance jobs.
+   */
+  private int maintenanceSchedulerSize = 2;
+
+  @Data
+  public static class Pool {
+
+    private int coreSize = 2;
+
+    private int maxSize = 4;
+
+    private int queueSize = 500;
+
+    private RejectionPolicy rejectionPolicy = RejectionPolicy.CALLER_RUNS;
+  }
+
+  /**
+   * What an executor does with a task once its queue is full and all its threads are busy.
+   */
+  public enum RejectionPolicy {
+    ABORT,
+    CALLER_RUNS,
+    DISCARD,
+    DISCARD_OLDEST;
+
+    public RejectedExecutionHandler handler() {
+      switch (this) {
+        case ABORT:
+          return new ThreadPoolExecutor.AbortPolicy();
+        case DISCARD:
+          return new ThreadPoolExecutor.DiscardPolicy();
+        case DISCARD_OLDEST:
+          return new ThreadPoolExecutor.DiscardOldestPolicy();
+        default:
+          return new ThreadPoolExecutor.CallerRunsPolicy();
+      }
+    }
+  }
+}
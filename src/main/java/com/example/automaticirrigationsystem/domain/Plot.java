@@ -20,6 +20,7 @@ import javax.persistence.OneToMany;
 import javax.persistence.OneToOne;
 import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
+import javax.persistence.Version;
 import javax.validation.constraints.NotNull;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
@@ -38,6 +39,11 @@ import org.hibernate.Hibernate;
 @RequiredArgsConstructor
 public class Plot implements Serializable {
 
+  /**
+   * The maximum number of slots of a plot, however it is created or configured.
+   */
+  public static final int MAX_SLOTS = 1000;
+
   @Id
   @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sequenceGenerator")
   @SequenceGenerator(name = "sequenceGenerator")
@@ -81,6 +87,13 @@ public class Plot implements Serializable {
   @Column(name = "crop_type")
   private CropType cropType;
 
+  /**
+   * Bumped on every write, a write based on an older version of the plot fails.
+   */
+  @Version
+  @Column(name = "version", nullable = false)
+  private Long version;
+
   @OneToOne(cascade = CascadeType.ALL)
   @JoinColumn(unique = true, name = "sensor_id", referencedColumnName = "id")
   @JsonIgnoreProperties(value = {"plot"}, allowSetters = true)
@@ -1,9 +1,19 @@
 package com.example.automaticirrigationsystem.domain.enumeration;
 
 /**
- * The CropType enumeration.
+ * The CropType enumeration, with the time between two irrigations of the crop.
  */
 public enum CropType {
-  RICE,
-  BEANS,
+  RICE(43_200_000L),
+  BEANS(86_400_000L);
+
+  private final long intervalMillis;
+
+  CropType(long intervalMillis) {
+    this.intervalMillis = intervalMillis;
+  }
+
+  public long getIntervalMillis() {
+    return intervalMillis;
+  }
 }
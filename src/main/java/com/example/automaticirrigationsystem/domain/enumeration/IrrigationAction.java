@@ -0,0 +1,9 @@
+package com.example.automaticirrigationsystem.domain.enumeration;
+
+/**
+ * The IrrigationAction enumeration.
+ */
+public enum IrrigationAction {
+  START,
+  END,
+}
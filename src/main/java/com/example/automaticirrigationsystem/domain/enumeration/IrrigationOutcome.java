@@ -0,0 +1,17 @@
+package com.example.automaticirrigationsystem.domain.enumeration;
+
+/**
+ * The IrrigationOutcome enumeration, what became of a plot in a batch of irrigation requests.
+ */
+public enum IrrigationOutcome {
+  STARTED,
+  ENDED,
+  ALREADY_STARTED,
+  QUEUED,
+  NOT_STARTED,
+  SENSOR_DOWN,
+  SENSOR_BEING_CALLED,
+  ALERT_ON,
+  NO_SENSOR,
+  NOT_FOUND,
+}
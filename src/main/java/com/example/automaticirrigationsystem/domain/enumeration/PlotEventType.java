@@ -0,0 +1,12 @@
+package com.example.automaticirrigationsystem.domain.enumeration;
+
+/**
+ * The PlotEventType enumeration.
+ */
+public enum PlotEventType {
+  IRRIGATION_STARTED,
+  IRRIGATION_ENDED,
+  SENSOR_CALLED,
+  ALERT_RAISED,
+  ALERT_CLEARED,
+}
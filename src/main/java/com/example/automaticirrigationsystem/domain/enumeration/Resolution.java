@@ -0,0 +1,31 @@
+package com.example.automaticirrigationsystem.domain.enumeration;
+
+/**
+ * The Resolution enumeration, the width of the buckets the sensor readings are rolled up into.
+ */
+public enum Resolution {
+  MINUTE(60_000L),
+  HOUR(3_600_000L),
+  DAY(86_400_000L);
+
+  private final long millis;
+
+  Resolution(long millis) {
+    this.millis = millis;
+  }
+
+  public long getMillis() {
+    return millis;
+  }
+
+  /**
+   * Get the start of the bucket holding an instant, the instant minus its floor modulo the bucket
+   * width, as the roll-up statements compute it.
+   *
+   * @param epochMillis the instant.
+   * @return the epoch millis of the start of the bucket, buckets are aligned on the UTC epoch.
+   */
+  public long bucketStart(long epochMillis) {
+    return epochMillis - Math.floorMod(epochMillis, millis);
+  }
+}
@@ -0,0 +1,19 @@
+package com.example.automaticirrigationsystem.dto;
+
+import java.io.Serializable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A DTO for a row rejected by a bulk import.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportErrorDTO implements Serializable {
+
+  private long row;
+
+  private String message;
+}
@@ -0,0 +1,19 @@
+package com.example.automaticirrigationsystem.dto;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Data;
+
+/**
+ * A DTO for the outcome of a bulk import, the rejected rows are listed up to a limit.
+ */
+@Data
+public class ImportResultDTO implements Serializable {
+
+  private long imported;
+
+  private long rejected;
+
+  private List<ImportErrorDTO> errors = new ArrayList<>();
+}
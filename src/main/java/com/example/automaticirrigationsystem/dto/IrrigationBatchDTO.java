@@ -0,0 +1,25 @@
+package com.example.automaticirrigationsystem.dto;
+
+import com.example.automaticirrigationsystem.domain.enumeration.IrrigationAction;
+import java.util.ArrayList;
+import java.util.List;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import lombok.Data;
+
+/**
+ * A DTO to start or end the irrigation of many plots at once.
+ */
+@Data
+public class IrrigationBatchDTO {
+
+  public static final int MAX_PLOTS = 10000;
+
+  @NotNull
+  private IrrigationAction action;
+
+  @NotEmpty
+  @Size(max = MAX_PLOTS)
+  private List<@NotNull Long> plotIds = new ArrayList<>();
+}
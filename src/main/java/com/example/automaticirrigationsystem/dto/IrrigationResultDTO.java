@@ -0,0 +1,20 @@
+package com.example.automaticirrigationsystem.dto;
+
+import com.example.automaticirrigationsystem.domain.enumeration.IrrigationOutcome;
+import java.io.Serializable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A DTO for the outcome of one plot in a batch of irrigation requests.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IrrigationResultDTO implements Serializable {
+
+  private Long plotId;
+
+  private IrrigationOutcome outcome;
+}
@@ -1,9 +1,12 @@
 package com.example.automaticirrigationsystem.dto;
 
+import com.example.automaticirrigationsystem.domain.Plot;
 import com.example.automaticirrigationsystem.domain.enumeration.CropType;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
+import javax.validation.constraints.Max;
 import javax.validation.constraints.NotNull;
+import javax.validation.constraints.PositiveOrZero;
 import lombok.Data;
 
 @Data
@@ -19,5 +22,7 @@ public class PlotConfigDTO {
   private int waterAmount;
 
   @NotNull
+  @PositiveOrZero
+  @Max(Plot.MAX_SLOTS)
   private int slotsCount;
 }
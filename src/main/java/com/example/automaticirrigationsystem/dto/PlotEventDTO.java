@@ -0,0 +1,34 @@
+package com.example.automaticirrigationsystem.dto;
+
+import com.example.automaticirrigationsystem.domain.enumeration.PlotEventType;
+import java.io.Serializable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A DTO for a change of the state of a plot, pushed to the event stream subscribers.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PlotEventDTO implements Serializable {
+
+  private Long plotId;
+
+  private PlotEventType type;
+
+  /**
+   * Epoch millis of the change.
+   */
+  private long time;
+
+  /**
+   * The sensor calls made so far, set on {@link PlotEventType#SENSOR_CALLED} events only.
+   */
+  private Integer sensorCallCount;
+
+  public PlotEventDTO(Long plotId, PlotEventType type) {
+    this(plotId, type, System.currentTimeMillis(), null);
+  }
+}
@@ -0,0 +1,42 @@
+package com.example.automaticirrigationsystem.dto;
+
+import com.example.automaticirrigationsystem.domain.Plot;
+import com.example.automaticirrigationsystem.domain.enumeration.CropType;
+import com.example.automaticirrigationsystem.domain.enumeration.Status;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
+import javax.validation.constraints.PositiveOrZero;
+import lombok.Data;
+
+/**
+ * A DTO for one row of a bulk import: a plot, its optional sensor and the number of its slots.
+ */
+@Data
+public class PlotImportDTO {
+
+  @NotBlank
+  private String plotCode;
+
+  @NotNull
+  @Positive
+  private Double plotLength;
+
+  @NotNull
+  @Positive
+  private Double plotWidth;
+
+  private CropType cropType;
+
+  @PositiveOrZero
+  private Integer waterAmount;
+
+  @PositiveOrZero
+  @Max(Plot.MAX_SLOTS)
+  private Integer slotsCount;
+
+  private String sensorCode;
+
+  private Status sensorStatus;
+}
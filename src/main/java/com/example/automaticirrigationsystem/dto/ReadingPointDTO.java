@@ -0,0 +1,24 @@
+package com.example.automaticirrigationsystem.dto;
+
+import java.io.Serializable;
+import lombok.Data;
+
+/**
+ * A DTO for the aggregate of the sensor readings taken within one bucket.
+ */
+@Data
+public class ReadingPointDTO implements Serializable {
+
+  /**
+   * Epoch millis of the start of the bucket.
+   */
+  private long time;
+
+  private long count;
+
+  private Double average;
+
+  private Double min;
+
+  private Double max;
+}
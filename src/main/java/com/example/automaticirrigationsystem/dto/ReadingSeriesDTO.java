@@ -0,0 +1,24 @@
+package com.example.automaticirrigationsystem.dto;
+
+import com.example.automaticirrigationsystem.domain.enumeration.Resolution;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Data;
+
+/**
+ * A DTO for the sensor readings of a plot over a time range, at one resolution.
+ */
+@Data
+public class ReadingSeriesDTO implements Serializable {
+
+  private Long plotId;
+
+  private Resolution resolution;
+
+  private long from;
+
+  private long to;
+
+  private List<ReadingPointDTO> points = new ArrayList<>();
+}
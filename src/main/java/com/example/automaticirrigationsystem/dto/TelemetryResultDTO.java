@@ -0,0 +1,15 @@
+package com.example.automaticirrigationsystem.dto;
+
+import java.io.Serializable;
+import lombok.Data;
+
+/**
+ * A DTO for the outcome of a batch of sensor readings.
+ */
+@Data
+public class TelemetryResultDTO implements Serializable {
+
+  private long accepted;
+
+  private long rejected;
+}
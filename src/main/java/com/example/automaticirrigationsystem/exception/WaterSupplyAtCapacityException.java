@@ -0,0 +1,9 @@
+package com.example.automaticirrigationsystem.exception;
+
+public class WaterSupplyAtCapacityException extends
+    RuntimeException {
+
+  public WaterSupplyAtCapacityException(String s) {
+    super(s);
+  }
+}
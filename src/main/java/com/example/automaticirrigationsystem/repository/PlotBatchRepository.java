@@ -0,0 +1,147 @@
+package com.example.automaticirrigationsystem.repository;
+
+import com.example.automaticirrigationsystem.domain.enumeration.Status;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * JDBC repository for the {@link com.example.automaticirrigationsystem.domain.Plot} updates
+ * touching many plots at once, written in batches instead of one entity at a time. Every statement
+ * bumps the version of the plots it writes, as an entity write would.
+ */
+@Repository
+@Transactional
+@RequiredArgsConstructor
+public class PlotBatchRepository {
+
+  private static final String UPDATE_SENSOR_CALL = "update plot set sensor_call_count = ?,"
+      + " last_sensor_call_time = ?, has_alert = ?, version = version + 1 where id = ?";
+
+  private static final String UPDATE_SLOTS_STATUS =
+      "update slot set status = :status where plot_id in (:ids)";
+
+  private static final String UPDATE_IRRIGATION_STARTED = "update plot set has_alert = false,"
+      + " sensor_call_count = 0, last_sensor_call_time = '', last_irrigation_time = :now,"
+      + " start_irrigation_time = :now, is_irrigated = true, version = version + 1"
+      + " where id in (:ids)";
+
+  private static final String UPDATE_SENSOR_REACHED = "update plot set has_alert = false,"
+      + " sensor_call_count = 0, last_sensor_call_time = '', version = version + 1"
+      + " where id in (:ids)";
+
+  private static final String UPDATE_IRRIGATION_ENDED = "update plot set is_irrigated = false,"
+      + " last_irrigation_time = :now, version = version + 1 where id in (:ids)";
+
+  private static final String SELECT_SLOT_IDS =
+      "select id from slot where plot_id = :plotId order by id";
+
+  private static final String UPDATE_PLOT_SLOTS_STATUS =
+      "update slot set status = :status where plot_id = :plotId";
+
+  private static final String DELETE_SLOTS_FROM =
+      "delete from slot where plot_id = :plotId and id >= :fromId";
+
+  private static final String INSERT_SLOT = "insert into slot (id, status, plot_id)"
+      + " values (?, ?, ?)";
+
+  private final NamedParameterJdbcTemplate jdbcTemplate;
+
+  private final PooledSequence sequence;
+
+  /**
+   * Writes the failed sensor calls of many plots in one JDBC batch.
+   *
+   * @param outcomes           the sensor call count and alert flag of each plot.
+   * @param lastSensorCallTime the time of the sensor calls.
+   */
+  public void recordSensorCalls(List<SensorCallOutcome> outcomes, String lastSensorCallTime) {
+    jdbcTemplate.getJdbcOperations().batchUpdate(UPDATE_SENSOR_CALL, outcomes, outcomes.size(),
+        (ps, outcome) -> {
+          ps.setInt(1, outcome.getSensorCallCount());
+          ps.setString(2, lastSensorCallTime);
+          ps.setBoolean(3, outcome.isHasAlert());
+          ps.setLong(4, outcome.getPlotId());
+        });
+  }
+
+  /**
+   * Clears the sensor calls of plots whose sensor is back UP but that wait for water supply to
+   * start, so that they start once admitted.
+   *
+   * @param plotIds the plots whose sensor was reached.
+   * @return the number of plots updated.
+   */
+  public int clearSensorCalls(Collection<Long> plotIds) {
+    return jdbcTemplate.update(UPDATE_SENSOR_REACHED,
+        new MapSqlParameterSource("ids", plotIds));
+  }
+
+  /**
+   * Marks plots as irrigated and turns all their slots UP.
+   *
+   * @param plotIds the plots to start irrigating.
+   * @param now     the irrigation start time.
+   * @return the number of plots updated.
+   */
+  public int startIrrigation(Collection<Long> plotIds, String now) {
+    updateSlotsStatus(plotIds, Status.UP);
+    return jdbcTemplate.update(UPDATE_IRRIGATION_STARTED, new MapSqlParameterSource()
+        .addValue("now", now)
+        .addValue("ids", plotIds));
+  }
+
+  /**
+   * Marks plots as no longer irrigated and turns all their slots DOWN.
+   *
+   * @param plotIds the plots to stop irrigating.
+   * @param now     the irrigation end time.
+   * @return the number of plots updated.
+   */
+  public int endIrrigation(Collection<Long> plotIds, String now) {
+    updateSlotsStatus(plotIds, Status.DOWN);
+    return jdbcTemplate.update(UPDATE_IRRIGATION_ENDED, new MapSqlParameterSource()
+        .addValue("now", now)
+        .addValue("ids", plotIds));
+  }
+
+  /**
+   * Brings the slots of a plot to the given count, all DOWN. The slots kept are those created
+   * first, the surplus is removed with one delete and the missing slots are inserted in one batch.
+   *
+   * @param plotId     the plot to configure.
+   * @param slotsCount the number of slots the plot must have.
+   */
+  public void resizeSlots(Long plotId, int slotsCount) {
+    MapSqlParameterSource params = new MapSqlParameterSource()
+        .addValue("plotId", plotId)
+        .addValue("status", Status.DOWN.name());
+    List<Long> slotIds = jdbcTemplate.queryForList(SELECT_SLOT_IDS, params, Long.class);
+    jdbcTemplate.update(UPDATE_PLOT_SLOTS_STATUS, params);
+    if (slotIds.size() > slotsCount) {
+      jdbcTemplate.update(DELETE_SLOTS_FROM, params.addValue("fromId", slotIds.get(slotsCount)));
+    } else if (slotIds.size() < slotsCount) {
+      List<Long> newSlotIds = new ArrayList<>(slotsCount - slotIds.size());
+      for (int i = slotIds.size(); i < slotsCount; i++) {
+        newSlotIds.add(sequence.nextId());
+      }
+      jdbcTemplate.getJdbcOperations().batchUpdate(INSERT_SLOT, newSlotIds, newSlotIds.size(),
+          (ps, slotId) -> {
+            ps.setLong(1, slotId);
+            ps.setString(2, Status.DOWN.name());
+            ps.setLong(3, plotId);
+          });
+    }
+  }
+
+  private void updateSlotsStatus(Collection<Long> plotIds, Status status) {
+    jdbcTemplate.update(UPDATE_SLOTS_STATUS, new MapSqlParameterSource()
+        .addValue("status", status.name())
+        .addValue("ids", plotIds));
+  }
+}
@@ -0,0 +1,107 @@
+package com.example.automaticirrigationsystem.repository;
+
+import com.example.automaticirrigationsystem.domain.enumeration.PlotEventType;
+import com.example.automaticirrigationsystem.dto.PlotEventDTO;
+import java.sql.Types;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * JDBC repository of the outbox of the plot events. The events are appended in the transaction of
+ * the plot change they describe, so an event exists if and only if its change was committed.
+ */
+@Repository
+@Transactional
+@RequiredArgsConstructor
+public class PlotEventOutboxRepository {
+
+  private static final String INSERT_EVENT = "insert into plot_event_outbox"
+      + " (plot_id, event_type, event_time, sensor_call_count) values (?, ?, ?, ?)";
+
+  private static final String SELECT_EVENTS = "select id, plot_id, event_type, event_time,"
+      + " sensor_call_count from plot_event_outbox order by id limit :limit for update";
+
+  private static final String INSERT_DEAD_LETTERS = "insert into plot_event_dead_letter"
+      + " (id, plot_id, event_type, event_time, sensor_call_count, attempts)"
+      + " select id, plot_id, event_type, event_time, sensor_call_count, attempts"
+      + " from plot_event_outbox where id in (:ids) and attempts >= :maxAttempts";
+
+  private static final String DELETE_DEAD_LETTERS =
+      "delete from plot_event_outbox where id in (:ids) and attempts >= :maxAttempts";
+
+  private final NamedParameterJdbcTemplate jdbcTemplate;
+
+  /**
+   * Appends events to the outbox in one JDBC batch.
+   *
+   * @param events the events.
+   */
+  public void appendAll(List<PlotEventDTO> events) {
+    jdbcTemplate.getJdbcOperations().batchUpdate(INSERT_EVENT, events, events.size(),
+        (ps, event) -> {
+          ps.setLong(1, event.getPlotId());
+          ps.setString(2, event.getType().name());
+          ps.setLong(3, event.getTime());
+          if (event.getSensorCallCount() == null) {
+            ps.setNull(4, Types.INTEGER);
+          } else {
+            ps.setInt(4, event.getSensorCallCount());
+          }
+        });
+  }
+
+  /**
+   * Get the oldest events of the outbox, locking them until the end of the transaction so that a
+   * single relay publishes them.
+   *
+   * @param limit the maximum number of events.
+   * @return the events by outbox id, in the order they were appended.
+   */
+  @Transactional(propagation = Propagation.MANDATORY)
+  public Map<Long, PlotEventDTO> lockOldest(int limit) {
+    Map<Long, PlotEventDTO> events = new LinkedHashMap<>();
+    jdbcTemplate.query(SELECT_EVENTS, new MapSqlParameterSource("limit", limit), rs -> {
+      Integer sensorCallCount = rs.getObject("sensor_call_count", Integer.class);
+      events.put(rs.getLong("id"), new PlotEventDTO(rs.getLong("plot_id"),
+          PlotEventType.valueOf(rs.getString("event_type")), rs.getLong("event_time"),
+          sensorCallCount));
+    });
+    return events;
+  }
+
+  /**
+   * Deletes published events.
+   *
+   * @param ids the outbox ids of the events.
+   * @return the number of events deleted.
+   */
+  public int deleteAll(Collection<Long> ids) {
+    return jdbcTemplate.update("delete from plot_event_outbox where id in (:ids)",
+        new MapSqlParameterSource("ids", ids));
+  }
+
+  /**
+   * Counts a failed attempt to publish events, and moves the events that failed as many times as
+   * allowed to the dead letters.
+   *
+   * @param ids         the outbox ids of the events.
+   * @param maxAttempts the attempts after which an event is a dead letter.
+   * @return the number of events moved to the dead letters.
+   */
+  public int recordFailures(Collection<Long> ids, int maxAttempts) {
+    MapSqlParameterSource params = new MapSqlParameterSource("ids", ids)
+        .addValue("maxAttempts", maxAttempts);
+    jdbcTemplate.update(
+        "update plot_event_outbox set attempts = attempts + 1 where id in (:ids)", params);
+    jdbcTemplate.update(INSERT_DEAD_LETTERS, params);
+    return jdbcTemplate.update(DELETE_DEAD_LETTERS, params);
+  }
+}
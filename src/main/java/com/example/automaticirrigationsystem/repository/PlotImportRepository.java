@@ -0,0 +1,126 @@
+package com.example.automaticirrigationsystem.repository;
+
+import com.example.automaticirrigationsystem.domain.enumeration.Status;
+import com.example.automaticirrigationsystem.dto.PlotImportDTO;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * JDBC repository inserting imported plots, with their sensor and slots, in JDBC batches. The ids
+ * are taken from the sequence shared with the entities, a block at a time.
+ */
+@Repository
+@Transactional
+@RequiredArgsConstructor
+public class PlotImportRepository {
+
+  private static final int SLOTS_BATCH_SIZE = 1000;
+
+  private static final String INSERT_SENSOR = "insert into sensor (id, code, status)"
+      + " values (?, ?, ?)";
+
+  private static final String INSERT_PLOT = "insert into plot (id, code, length, width,"
+      + " is_irrigated, sensor_call_count, last_sensor_call_time, has_alert,"
+      + " start_irrigation_time, last_irrigation_time, water_amount, crop_type, sensor_id)"
+      + " values (?, ?, ?, ?, false, 0, '', false, '', '', ?, ?, ?)";
+
+  private static final int[] SENSOR_TYPES = {Types.BIGINT, Types.VARCHAR, Types.VARCHAR};
+
+  private static final int[] PLOT_TYPES = {Types.BIGINT, Types.VARCHAR, Types.DOUBLE,
+      Types.DOUBLE, Types.INTEGER, Types.VARCHAR, Types.BIGINT};
+
+  private static final String INSERT_SLOT = "insert into slot (id, status, plot_id)"
+      + " values (?, ?, ?)";
+
+  private final NamedParameterJdbcTemplate jdbcTemplate;
+
+  private final PooledSequence sequence;
+
+  /**
+   * Get the plot codes already taken.
+   *
+   * @param plotCodes the plot codes to check.
+   * @return those of the codes used by an existing plot.
+   */
+  @Transactional(readOnly = true)
+  public Set<String> findExistingPlotCodes(Collection<String> plotCodes) {
+    return findExistingCodes("select code from plot where code in (:codes)", plotCodes);
+  }
+
+  /**
+   * Get the sensor codes already taken.
+   *
+   * @param sensorCodes the sensor codes to check.
+   * @return those of the codes used by an existing sensor.
+   */
+  @Transactional(readOnly = true)
+  public Set<String> findExistingSensorCodes(Collection<String> sensorCodes) {
+    return findExistingCodes("select code from sensor where code in (:codes)", sensorCodes);
+  }
+
+  /**
+   * Inserts plots with their sensor and slots in three JDBC batches, the slots starting DOWN.
+   *
+   * @param plots the validated plots, with codes not taken yet.
+   * @return the ids of the plots inserted.
+   */
+  public List<Long> insertAll(List<PlotImportDTO> plots) {
+    List<Long> plotIds = new ArrayList<>(plots.size());
+    List<Object[]> plotRows = new ArrayList<>(plots.size());
+    List<Object[]> sensorRows = new ArrayList<>();
+    List<long[]> slotRows = new ArrayList<>();
+    for (PlotImportDTO plot : plots) {
+      long plotId = sequence.nextId();
+      plotIds.add(plotId);
+      Long sensorId = null;
+      if (plot.getSensorCode() != null) {
+        sensorId = sequence.nextId();
+        sensorRows.add(
+            new Object[]{sensorId, plot.getSensorCode(), nameOf(plot.getSensorStatus())});
+      }
+      plotRows.add(new Object[]{plotId, plot.getPlotCode(), plot.getPlotLength(),
+          plot.getPlotWidth(), plot.getWaterAmount() == null ? 0 : plot.getWaterAmount(),
+          nameOf(plot.getCropType()), sensorId});
+      int slotsCount = plot.getSlotsCount() == null ? 0 : plot.getSlotsCount();
+      for (int i = 0; i < slotsCount; i++) {
+        slotRows.add(new long[]{sequence.nextId(), plotId});
+      }
+    }
+
+    JdbcOperations jdbcOperations = jdbcTemplate.getJdbcOperations();
+    if (!sensorRows.isEmpty()) {
+      jdbcOperations.batchUpdate(INSERT_SENSOR, sensorRows, SENSOR_TYPES);
+    }
+    jdbcOperations.batchUpdate(INSERT_PLOT, plotRows, PLOT_TYPES);
+    if (!slotRows.isEmpty()) {
+      jdbcOperations.batchUpdate(INSERT_SLOT, slotRows, SLOTS_BATCH_SIZE, (ps, slot) -> {
+        ps.setLong(1, slot[0]);
+        ps.setString(2, Status.DOWN.name());
+        ps.setLong(3, slot[1]);
+      });
+    }
+    return plotIds;
+  }
+
+  private static String nameOf(Enum<?> value) {
+    return value == null ? null : value.name();
+  }
+
+  private Set<String> findExistingCodes(String query, Collection<String> codes) {
+    if (codes.isEmpty()) {
+      return new HashSet<>();
+    }
+    return new HashSet<>(jdbcTemplate.queryForList(query,
+        new MapSqlParameterSource("codes", codes), String.class));
+  }
+}
@@ -0,0 +1,25 @@
+package com.example.automaticirrigationsystem.repository;
+
+import com.example.automaticirrigationsystem.domain.enumeration.CropType;
+
+/**
+ * Projection of a {@link com.example.automaticirrigationsystem.domain.Plot} on what its irrigation
+ * schedule is computed from: the crop, the water amount and the number of slots, and when it was
+ * last irrigated.
+ */
+public interface PlotIrrigationDemand {
+
+  Long getId();
+
+  CropType getCropType();
+
+  Integer getWaterAmount();
+
+  Integer getSlotsCount();
+
+  Boolean getIsIrrigated();
+
+  String getStartIrrigationTime();
+
+  String getLastIrrigationTime();
+}
@@ -0,0 +1,18 @@
+package com.example.automaticirrigationsystem.repository;
+
+/**
+ * Projection of a {@link com.example.automaticirrigationsystem.domain.Plot} on its irrigation
+ * flags and the status of its sensor, enough to decide whether irrigation can start or end.
+ */
+public interface PlotIrrigationState extends PlotSensorStatus {
+
+  Long getSensorId();
+
+  Boolean getIsIrrigated();
+
+  Boolean getHasAlert();
+
+  String getLastSensorCallTime();
+
+  String getStartIrrigationTime();
+}
@@ -0,0 +1,185 @@
+package com.example.automaticirrigationsystem.repository;
+
+import com.example.automaticirrigationsystem.domain.Sensor;
+import com.example.automaticirrigationsystem.domain.Slot;
+import com.example.automaticirrigationsystem.domain.enumeration.CropType;
+import com.example.automaticirrigationsystem.domain.enumeration.Status;
+import com.example.automaticirrigationsystem.dto.PlotDTO;
+import com.example.automaticirrigationsystem.exception.BadRequestException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Read-only JDBC repository building {@link PlotDTO} straight from the result set, without
+ * managed entities, persistence context or dirty checking.
+ */
+@Repository
+@RequiredArgsConstructor
+public class PlotQueryRepository {
+
+  private static final String SELECT_PLOT = "select p.id, p.code, p.length, p.width,"
+      + " p.is_irrigated, p.sensor_call_count, p.last_sensor_call_time, p.has_alert,"
+      + " p.start_irrigation_time, p.last_irrigation_time, p.water_amount, p.crop_type,"
+      + " s.id as sensor_id, s.code as sensor_code, s.status as sensor_status"
+      + " from plot p left join sensor s on s.id = p.sensor_id";
+
+  private static final String SELECT_SLOTS =
+      "select id, status, plot_id from slot where plot_id in (:ids) order by id";
+
+  private static final Map<String, String> SORT_COLUMNS = Map.ofEntries(
+      Map.entry("id", "p.id"),
+      Map.entry("plotCode", "p.code"),
+      Map.entry("plotLength", "p.length"),
+      Map.entry("plotWidth", "p.width"),
+      Map.entry("isIrrigated", "p.is_irrigated"),
+      Map.entry("sensorCallCount", "p.sensor_call_count"),
+      Map.entry("hasAlert", "p.has_alert"),
+      Map.entry("waterAmount", "p.water_amount"),
+      Map.entry("cropType", "p.crop_type"));
+
+  private static final RowMapper<PlotDTO> PLOT_ROW_MAPPER = PlotQueryRepository::mapPlot;
+
+  private final NamedParameterJdbcTemplate jdbcTemplate;
+
+  /**
+   * Get a page of plots.
+   *
+   * @param pageable the pagination information.
+   * @return the page of plots with their sensor and slots.
+   */
+  public Page<PlotDTO> findAll(Pageable pageable) {
+    MapSqlParameterSource params = new MapSqlParameterSource()
+        .addValue("limit", pageable.getPageSize())
+        .addValue("offset", pageable.getOffset());
+    List<PlotDTO> plots = withSlots(jdbcTemplate.query(
+        SELECT_PLOT + orderBy(pageable.getSort()) + " limit :limit offset :offset", params,
+        PLOT_ROW_MAPPER));
+    Long total = jdbcTemplate.getJdbcOperations()
+        .queryForObject("select count(*) from plot", Long.class);
+    return new PageImpl<>(plots, pageable, total == null ? 0 : total);
+  }
+
+  /**
+   * Get the plots following a cursor, seeking on the primary key index without counting.
+   *
+   * @param after the id of the last plot already returned, null to start from the first plot.
+   * @param limit the maximum number of plots to return.
+   * @return the plots with their sensor and slots, ordered by id.
+   */
+  public Slice<PlotDTO> findAllAfter(Long after, int limit) {
+    MapSqlParameterSource params = new MapSqlParameterSource()
+        .addValue("after", after == null ? Long.MIN_VALUE : after)
+        .addValue("limit", limit + 1);
+    List<PlotDTO> plots = jdbcTemplate.query(
+        SELECT_PLOT + " where p.id > :after order by p.id limit :limit", params, PLOT_ROW_MAPPER);
+    boolean hasNext = plots.size() > limit;
+    if (hasNext) {
+      plots = plots.subList(0, limit);
+    }
+    return new SliceImpl<>(withSlots(plots), PageRequest.of(0, limit), hasNext);
+  }
+
+  /**
+   * Get one plot by id.
+   *
+   * @param id the id of the plot.
+   * @return the plot with its sensor and slots.
+   */
+  public Optional<PlotDTO> findById(Long id) {
+    List<PlotDTO> plots = jdbcTemplate.query(SELECT_PLOT + " where p.id = :id",
+        new MapSqlParameterSource("id", id), PLOT_ROW_MAPPER);
+    return withSlots(plots).stream().findFirst();
+  }
+
+  /**
+   * Get the plots with alert among some plots.
+   *
+   * @param ids the ids of the plots.
+   * @return the plots with alert, with their sensor and slots.
+   */
+  public List<PlotDTO> findAllWithAlertByIdIn(Collection<Long> ids) {
+    if (ids.isEmpty()) {
+      return new ArrayList<>();
+    }
+    return withSlots(jdbcTemplate.query(
+        SELECT_PLOT + " where p.id in (:ids) and p.has_alert = true order by p.id",
+        new MapSqlParameterSource("ids", ids), PLOT_ROW_MAPPER));
+  }
+
+  private List<PlotDTO> withSlots(List<PlotDTO> plots) {
+    if (plots.isEmpty()) {
+      return plots;
+    }
+    Map<Long, PlotDTO> byId = plots.stream()
+        .collect(Collectors.toMap(PlotDTO::getId, Function.identity()));
+    jdbcTemplate.query(SELECT_SLOTS, new MapSqlParameterSource("ids", byId.keySet()), rs -> {
+      Slot slot = new Slot();
+      slot.setId(rs.getLong("id"));
+      slot.setStatus(toEnum(Status.class, rs.getString("status")));
+      byId.get(rs.getLong("plot_id")).getPlotTimerSlots().add(slot);
+    });
+    return plots;
+  }
+
+  private static String orderBy(Sort sort) {
+    if (sort.isUnsorted()) {
+      return " order by p.id";
+    }
+    return sort.stream()
+        .map(order -> {
+          String column = SORT_COLUMNS.get(order.getProperty());
+          if (column == null) {
+            throw new BadRequestException("Plots can't be sorted by " + order.getProperty());
+          }
+          return column + (order.isAscending() ? " asc" : " desc");
+        })
+        // the id breaks ties, rows sorting equal would otherwise move between pages
+        .collect(Collectors.joining(", ", " order by ", sort.getOrderFor("id") == null
+            ? ", p.id" : ""));
+  }
+
+  private static PlotDTO mapPlot(ResultSet rs, int rowNum) throws SQLException {
+    PlotDTO plot = new PlotDTO();
+    plot.setId(rs.getLong("id"));
+    plot.setPlotCode(rs.getString("code"));
+    plot.setPlotLength(rs.getObject("length", Double.class));
+    plot.setPlotWidth(rs.getObject("width", Double.class));
+    plot.setIsIrrigated(rs.getObject("is_irrigated", Boolean.class));
+    plot.setSensorCallCount(rs.getObject("sensor_call_count", Integer.class));
+    plot.setLastSensorCallTime(rs.getString("last_sensor_call_time"));
+    plot.setHasAlert(rs.getObject("has_alert", Boolean.class));
+    plot.setStartIrrigationTime(rs.getString("start_irrigation_time"));
+    plot.setLastIrrigationTime(rs.getString("last_irrigation_time"));
+    plot.setWaterAmount(rs.getObject("water_amount", Integer.class));
+    plot.setCropType(toEnum(CropType.class, rs.getString("crop_type")));
+    Long sensorId = rs.getObject("sensor_id", Long.class);
+    if (sensorId != null) {
+      plot.setPlotSensor(new Sensor(sensorId, rs.getString("sensor_code"),
+          toEnum(Status.class, rs.getString("sensor_status")), null));
+    }
+    return plot;
+  }
+
+  private static <E extends Enum<E>> E toEnum(Class<E> type, String value) {
+    return value == null ? null : Enum.valueOf(type, value);
+  }
+}
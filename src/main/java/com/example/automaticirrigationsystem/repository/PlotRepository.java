@@ -1,16 +1,79 @@
 package com.example.automaticirrigationsystem.repository;
 
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
 import com.example.automaticirrigationsystem.domain.Plot;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
+import javax.persistence.QueryHint;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
 public interface PlotRepository extends JpaRepository<Plot, Long> {
 
-  List<Plot> findAllByHasAlertIsTrue();
+  String STREAM_FETCH_SIZE = "500";
+
+  @EntityGraph(attributePaths = {"plotSensor", "plotTimerSlots"})
+  @Query("select distinct p from Plot p where p.id in ?1")
+  List<Plot> findAllWithSensorAndSlotsByIdIn(Collection<Long> plotIds, Sort sort);
+
+  /**
+   * Walks every plot with its sensor through a forward-only cursor, fetching
+   * {@value #STREAM_FETCH_SIZE} rows per round trip. The plots are loaded read-only, the caller has
+   * to clear the persistence context as it goes for memory use to stay flat.
+   *
+   * @return the plots ordered by id, to be closed once consumed.
+   */
+  @QueryHints({
+      @QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE),
+      @QueryHint(name = HINT_READONLY, value = "true"),
+      @QueryHint(name = HINT_CACHEABLE, value = "false")})
+  @Query("select p from Plot p left join fetch p.plotSensor order by p.id")
+  Stream<Plot> streamAllWithSensor();
+
+  @Query("select p.id as id, p.sensorCallCount as sensorCallCount, s.status as sensorStatus,"
+      + " size(p.plotTimerSlots) as slotsCount from Plot p join p.plotSensor s where p.id in ?1")
+  List<PlotSensorStatus> findSensorStatusByIdIn(Collection<Long> plotIds);
+
+  @Query("select p.id as id, p.sensorCallCount as sensorCallCount, s.status as sensorStatus,"
+      + " s.id as sensorId, p.isIrrigated as isIrrigated, p.hasAlert as hasAlert,"
+      + " p.lastSensorCallTime as lastSensorCallTime,"
+      + " p.startIrrigationTime as startIrrigationTime, size(p.plotTimerSlots) as slotsCount"
+      + " from Plot p left join p.plotSensor s where p.id in ?1")
+  List<PlotIrrigationState> findIrrigationStateByIdIn(Collection<Long> plotIds);
+
+  @Query("select p.id as id, p.cropType as cropType, p.waterAmount as waterAmount,"
+      + " size(p.plotTimerSlots) as slotsCount, p.isIrrigated as isIrrigated,"
+      + " p.startIrrigationTime as startIrrigationTime,"
+      + " p.lastIrrigationTime as lastIrrigationTime"
+      + " from Plot p where p.cropType is not null and p.waterAmount > 0")
+  List<PlotIrrigationDemand> findIrrigationDemands();
+
+  @Query("select p.id as id, p.cropType as cropType, p.waterAmount as waterAmount,"
+      + " size(p.plotTimerSlots) as slotsCount, p.isIrrigated as isIrrigated,"
+      + " p.startIrrigationTime as startIrrigationTime,"
+      + " p.lastIrrigationTime as lastIrrigationTime"
+      + " from Plot p where p.id in ?1 and p.cropType is not null and p.waterAmount > 0")
+  List<PlotIrrigationDemand> findIrrigationDemandsByIdIn(Collection<Long> plotIds);
+
+  @Query("select p.id as id, p.cropType as cropType, p.waterAmount as waterAmount,"
+      + " size(p.plotTimerSlots) as slotsCount, p.isIrrigated as isIrrigated,"
+      + " p.startIrrigationTime as startIrrigationTime,"
+      + " p.lastIrrigationTime as lastIrrigationTime"
+      + " from Plot p where p.isIrrigated = true")
+  List<PlotIrrigationDemand> findIrrigatedDemands();
+
+  @Query("select p.id from Plot p where p.hasAlert = true")
+  List<Long> findIdsByHasAlertIsTrue();
 
   @Modifying
-  @Query("update Plot p set p.hasAlert = false where p.id = ?1")
+  @Query("update Plot p set p.hasAlert = false, p.version = p.version + 1 where p.id = ?1")
   int fixPlotAlert(Long plotId);
 }
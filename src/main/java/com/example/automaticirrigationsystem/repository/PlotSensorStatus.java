@@ -0,0 +1,19 @@
+package com.example.automaticirrigationsystem.repository;
+
+import com.example.automaticirrigationsystem.domain.enumeration.Status;
+
+/**
+ * Projection of a {@link com.example.automaticirrigationsystem.domain.Plot} on the status of its
+ * sensor and its number of slots, enough to decide on the next sensor call, and on the water the
+ * plot draws once irrigated, without loading the entity.
+ */
+public interface PlotSensorStatus {
+
+  Long getId();
+
+  Integer getSensorCallCount();
+
+  Status getSensorStatus();
+
+  Integer getSlotsCount();
+}
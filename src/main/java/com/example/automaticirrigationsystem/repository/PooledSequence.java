@@ -0,0 +1,39 @@
+package com.example.automaticirrigationsystem.repository;
+
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hands out ids from the sequence shared by the entities the way the Hibernate pooled optimizer
+ * does: every value read from the sequence reserves the {@value #INCREMENT_SIZE} ids up to it.
+ * Rows inserted over JDBC with these ids never collide with the entities saved by Hibernate.
+ */
+@Component
+class PooledSequence {
+
+  private static final String NEXT_VALUE_QUERY = "select next value for sequence_generator";
+
+  /**
+   * The increment of the sequence, also the default allocation size of the entities.
+   */
+  private static final int INCREMENT_SIZE = 50;
+
+  private final JdbcOperations jdbcOperations;
+
+  private long next;
+
+  private long hi = -1;
+
+  PooledSequence(JdbcOperations jdbcOperations) {
+    this.jdbcOperations = jdbcOperations;
+  }
+
+  synchronized long nextId() {
+    if (next > hi) {
+      Long value = jdbcOperations.queryForObject(NEXT_VALUE_QUERY, Long.class);
+      hi = value == null ? 0 : value;
+      next = hi - INCREMENT_SIZE + 1;
+    }
+    return next++;
+  }
+}
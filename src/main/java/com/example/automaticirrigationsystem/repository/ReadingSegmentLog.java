@@ -0,0 +1,491 @@
+package com.example.automaticirrigationsystem.repository;
+
+import com.example.automaticirrigationsystem.domain.enumeration.Status;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Embedded append-only archive of the raw sensor readings, kept out of the relational database.
+ * The readings are written as fixed-width binary records to memory-mapped segment files, and the
+ * segments are forced to disk on a fixed interval and on shutdown. Each segment keeps a sparse time
+ * index, the smallest and largest reading time of every block of records, so range reads only
+ * visit the blocks that may hold readings of the range. Readings are visited straight from the
+ * mapped files, without building an object per record.
+ *
+ * <p>Only the last segment, the one appended to, stays mapped: the full segments keep their index
+ * in memory and are mapped for the time of a read. The segments whose readings are all older than
+ * the raw readings retention are deleted whole.
+ */
+@Repository
+@Slf4j
+public class ReadingSegmentLog {
+
+  /**
+   * sensor id, epoch millis, moisture, and status ordinal or -1 when the status is unknown.
+   */
+  static final int RECORD_SIZE = Long.BYTES + Long.BYTES + Double.BYTES + Byte.BYTES;
+
+  /**
+   * magic, record size and number of records written.
+   */
+  private static final int HEADER_SIZE = Integer.BYTES + Integer.BYTES + Long.BYTES;
+
+  private static final int MAGIC = 0x52534547;
+
+  private static final int COUNT_OFFSET = Integer.BYTES + Integer.BYTES;
+
+  private static final String SEGMENT_SUFFIX = ".seg";
+
+  private static final Status[] STATUSES = Status.values();
+
+  private final TaskScheduler maintenanceScheduler;
+  @Value("${telemetry.archive.enabled:false}")
+  private boolean enabled;
+  @Value("${telemetry.archive.directory:archive}")
+  private String directory = "archive";
+  @Value("${telemetry.archive.segment-records:1048576}")
+  private int segmentRecords = 1 << 20;
+  @Value("${telemetry.archive.index-interval:1024}")
+  private int indexInterval = 1024;
+  @Value("${telemetry.archive.sync-interval:1000}")
+  private long syncInterval = 1000;
+  @Value("${telemetry.archive.retention-interval:3600000}")
+  private long retentionInterval = 3600000;
+  @Value("${telemetry.retention.raw:7d}")
+  private Duration retention = Duration.ofDays(7);
+  private final List<Segment> segments = new CopyOnWriteArrayList<>();
+  private ScheduledFuture<?> syncer;
+  private ScheduledFuture<?> retainer;
+
+  public ReadingSegmentLog(TaskScheduler maintenanceScheduler) {
+    this.maintenanceScheduler = maintenanceScheduler;
+  }
+
+  /**
+   * A reading visited in the archive.
+   */
+  @FunctionalInterface
+  public interface ReadingVisitor {
+
+    /**
+     * Visits one reading.
+     *
+     * @param sensorId the sensor id.
+     * @param readAt   the epoch millis at which the sensor took the reading.
+     * @param moisture the moisture read.
+     * @param status   the status of the sensor, null if unknown.
+     */
+    void visit(long sensorId, long readAt, double moisture, Status status);
+  }
+
+  @PostConstruct
+  public void open() {
+    if (!enabled) {
+      return;
+    }
+    Path root = Paths.get(directory);
+    try {
+      Files.createDirectories(root);
+      List<Path> files;
+      try (Stream<Path> listing = Files.list(root)) {
+        files = listing.filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+            .sorted()
+            .collect(Collectors.toList());
+      }
+      for (Path file : files) {
+        if (!segments.isEmpty()) {
+          segments.get(segments.size() - 1).release();
+        }
+        segments.add(Segment.open(file, segmentRecords, indexInterval));
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("The readings archive can't be opened: " + root, e);
+    }
+    log.debug("readings archive opened with {} segments and {} readings", segments.size(),
+        size());
+    if (syncInterval > 0) {
+      syncer = maintenanceScheduler.scheduleWithFixedDelay(this::sync,
+          Duration.ofMillis(syncInterval));
+    }
+    if (retentionInterval > 0 && !retention.isZero()) {
+      retainer = maintenanceScheduler.scheduleWithFixedDelay(this::enforceRetentionSafely,
+          Duration.ofMillis(retentionInterval));
+    }
+  }
+
+  @PreDestroy
+  public void close() {
+    if (syncer != null) {
+      syncer.cancel(false);
+    }
+    if (retainer != null) {
+      retainer.cancel(false);
+    }
+    sync();
+  }
+
+  /**
+   * Whether the raw readings are archived.
+   *
+   * @return true when the archive is enabled.
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Appends readings at the end of the archive, rolling to a new segment when the last one is full.
+   * The readings are visible to the readers once appended, and durable once the segments are
+   * synced.
+   *
+   * @param readings the readings to append.
+   */
+  public synchronized void appendAll(List<SensorReading> readings) {
+    for (SensorReading reading : readings) {
+      Segment segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+      if (segment == null || segment.isFull()) {
+        Segment full = segment;
+        segment = createSegment(full == null ? 0 : full.firstOffset + full.count);
+        segments.add(segment);
+        if (full != null) {
+          full.release();
+        }
+      }
+      segment.append(reading);
+    }
+    if (!segments.isEmpty()) {
+      segments.get(segments.size() - 1).commit();
+    }
+  }
+
+  /**
+   * Visits every reading in the order it was appended.
+   *
+   * @param visitor the visitor of the readings.
+   */
+  public void replay(ReadingVisitor visitor) {
+    scan(Long.MIN_VALUE, Long.MAX_VALUE, visitor);
+  }
+
+  /**
+   * Visits the readings taken within a range, in the order they were appended. Only the blocks of
+   * records whose time span overlaps the range are read.
+   *
+   * @param from    the epoch millis the range starts at.
+   * @param to      the epoch millis the range ends before.
+   * @param visitor the visitor of the readings.
+   */
+  public void scan(long from, long to, ReadingVisitor visitor) {
+    for (Segment segment : segments) {
+      segment.scan(from, to, visitor);
+    }
+  }
+
+  /**
+   * Get the number of readings archived.
+   *
+   * @return the number of readings appended so far.
+   */
+  public long size() {
+    return segments.stream().mapToLong(segment -> segment.count).sum();
+  }
+
+  /**
+   * Forces the readings appended so far to disk.
+   */
+  public void sync() {
+    for (Segment segment : segments) {
+      segment.force();
+    }
+  }
+
+  /**
+   * Deletes the segments whose readings were all taken before a time. The last segment is kept, it
+   * is the one appended to.
+   *
+   * @param cutoff the epoch millis before which the readings are deleted.
+   * @return the number of readings deleted.
+   */
+  public synchronized long deleteBefore(long cutoff) {
+    long deleted = 0;
+    if (segments.isEmpty()) {
+      return deleted;
+    }
+    for (Segment segment : new ArrayList<>(segments.subList(0, segments.size() - 1))) {
+      if (segment.maxReadAt() >= cutoff) {
+        continue;
+      }
+      segments.remove(segment);
+      segment.delete();
+      deleted += segment.count;
+    }
+    return deleted;
+  }
+
+  private void enforceRetentionSafely() {
+    try {
+      long deleted = deleteBefore(System.currentTimeMillis() - retention.toMillis());
+      log.debug("archive retention deleted {} readings", deleted);
+    } catch (RuntimeException e) {
+      log.error("archive retention failed with cause = '{}'", e.getMessage(), e);
+    }
+  }
+
+  private Segment createSegment(long firstOffset) {
+    Path file = Paths.get(directory, String.format("%020d%s", firstOffset, SEGMENT_SUFFIX));
+    try {
+      return Segment.create(file, firstOffset, segmentRecords, indexInterval);
+    } catch (IOException e) {
+      throw new UncheckedIOException("The readings archive can't create segment " + file, e);
+    }
+  }
+
+  /**
+   * One segment file, mapped whole while it is appended to. The records below the committed count
+   * are never written again, so they are read without locking.
+   */
+  private static final class Segment {
+
+    private final Path file;
+
+    private final long firstOffset;
+
+    private final int capacity;
+
+    private final int indexInterval;
+
+    /**
+     * The mapping appended to, null once the segment is full and released.
+     */
+    private volatile MappedByteBuffer buffer;
+
+    private volatile int count;
+
+    private volatile boolean deleted;
+
+    private boolean dirty;
+
+    private long[] blockMin = new long[16];
+
+    private long[] blockMax = new long[16];
+
+    private Segment(Path file, long firstOffset, int capacity, int indexInterval,
+        MappedByteBuffer buffer) {
+      this.file = file;
+      this.firstOffset = firstOffset;
+      this.capacity = capacity;
+      this.indexInterval = indexInterval;
+      this.buffer = buffer;
+    }
+
+    static Segment create(Path file, long firstOffset, int capacity, int indexInterval)
+        throws IOException {
+      MappedByteBuffer buffer = map(file, capacity, StandardOpenOption.CREATE_NEW);
+      buffer.putInt(0, MAGIC);
+      buffer.putInt(Integer.BYTES, RECORD_SIZE);
+      buffer.putLong(COUNT_OFFSET, 0);
+      return new Segment(file, firstOffset, capacity, indexInterval, buffer);
+    }
+
+    static Segment open(Path file, int defaultCapacity, int indexInterval) throws IOException {
+      long firstOffset = Long.parseLong(
+          file.getFileName().toString().replace(SEGMENT_SUFFIX, ""));
+      long size = Files.size(file);
+      int capacity = size > HEADER_SIZE
+          ? (int) ((size - HEADER_SIZE) / RECORD_SIZE) : defaultCapacity;
+      MappedByteBuffer buffer = map(file, capacity);
+      if (buffer.getInt(0) != MAGIC || buffer.getInt(Integer.BYTES) != RECORD_SIZE) {
+        throw new IllegalStateException("Not a segment of readings: " + file);
+      }
+      Segment segment = new Segment(file, firstOffset, capacity, indexInterval, buffer);
+      // the sparse index is rebuilt from the mapped records rather than stored next to them
+      int committed = (int) Math.min(buffer.getLong(COUNT_OFFSET), capacity);
+      for (int record = 0; record < committed; record++) {
+        segment.index(record, buffer.getLong(position(record) + Long.BYTES));
+      }
+      segment.count = committed;
+      return segment;
+    }
+
+    private static MappedByteBuffer map(Path file, int capacity, StandardOpenOption... options)
+        throws IOException {
+      List<StandardOpenOption> openOptions = new ArrayList<>(Arrays.asList(options));
+      openOptions.add(StandardOpenOption.READ);
+      openOptions.add(StandardOpenOption.WRITE);
+      try (FileChannel channel = FileChannel.open(file,
+          openOptions.toArray(new StandardOpenOption[0]))) {
+        return channel.map(FileChannel.MapMode.READ_WRITE, 0, mappedSize(capacity));
+      }
+    }
+
+    private static long mappedSize(int capacity) {
+      long size = HEADER_SIZE + (long) capacity * RECORD_SIZE;
+      if (size > Integer.MAX_VALUE) {
+        throw new IllegalStateException("A segment of " + capacity + " readings can't be mapped");
+      }
+      return size;
+    }
+
+    /**
+     * Get the offset of a record, within the mapping as the segment size is checked when mapped.
+     */
+    private static int position(int record) {
+      return Math.toIntExact(HEADER_SIZE + (long) record * RECORD_SIZE);
+    }
+
+    boolean isFull() {
+      return count >= capacity;
+    }
+
+    /**
+     * Writes a record after the committed ones, visible once committed.
+     */
+    void append(SensorReading reading) {
+      int record = count;
+      int position = position(record);
+      buffer.putLong(position, reading.getSensorId());
+      buffer.putLong(position + Long.BYTES, reading.getReadAt());
+      buffer.putDouble(position + 2 * Long.BYTES, reading.getMoisture());
+      buffer.put(position + 3 * Long.BYTES,
+          (byte) (reading.getStatus() == null ? -1 : reading.getStatus().ordinal()));
+      synchronized (this) {
+        index(record, reading.getReadAt());
+        dirty = true;
+      }
+      count = record + 1;
+      if (isFull()) {
+        commit();
+      }
+    }
+
+    synchronized void commit() {
+      buffer.putLong(COUNT_OFFSET, count);
+    }
+
+    synchronized void force() {
+      if (dirty && buffer != null) {
+        buffer.force();
+        dirty = false;
+      }
+    }
+
+    /**
+     * Forces the segment to disk and drops its mapping, the segment isn't appended to anymore. The
+     * mapping is unmapped once the reads still using it are done.
+     */
+    synchronized void release() {
+      force();
+      buffer = null;
+    }
+
+    synchronized long maxReadAt() {
+      long max = Long.MIN_VALUE;
+      for (int block = 0; block < (count + indexInterval - 1) / indexInterval; block++) {
+        max = Math.max(max, blockMax[block]);
+      }
+      return max;
+    }
+
+    void delete() {
+      deleted = true;
+      release();
+      try {
+        Files.deleteIfExists(file);
+      } catch (IOException e) {
+        throw new UncheckedIOException("The readings archive can't delete segment " + file, e);
+      }
+    }
+
+    /**
+     * Get the records of the segment to read, mapping the file again once the segment is released.
+     *
+     * @return the records, or null if the segment was deleted meanwhile.
+     */
+    private ByteBuffer records() {
+      MappedByteBuffer mapped = buffer;
+      if (mapped != null) {
+        return mapped;
+      }
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        return channel.map(FileChannel.MapMode.READ_ONLY, 0, mappedSize(capacity));
+      } catch (NoSuchFileException e) {
+        if (deleted) {
+          return null;
+        }
+        throw new UncheckedIOException("The readings archive lost segment " + file, e);
+      } catch (IOException e) {
+        throw new UncheckedIOException("The readings archive can't read segment " + file, e);
+      }
+    }
+
+    private void index(int record, long readAt) {
+      int block = record / indexInterval;
+      if (block >= blockMin.length) {
+        blockMin = Arrays.copyOf(blockMin, blockMin.length * 2);
+        blockMax = Arrays.copyOf(blockMax, blockMax.length * 2);
+      }
+      if (record % indexInterval == 0) {
+        blockMin[block] = readAt;
+        blockMax[block] = readAt;
+      } else {
+        blockMin[block] = Math.min(blockMin[block], readAt);
+        blockMax[block] = Math.max(blockMax[block], readAt);
+      }
+    }
+
+    void scan(long from, long to, ReadingVisitor visitor) {
+      int records = count;
+      long[] mins;
+      long[] maxs;
+      synchronized (this) {
+        int blocks = (records + indexInterval - 1) / indexInterval;
+        mins = Arrays.copyOf(blockMin, blocks);
+        maxs = Arrays.copyOf(blockMax, blocks);
+      }
+      ByteBuffer view = null;
+      for (int block = 0; block < mins.length; block++) {
+        if (maxs[block] < from || mins[block] >= to) {
+          continue;
+        }
+        if (view == null) {
+          view = records();
+          if (view == null) {
+            return;
+          }
+        }
+        int end = Math.min(records, (block + 1) * indexInterval);
+        for (int record = block * indexInterval; record < end; record++) {
+          int position = position(record);
+          long readAt = view.getLong(position + Long.BYTES);
+          if (readAt >= from && readAt < to) {
+            byte status = view.get(position + 3 * Long.BYTES);
+            visitor.visit(view.getLong(position), readAt,
+                view.getDouble(position + 2 * Long.BYTES), status < 0 ? null : STATUSES[status]);
+          }
+        }
+      }
+    }
+  }
+}
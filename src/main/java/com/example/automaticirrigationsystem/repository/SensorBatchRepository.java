@@ -0,0 +1,44 @@
+package com.example.automaticirrigationsystem.repository;
+
+import com.example.automaticirrigationsystem.domain.enumeration.Status;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * JDBC repository for the {@link com.example.automaticirrigationsystem.domain.Sensor} updates
+ * touching many sensors at once, written in batches instead of one entity at a time.
+ */
+@Repository
+@Transactional
+@RequiredArgsConstructor
+public class SensorBatchRepository {
+
+  private static final String UPDATE_STATUS = "update sensor set status = ? where id = ?";
+
+  private final JdbcTemplate jdbcTemplate;
+
+  /**
+   * Writes the status of many sensors in one JDBC batch.
+   *
+   * @param statuses the status of each sensor, by sensor id.
+   * @return the number of sensors updated, the unknown ones are skipped.
+   */
+  public int updateStatuses(Map<Long, Status> statuses) {
+    List<Map.Entry<Long, Status>> updates = new ArrayList<>(statuses.entrySet());
+    int[][] counts = jdbcTemplate.batchUpdate(UPDATE_STATUS, updates, updates.size(),
+        (ps, update) -> {
+          ps.setString(1, update.getValue().name());
+          ps.setLong(2, update.getKey());
+        });
+    return Arrays.stream(counts)
+        .flatMapToInt(Arrays::stream)
+        .map(count -> Math.max(count, 0))
+        .sum();
+  }
+}
@@ -0,0 +1,16 @@
+package com.example.automaticirrigationsystem.repository;
+
+import lombok.Value;
+
+/**
+ * Result of a failed sensor call to write back on its plot.
+ */
+@Value
+public class SensorCallOutcome {
+
+  Long plotId;
+
+  int sensorCallCount;
+
+  boolean hasAlert;
+}
@@ -0,0 +1,22 @@
+package com.example.automaticirrigationsystem.repository;
+
+import com.example.automaticirrigationsystem.domain.enumeration.Status;
+import lombok.Value;
+
+/**
+ * A reading pushed by a sensor, appended as is to the readings store.
+ */
+@Value
+public class SensorReading {
+
+  long sensorId;
+
+  /**
+   * Epoch millis at which the sensor took the reading.
+   */
+  long readAt;
+
+  double moisture;
+
+  Status status;
+}
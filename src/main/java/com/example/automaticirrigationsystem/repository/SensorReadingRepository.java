@@ -0,0 +1,74 @@
+package com.example.automaticirrigationsystem.repository;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * JDBC repository appending the sensor readings in batches, without entities.
+ */
+@Repository
+@Transactional
+@RequiredArgsConstructor
+public class SensorReadingRepository {
+
+  private static final String INSERT_READING = "merge into sensor_reading r"
+      + " using (values (cast(? as bigint), cast(? as bigint), cast(? as double),"
+      + " cast(? as varchar(16)))) n (sensor_id, read_at, moisture, status)"
+      + " on r.sensor_id = n.sensor_id and r.read_at = n.read_at"
+      + " when not matched then insert (sensor_id, read_at, moisture, status)"
+      + " values (n.sensor_id, n.read_at, n.moisture, n.status)";
+
+  private static final String SELECT_SENSOR_IDS = "select id, code from sensor"
+      + " where code in (:codes)";
+
+  private final NamedParameterJdbcTemplate jdbcTemplate;
+
+  /**
+   * Appends readings in one JDBC batch, skipping those already stored for the same sensor and time.
+   *
+   * @param readings the readings to append.
+   * @return the readings appended, those already stored left out.
+   */
+  public List<SensorReading> appendAll(List<SensorReading> readings) {
+    int[][] counts = jdbcTemplate.getJdbcOperations().batchUpdate(INSERT_READING, readings,
+        readings.size(), (ps, reading) -> {
+          ps.setLong(1, reading.getSensorId());
+          ps.setLong(2, reading.getReadAt());
+          ps.setDouble(3, reading.getMoisture());
+          ps.setObject(4, reading.getStatus() == null ? null : reading.getStatus().name(),
+              Types.VARCHAR);
+        });
+    List<SensorReading> appended = new ArrayList<>(readings.size());
+    for (int i = 0; i < readings.size(); i++) {
+      if (counts[0][i] != 0) {
+        appended.add(readings.get(i));
+      }
+    }
+    return appended;
+  }
+
+  /**
+   * Get the ids of sensors by code.
+   *
+   * @param sensorCodes the sensor codes.
+   * @return the id of each existing sensor, by code.
+   */
+  @Transactional(readOnly = true)
+  public Map<String, Long> findSensorIdsByCode(Collection<String> sensorCodes) {
+    Map<String, Long> sensorIds = new HashMap<>();
+    jdbcTemplate.query(SELECT_SENSOR_IDS, new MapSqlParameterSource("codes", sensorCodes),
+        rs -> {
+          sensorIds.put(rs.getString("code"), rs.getLong("id"));
+        });
+    return sensorIds;
+  }
+}
@@ -0,0 +1,277 @@
+package com.example.automaticirrigationsystem.repository;
+
+import com.example.automaticirrigationsystem.domain.enumeration.Resolution;
+import com.example.automaticirrigationsystem.dto.ReadingPointDTO;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * JDBC repository rolling the sensor readings up into 1-minute, 1-hour and 1-day aggregates with
+ * set-based statements, and reading the aggregates back without touching the raw readings. The
+ * buckets are computed as {@link Resolution#bucketStart(long)} does, negative times included.
+ */
+@Repository
+@Transactional
+@RequiredArgsConstructor
+public class SensorReadingRollupRepository {
+
+  private static final String ROLL_UP_READINGS = "insert into sensor_reading_rollup"
+      + " (resolution, sensor_id, bucket_start, sample_count, moisture_sum, moisture_min,"
+      + " moisture_max)"
+      + " select :resolution, sensor_id, bucket, count(moisture), sum(moisture), min(moisture),"
+      + " max(moisture)"
+      + " from (select sensor_id, read_at - mod(mod(read_at, :width) + :width, :width)"
+      + " as bucket, moisture"
+      + " from sensor_reading where read_at >= :from and read_at < :to) r"
+      + " group by sensor_id, bucket";
+
+  private static final String ROLL_UP_ROLLUPS = "insert into sensor_reading_rollup"
+      + " (resolution, sensor_id, bucket_start, sample_count, moisture_sum, moisture_min,"
+      + " moisture_max)"
+      + " select :resolution, sensor_id, bucket, sum(sample_count), sum(moisture_sum),"
+      + " min(moisture_min), max(moisture_max)"
+      + " from (select sensor_id,"
+      + " bucket_start - mod(mod(bucket_start, :width) + :width, :width) as bucket,"
+      + " sample_count, moisture_sum, moisture_min, moisture_max from sensor_reading_rollup"
+      + " where resolution = :source and bucket_start >= :from and bucket_start < :to) r"
+      + " group by sensor_id, bucket";
+
+  private static final String MERGE_BUCKET = "update sensor_reading_rollup"
+      + " set sample_count = sample_count + ?, moisture_sum = coalesce(moisture_sum, 0) + ?,"
+      + " moisture_min = least(coalesce(moisture_min, ?), ?),"
+      + " moisture_max = greatest(coalesce(moisture_max, ?), ?)"
+      + " where resolution = ? and sensor_id = ? and bucket_start = ?";
+
+  private static final String INSERT_BUCKET = "insert into sensor_reading_rollup"
+      + " (resolution, sensor_id, bucket_start, sample_count, moisture_sum, moisture_min,"
+      + " moisture_max) values (?, ?, ?, ?, ?, ?, ?)";
+
+  private static final String SELECT_FIRST_READING =
+      "select min(read_at) from sensor_reading where read_at >= :from";
+
+  private static final String SELECT_FIRST_ROLLUP = "select min(bucket_start)"
+      + " from sensor_reading_rollup where resolution = :source and bucket_start >= :from";
+
+  private static final String SELECT_POINTS = "select r.bucket_start, r.sample_count,"
+      + " r.moisture_sum, r.moisture_min, r.moisture_max"
+      + " from sensor_reading_rollup r join plot p on p.sensor_id = r.sensor_id"
+      + " where p.id = :plotId and r.resolution = :resolution"
+      + " and r.bucket_start >= :from and r.bucket_start < :to order by r.bucket_start";
+
+  private final NamedParameterJdbcTemplate jdbcTemplate;
+
+  /**
+   * Get the watermark of a resolution, locking it until the end of the transaction so that a
+   * single job rolls the resolution up at a time.
+   *
+   * @param resolution the resolution.
+   * @return the epoch millis before which every bucket of the resolution is rolled up.
+   */
+  @Transactional(propagation = Propagation.MANDATORY)
+  public long lockWatermark(Resolution resolution) {
+    Long watermark = jdbcTemplate.queryForObject(
+        "select watermark from sensor_reading_watermark where resolution = :resolution"
+            + " for update", new MapSqlParameterSource("resolution", resolution.name()),
+        Long.class);
+    return watermark == null ? 0 : watermark;
+  }
+
+  /**
+   * Moves the watermark of a resolution.
+   *
+   * @param resolution the resolution.
+   * @param watermark  the epoch millis before which every bucket of the resolution is rolled up.
+   */
+  public void updateWatermark(Resolution resolution, long watermark) {
+    jdbcTemplate.update("update sensor_reading_watermark set watermark = :watermark"
+        + " where resolution = :resolution", new MapSqlParameterSource()
+        .addValue("resolution", resolution.name())
+        .addValue("watermark", watermark));
+  }
+
+  /**
+   * Get the time of the first data a resolution is rolled up from, to skip the empty ranges.
+   *
+   * @param resolution the resolution to roll up.
+   * @param from       the epoch millis to look from.
+   * @return the time of the first reading, or first finer bucket, from then on; null if none.
+   */
+  @Transactional(readOnly = true)
+  public Long findFirstSourceTime(Resolution resolution, long from) {
+    Resolution source = sourceOf(resolution);
+    MapSqlParameterSource params = new MapSqlParameterSource("from", from);
+    if (source == null) {
+      return jdbcTemplate.queryForObject(SELECT_FIRST_READING, params, Long.class);
+    }
+    return jdbcTemplate.queryForObject(SELECT_FIRST_ROLLUP,
+        params.addValue("source", source.name()), Long.class);
+  }
+
+  /**
+   * Aggregates the buckets of a resolution within a range, from the raw readings for the finest
+   * resolution and from the buckets of the finer resolution for the others.
+   *
+   * @param resolution the resolution to roll up.
+   * @param from       the epoch millis of the first bucket, aligned on the resolution.
+   * @param to         the epoch millis of the end of the last bucket, aligned on the resolution.
+   * @return the number of buckets written.
+   */
+  public int rollUp(Resolution resolution, long from, long to) {
+    Resolution source = sourceOf(resolution);
+    MapSqlParameterSource params = new MapSqlParameterSource()
+        .addValue("resolution", resolution.name())
+        .addValue("width", resolution.getMillis())
+        .addValue("from", from)
+        .addValue("to", to);
+    if (source == null) {
+      return jdbcTemplate.update(ROLL_UP_READINGS, params);
+    }
+    return jdbcTemplate.update(ROLL_UP_ROLLUPS, params.addValue("source", source.name()));
+  }
+
+  /**
+   * Adds readings to the buckets of a resolution already rolled up, the buckets they fall in are
+   * updated or created.
+   *
+   * @param resolution the resolution.
+   * @param readings   the readings, all behind the watermark of the resolution.
+   * @return the number of buckets written.
+   */
+  public int mergeReadings(Resolution resolution, List<SensorReading> readings) {
+    Map<List<Long>, Bucket> buckets = new LinkedHashMap<>();
+    for (SensorReading reading : readings) {
+      buckets.computeIfAbsent(
+          List.of(reading.getSensorId(), resolution.bucketStart(reading.getReadAt())),
+          key -> new Bucket()).add(reading.getMoisture());
+    }
+    List<Map.Entry<List<Long>, Bucket>> entries = new ArrayList<>(buckets.entrySet());
+    JdbcOperations jdbcOperations = jdbcTemplate.getJdbcOperations();
+    int[][] updated = jdbcOperations.batchUpdate(MERGE_BUCKET, entries, entries.size(),
+        (ps, entry) -> {
+          Bucket bucket = entry.getValue();
+          ps.setLong(1, bucket.count);
+          ps.setDouble(2, bucket.sum);
+          ps.setDouble(3, bucket.min);
+          ps.setDouble(4, bucket.min);
+          ps.setDouble(5, bucket.max);
+          ps.setDouble(6, bucket.max);
+          ps.setString(7, resolution.name());
+          ps.setLong(8, entry.getKey().get(0));
+          ps.setLong(9, entry.getKey().get(1));
+        });
+    List<Map.Entry<List<Long>, Bucket>> missing = new ArrayList<>();
+    for (int i = 0; i < entries.size(); i++) {
+      if (updated[0][i] == 0) {
+        missing.add(entries.get(i));
+      }
+    }
+    if (!missing.isEmpty()) {
+      jdbcOperations.batchUpdate(INSERT_BUCKET, missing, missing.size(), (ps, entry) -> {
+        Bucket bucket = entry.getValue();
+        ps.setString(1, resolution.name());
+        ps.setLong(2, entry.getKey().get(0));
+        ps.setLong(3, entry.getKey().get(1));
+        ps.setLong(4, bucket.count);
+        ps.setDouble(5, bucket.sum);
+        ps.setDouble(6, bucket.min);
+        ps.setDouble(7, bucket.max);
+      });
+    }
+    return entries.size();
+  }
+
+  /**
+   * Deletes the raw readings taken before a time.
+   *
+   * @param before the epoch millis.
+   * @return the number of readings deleted.
+   */
+  public int deleteReadingsBefore(long before) {
+    return jdbcTemplate.update("delete from sensor_reading where read_at < :before",
+        new MapSqlParameterSource("before", before));
+  }
+
+  /**
+   * Deletes the buckets of a resolution starting before a time.
+   *
+   * @param resolution the resolution.
+   * @param before     the epoch millis.
+   * @return the number of buckets deleted.
+   */
+  public int deleteRollupsBefore(Resolution resolution, long before) {
+    return jdbcTemplate.update("delete from sensor_reading_rollup"
+        + " where resolution = :resolution and bucket_start < :before", new MapSqlParameterSource()
+        .addValue("resolution", resolution.name())
+        .addValue("before", before));
+  }
+
+  /**
+   * Get the buckets of the sensor of a plot within a range.
+   *
+   * @param plotId     the plot id.
+   * @param resolution the resolution.
+   * @param from       the epoch millis of the first bucket.
+   * @param to         the epoch millis the last bucket starts before.
+   * @return the aggregates, ordered by time.
+   */
+  @Transactional(readOnly = true)
+  public List<ReadingPointDTO> findPointsOfPlot(Long plotId, Resolution resolution, long from,
+      long to) {
+    MapSqlParameterSource params = new MapSqlParameterSource()
+        .addValue("plotId", plotId)
+        .addValue("resolution", resolution.name())
+        .addValue("from", from)
+        .addValue("to", to);
+    return jdbcTemplate.query(SELECT_POINTS, params, (rs, rowNum) -> {
+      ReadingPointDTO point = new ReadingPointDTO();
+      point.setTime(rs.getLong("bucket_start"));
+      point.setCount(rs.getLong("sample_count"));
+      Double sum = rs.getObject("moisture_sum", Double.class);
+      point.setAverage(sum == null || point.getCount() == 0 ? null : sum / point.getCount());
+      point.setMin(rs.getObject("moisture_min", Double.class));
+      point.setMax(rs.getObject("moisture_max", Double.class));
+      return point;
+    });
+  }
+
+  /**
+   * The aggregate of the readings merged into one bucket.
+   */
+  private static final class Bucket {
+
+    private long count;
+
+    private double sum;
+
+    private double min = Double.POSITIVE_INFINITY;
+
+    private double max = Double.NEGATIVE_INFINITY;
+
+    private void add(double moisture) {
+      count++;
+      sum += moisture;
+      min = Math.min(min, moisture);
+      max = Math.max(max, moisture);
+    }
+  }
+
+  private static Resolution sourceOf(Resolution resolution) {
+    switch (resolution) {
+      case HOUR:
+        return Resolution.MINUTE;
+      case DAY:
+        return Resolution.HOUR;
+      default:
+        return null;
+    }
+  }
+}
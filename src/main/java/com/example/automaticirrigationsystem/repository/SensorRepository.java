@@ -1,6 +1,8 @@
 package com.example.automaticirrigationsystem.repository;
 
 import com.example.automaticirrigationsystem.domain.Sensor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
@@ -11,4 +13,5 @@ import org.springframework.stereotype.Repository;
 @Repository
 public interface SensorRepository extends JpaRepository<Sensor, Long> {
 
+  Slice<Sensor> findAllByIdGreaterThan(Long id, Pageable pageable);
 }
@@ -0,0 +1,36 @@
+package com.example.automaticirrigationsystem.service;
+
+import com.example.automaticirrigationsystem.domain.enumeration.Status;
+import com.example.automaticirrigationsystem.repository.PlotIrrigationState;
+import lombok.Value;
+
+/**
+ * Immutable copy of the irrigation state of a plot, as held by the {@link PlotStateCache}.
+ */
+@Value
+class CachedPlotState implements PlotIrrigationState {
+
+  Long id;
+
+  Integer sensorCallCount;
+
+  Status sensorStatus;
+
+  Long sensorId;
+
+  Boolean isIrrigated;
+
+  Boolean hasAlert;
+
+  String lastSensorCallTime;
+
+  String startIrrigationTime;
+
+  Integer slotsCount;
+
+  static CachedPlotState of(PlotIrrigationState state) {
+    return new CachedPlotState(state.getId(), state.getSensorCallCount(), state.getSensorStatus(),
+        state.getSensorId(), state.getIsIrrigated(), state.getHasAlert(),
+        state.getLastSensorCallTime(), state.getStartIrrigationTime(), state.getSlotsCount());
+  }
+}
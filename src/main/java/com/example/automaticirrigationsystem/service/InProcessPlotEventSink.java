@@ -0,0 +1,47 @@
+package com.example.automaticirrigationsystem.service;
+
+import com.example.automaticirrigationsystem.dto.PlotEventDTO;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import org.springframework.stereotype.Component;
+
+/**
+ * Sink handing the relayed plot events to listeners of the same application, such as the tests or
+ * in-process reports.
+ */
+@Component
+public class InProcessPlotEventSink implements PlotEventSink {
+
+  private final List<Consumer<List<PlotEventDTO>>> listeners = new CopyOnWriteArrayList<>();
+
+  @Override
+  public String getName() {
+    return "in-process";
+  }
+
+  @Override
+  public void publish(List<PlotEventDTO> events) {
+    for (Consumer<List<PlotEventDTO>> listener : listeners) {
+      listener.accept(events);
+    }
+  }
+
+  /**
+   * Adds a listener of the relayed events.
+   *
+   * @param listener called with every batch of events relayed.
+   */
+  public void addListener(Consumer<List<PlotEventDTO>> listener) {
+    listeners.add(listener);
+  }
+
+  /**
+   * Removes a listener of the relayed events.
+   *
+   * @param listener the listener added.
+   */
+  public void removeListener(Consumer<List<PlotEventDTO>> listener) {
+    listeners.remove(listener);
+  }
+}
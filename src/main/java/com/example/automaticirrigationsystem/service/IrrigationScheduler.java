@@ -0,0 +1,390 @@
+package com.example.automaticirrigationsystem.service;
+
+import com.example.automaticirrigationsystem.domain.enumeration.IrrigationAction;
+import com.example.automaticirrigationsystem.dto.IrrigationResultDTO;
+import com.example.automaticirrigationsystem.repository.PlotIrrigationDemand;
+import com.example.automaticirrigationsystem.repository.PlotRepository;
+import com.example.automaticirrigationsystem.util.TransactionUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ScheduledFuture;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+
+/**
+ * Starts and ends the irrigation of the plots on their own, from the crop type, the water amount
+ * and the slots of each plot. A crop is irrigated once per interval of its {@link
+ * com.example.automaticirrigationsystem.domain.enumeration.CropType}, for as long as its slots take
+ * to deliver the water amount.
+ *
+ * <p>The upcoming run of every plot is held in a queue ordered by due time: the plots are read once
+ * on start, then only when one of them is written, and each tick takes the due runs off the head of
+ * the queue and applies them in batches, with the same rules as the irrigation requests.
+ *
+ * <p>A plot queued on the water supply is started by the plots ending irrigation, its start isn't
+ * tried again while it waits. The end of a plot found started is due once its water is delivered
+ * from the time it actually started.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class IrrigationScheduler {
+
+  private static final DateTimeFormatter DATE_TIME_FORMATTER =
+      DateTimeFormatter.ofPattern(IrrigationService.DATE_TIME_FORMAT);
+
+  private final PlotRepository plotRepository;
+  private final IrrigationService irrigationService;
+  private final WaterSupply waterSupply;
+  private final TaskScheduler maintenanceScheduler;
+  private final MeterRegistry meterRegistry;
+  @Value("${irrigation.schedule.enabled:false}")
+  private boolean enabled;
+  @Value("${irrigation.schedule.tick:1000}")
+  private long tick = 1000;
+  @Value("${irrigation.schedule.batch-size:1000}")
+  private int batchSize = 1000;
+  /**
+   * Water delivered by one slot per minute.
+   */
+  @Value("${irrigation.slot-flow-rate:10}")
+  private double slotFlowRate = 10;
+  @Value("${irrigation.schedule.retry-delay:300000}")
+  private long retryDelay = 300000;
+  private final Object lock = new Object();
+  private final PriorityQueue<Run> queue = new PriorityQueue<>(
+      Comparator.comparingLong((Run run) -> run.dueAt).thenComparingLong(run -> run.plotId));
+  /**
+   * The current run of each plot, the runs in the queue that aren't current are skipped.
+   */
+  private final Map<Long, Run> runs = new HashMap<>();
+  private final Map<IrrigationAction, Counter> transitionCounters =
+      new EnumMap<>(IrrigationAction.class);
+  private Timer tickTimer;
+  private ScheduledFuture<?> ticker;
+
+  @PostConstruct
+  public void start() {
+    tickTimer = Timer.builder("irrigation.schedule.tick")
+        .description("Time taken to apply the due irrigation runs")
+        .register(meterRegistry);
+    for (IrrigationAction action : IrrigationAction.values()) {
+      transitionCounters.put(action, Counter.builder("irrigation.schedule.transitions")
+          .description("Plots the scheduler started or ended the irrigation of")
+          .tag("action", action.name())
+          .register(meterRegistry));
+    }
+    Gauge.builder("irrigation.schedule.runs", this, IrrigationScheduler::size)
+        .description("Plots with an upcoming irrigation run")
+        .register(meterRegistry);
+    if (enabled) {
+      load(plotRepository.findIrrigationDemands(), System.currentTimeMillis());
+      log.debug("irrigation schedule loaded with {} plots", size());
+      ticker = maintenanceScheduler.scheduleWithFixedDelay(this::runDueSafely,
+          Instant.now().plusMillis(tick), Duration.ofMillis(tick));
+    }
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (ticker != null) {
+      ticker.cancel(false);
+    }
+  }
+
+  /**
+   * Computes the schedule of plots again after their crop, water amount or slots were written. The
+   * plots are read within the current transaction and scheduled once it commits.
+   *
+   * @param plotIds the plot ids.
+   */
+  public void reschedule(Collection<Long> plotIds) {
+    if (enabled && !plotIds.isEmpty()) {
+      List<Long> ids = List.copyOf(plotIds);
+      List<PlotIrrigationDemand> demands = plotRepository.findIrrigationDemandsByIdIn(ids);
+      TransactionUtil.afterCommit(() -> {
+        synchronized (lock) {
+          ids.forEach(runs::remove);
+        }
+        load(demands, System.currentTimeMillis());
+      });
+    }
+  }
+
+  /**
+   * Stops scheduling a deleted plot.
+   *
+   * @param plotId the plot id.
+   */
+  public void cancel(Long plotId) {
+    if (enabled) {
+      TransactionUtil.afterCommit(() -> {
+        synchronized (lock) {
+          runs.remove(plotId);
+        }
+      });
+    }
+  }
+
+  /**
+   * Applies the runs due at a time, in batches of starts and of ends, and schedules the next run of
+   * each plot from the outcome.
+   *
+   * @param now the epoch millis the tick runs at.
+   * @return the number of runs applied.
+   */
+  public int runDue(long now) {
+    int applied = 0;
+    Map<IrrigationAction, List<Run>> batch;
+    while (!(batch = pollDue(now)).isEmpty()) {
+      for (Map.Entry<IrrigationAction, List<Run>> due : batch.entrySet()) {
+        apply(due.getKey(), due.getValue(), now);
+        applied += due.getValue().size();
+      }
+    }
+    return applied;
+  }
+
+  /**
+   * Get the number of plots scheduled.
+   *
+   * @return the number of upcoming runs.
+   */
+  public int size() {
+    synchronized (lock) {
+      return runs.size();
+    }
+  }
+
+  /**
+   * Computes the duration of a run: the time the slots of the plot take to deliver its water
+   * amount, at least a minute and at most half the interval of the crop.
+   *
+   * @param demand the plot.
+   * @return the duration in millis.
+   */
+  long durationOf(PlotIrrigationDemand demand) {
+    double minutes = demand.getWaterAmount() / (demand.getSlotsCount() * slotFlowRate);
+    long millis = (long) Math.ceil(minutes * 60_000);
+    return Math.min(Math.max(millis, 60_000), demand.getCropType().getIntervalMillis() / 2);
+  }
+
+  private void load(List<PlotIrrigationDemand> demands, long now) {
+    synchronized (lock) {
+      for (PlotIrrigationDemand demand : demands) {
+        if (demand.getSlotsCount() == null || demand.getSlotsCount() == 0) {
+          continue;
+        }
+        long interval = demand.getCropType().getIntervalMillis();
+        long duration = durationOf(demand);
+        if (Boolean.TRUE.equals(demand.getIsIrrigated())) {
+          long startedAt = parseTime(demand.getStartIrrigationTime(), now);
+          put(new Run(demand.getId(), IrrigationAction.END, Math.max(now, startedAt + duration),
+              interval, duration));
+        } else {
+          long lastIrrigatedAt = parseTime(demand.getLastIrrigationTime(), now - interval);
+          put(new Run(demand.getId(), IrrigationAction.START,
+              Math.max(now, lastIrrigatedAt + interval), interval, duration));
+        }
+      }
+    }
+  }
+
+  private Map<IrrigationAction, List<Run>> pollDue(long now) {
+    Map<IrrigationAction, List<Run>> batch = new EnumMap<>(IrrigationAction.class);
+    int polled = 0;
+    synchronized (lock) {
+      while (polled < batchSize && !queue.isEmpty() && queue.peek().dueAt <= now) {
+        Run run = queue.poll();
+        if (runs.get(run.plotId) != run) {
+          continue;
+        }
+        if (run.action == IrrigationAction.START && waterSupply.isQueued(run.plotId)) {
+          // started once admitted, looked at again on the next tick
+          put(run.next(IrrigationAction.START, now + tick));
+        } else {
+          batch.computeIfAbsent(run.action, action -> new ArrayList<>()).add(run);
+          polled++;
+        }
+      }
+    }
+    return batch;
+  }
+
+  private void apply(IrrigationAction action, List<Run> due, long now) {
+    Map<Long, Run> byPlot = new LinkedHashMap<>();
+    due.forEach(run -> byPlot.put(run.plotId, run));
+    List<IrrigationResultDTO> results;
+    try {
+      results = irrigationService.irrigateAll(action, byPlot.keySet());
+    } catch (RuntimeException e) {
+      log.error("{} scheduled {} runs failed with cause = '{}'", due.size(), action,
+          e.getMessage(), e);
+      synchronized (lock) {
+        due.stream()
+            .filter(run -> runs.get(run.plotId) == run)
+            .forEach(run -> put(run.next(action, now + retryDelay)));
+      }
+      return;
+    }
+
+    int transitions = 0;
+    List<Run> alreadyStarted = new ArrayList<>();
+    synchronized (lock) {
+      for (IrrigationResultDTO result : results) {
+        Run run = byPlot.get(result.getPlotId());
+        Run next = null;
+        switch (result.getOutcome()) {
+          case STARTED:
+            transitions++;
+            next = run.next(IrrigationAction.END, now + run.duration);
+            break;
+          case ALREADY_STARTED:
+            // ended from the time it started, read once the batch is applied
+            alreadyStarted.add(run);
+            continue;
+          case ENDED:
+            transitions++;
+            next = run.next(IrrigationAction.START, now + run.interval - run.duration);
+            break;
+          case NOT_STARTED:
+            next = run.next(IrrigationAction.START, now + run.interval - run.duration);
+            break;
+          case NOT_FOUND:
+            break;
+          case QUEUED:
+            // started once admitted on the water supply, ended from then on
+            next = run.next(IrrigationAction.START, now + tick);
+            break;
+          default:
+            // the sensor is down, being called, or the plot has alert: try again later
+            next = run.next(run.action, now + retryDelay);
+            break;
+        }
+        // a plot written while its run was applied was scheduled again from the database
+        if (runs.get(run.plotId) == run) {
+          if (next == null) {
+            runs.remove(run.plotId);
+          } else {
+            put(next);
+          }
+        }
+      }
+    }
+    scheduleEnds(alreadyStarted, now);
+    transitionCounters.get(action).increment(transitions);
+    log.debug("{} scheduled {} runs applied, {} plots transitioned", due.size(), action,
+        transitions);
+  }
+
+  /**
+   * Schedules the end of plots found started, once their water is delivered from the time they
+   * started: by a request, or when the water supply admitted them.
+   */
+  private void scheduleEnds(List<Run> started, long now) {
+    if (started.isEmpty()) {
+      return;
+    }
+    Map<Long, Run> byPlot = new HashMap<>();
+    started.forEach(run -> byPlot.put(run.plotId, run));
+    List<PlotIrrigationDemand> demands =
+        plotRepository.findIrrigationDemandsByIdIn(List.copyOf(byPlot.keySet()));
+    synchronized (lock) {
+      for (PlotIrrigationDemand demand : demands) {
+        Run run = byPlot.remove(demand.getId());
+        if (runs.get(run.plotId) == run) {
+          long startedAt = parseTime(demand.getStartIrrigationTime(), now);
+          put(run.next(IrrigationAction.END, Math.max(now, startedAt + run.duration)));
+        }
+      }
+      // deleted meanwhile
+      byPlot.values().forEach(run -> runs.remove(run.plotId, run));
+    }
+  }
+
+  private void put(Run run) {
+    runs.put(run.plotId, run);
+    queue.add(run);
+  }
+
+  private void runDueSafely() {
+    try {
+      tickTimer.record(() -> runDue(System.currentTimeMillis()));
+    } catch (RuntimeException e) {
+      log.error("scheduled irrigation failed with cause = '{}'", e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Reads an irrigation time as written by the irrigation service, or as ISO date time.
+   */
+  private static long parseTime(String time, long defaultTime) {
+    if (time == null || time.isBlank()) {
+      return defaultTime;
+    }
+    String trimmed = time.trim();
+    try {
+      return toEpochMillis(LocalDateTime.parse(trimmed, DATE_TIME_FORMATTER));
+    } catch (DateTimeParseException e) {
+      try {
+        return toEpochMillis(LocalDateTime.parse(trimmed));
+      } catch (DateTimeParseException ignored) {
+        return defaultTime;
+      }
+    }
+  }
+
+  private static long toEpochMillis(LocalDateTime time) {
+    return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+  }
+
+  /**
+   * The upcoming start or end of the irrigation of a plot.
+   */
+  private static final class Run {
+
+    private final long plotId;
+
+    private final IrrigationAction action;
+
+    private final long dueAt;
+
+    private final long interval;
+
+    private final long duration;
+
+    private Run(long plotId, IrrigationAction action, long dueAt, long interval, long duration) {
+      this.plotId = plotId;
+      this.action = action;
+      this.dueAt = dueAt;
+      this.interval = interval;
+      this.duration = duration;
+    }
+
+    private Run next(IrrigationAction nextAction, long nextDueAt) {
+      return new Run(plotId, nextAction, nextDueAt, interval, duration);
+    }
+  }
+}
@@ -1,23 +1,42 @@
 package com.example.automaticirrigationsystem.service;
 
 import com.example.automaticirrigationsystem.aop.logging.Loggable;
+import com.example.automaticirrigationsystem.aop.transition.PlotId;
+import com.example.automaticirrigationsystem.aop.transition.PlotTransition;
 import com.example.automaticirrigationsystem.domain.Plot;
+import com.example.automaticirrigationsystem.domain.enumeration.IrrigationAction;
+import com.example.automaticirrigationsystem.domain.enumeration.IrrigationOutcome;
+import com.example.automaticirrigationsystem.domain.enumeration.PlotEventType;
 import com.example.automaticirrigationsystem.domain.enumeration.Status;
+import com.example.automaticirrigationsystem.dto.IrrigationResultDTO;
 import com.example.automaticirrigationsystem.dto.PlotDTO;
 import com.example.automaticirrigationsystem.exception.BadRequestException;
 import com.example.automaticirrigationsystem.exception.PlotHasAlreadyStartedToBeIrrigated;
 import com.example.automaticirrigationsystem.exception.ResourceNotFoundException;
 import com.example.automaticirrigationsystem.exception.SensorCantBeReachedException;
+import com.example.automaticirrigationsystem.exception.WaterSupplyAtCapacityException;
+import com.example.automaticirrigationsystem.repository.PlotBatchRepository;
+import com.example.automaticirrigationsystem.repository.PlotIrrigationState;
 import com.example.automaticirrigationsystem.repository.PlotRepository;
 import com.example.automaticirrigationsystem.service.mapper.PlotMapper;
+import com.example.automaticirrigationsystem.util.TransactionUtil;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 /**
  * Service implementation for manipulating plot irrigation {@link Plot}.
@@ -30,51 +49,251 @@ public class IrrigationService {
 
   public static final String DATE_TIME_FORMAT = "dd-MM-yyyy HH:mm:ss";
   private final PlotRepository plotRepository;
+  private final PlotBatchRepository plotBatchRepository;
   private final PlotMapper plotMapper;
   private final SensorCallingScheduler sensorCallingScheduler;
+  private final PlotStateCache plotStateCache;
+  private final PlotAlertIndex plotAlertIndex;
+  private final PlotEventBroadcaster plotEventBroadcaster;
+  private final WaterSupply waterSupply;
+  private final PlotLocks plotLocks;
+  private final TransactionTemplate transactionTemplate;
 
   @Value("${tries.count}")
   private int triesCount = 10;
 
   /**
-   * start irrigate a plot.
+   * start irrigate a plot. The plots that can't start are turned down from the cached irrigation
+   * state, only the plot starting to be irrigated is loaded. A plot whose draw doesn't fit in the
+   * water supply left is queued, it starts once enough plots end. The transition holds the lock
+   * of the plot and is run again if the plot was written meanwhile.
    *
    * @param plotId the plot id to start irrigate.
    * @return the persisted plot.
    */
   @Loggable
-  public Optional<PlotDTO> startIrrigate(Long plotId) {
+  @PlotTransition
+  public Optional<PlotDTO> startIrrigate(@PlotId Long plotId) {
     log.debug("Request to start irrigate a Plot : {}", plotId);
-    Optional<Plot> existPlot = plotRepository.findById(plotId);
+    PlotIrrigationState state = plotStateCache.get(plotId)
+        .orElseThrow(() -> new ResourceNotFoundException("plot doesn't exist!"));
 
-    existPlot.ifPresentOrElse(plot -> {
-      if (plot.getSensorCallCount() > 0 && !plot.getHasAlert()) {
+    if (state.getSensorCallCount() > 0 && !state.getHasAlert()
+        || sensorCallingScheduler.isCallingSensor(plotId)) {
+      throw new SensorCantBeReachedException(
+          "Be patient!"
+              + " sensor is scheduled to be called " + state.getSensorCallCount() + "/"
+              + triesCount + " " + state.getLastSensorCallTime());
+    }
+    if (state.getSensorStatus() == null) {
+      throw new BadRequestException("The Plot has no sensor, please attach one first");
+    }
+    if (state.getSensorStatus() != Status.UP) {
+      if (state.getHasAlert()) {
         throw new SensorCantBeReachedException(
-            "Be patient!"
-                + " sensor is scheduled to be called " + plot.getSensorCallCount() + "/"
-                + triesCount + " " + plot.getLastSensorCallTime());
+            "Sensor is DOWN, the Plot has alert ON, please try to fix  the sensor first");
+      }
+      sensorCallingScheduler.tryToConnectToSensor(plotId);
+      throw new SensorCantBeReachedException(
+          "Sensor is DOWN, a time schedule is arranged to re-call the sensor");
+    }
+    if (state.getIsIrrigated()) {
+      throw new PlotHasAlreadyStartedToBeIrrigated(
+          "Irrigation has already  started by: " + state.getStartIrrigationTime());
+    }
+    if (!waterSupply.admit(plotId, waterSupply.drawOf(state.getSlotsCount()))) {
+      throw new WaterSupplyAtCapacityException(
+          "The water supply is at capacity, the Plot is queued to start once flow is available");
+    }
+    TransactionUtil.afterRollback(() -> waterSupply.cancel(List.of(plotId)));
+
+    Optional<Plot> existPlot = plotRepository.findById(plotId);
+    if (existPlot.isEmpty()) {
+      waterSupply.cancel(List.of(plotId));
+    }
+    existPlot.ifPresent(plot -> {
+      if (plot.getIsIrrigated()) {
+        throw new PlotHasAlreadyStartedToBeIrrigated(
+            "Irrigation has already  started by: " + plot.getStartIrrigationTime());
+      }
+      boolean hadAlert = Boolean.TRUE.equals(plot.getHasAlert());
+      updatePlotIrrigationSuccess(plot);
+      plotStateCache.evict(plotId);
+      plotAlertIndex.clear(List.of(plotId));
+      plotEventBroadcaster.publish(List.of(plotId), PlotEventType.IRRIGATION_STARTED);
+      if (hadAlert) {
+        plotEventBroadcaster.publish(List.of(plotId), PlotEventType.ALERT_CLEARED);
+      }
+    });
+    return existPlot.map(plotMapper::toDto);
+  }
+
+  /**
+   * start or end irrigate many plots at once. The plots are checked with one query and the eligible
+   * ones are updated with set-based statements, each plot follows the same rules as on its own:
+   * the plots that don't fit in the water supply left are queued. The plots are transitioned in
+   * parts, each holding the locks of its plots in a transaction of its own, so that a large batch
+   * doesn't hold up the requests on single plots.
+   *
+   * @param action  whether to start or end irrigation.
+   * @param plotIds the plot ids, duplicates are ignored.
+   * @return the outcome of each plot, in request order.
+   */
+  @Loggable
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
+  public List<IrrigationResultDTO> irrigateAll(IrrigationAction action,
+      Collection<Long> plotIds) {
+    log.debug("Request to {} irrigate {} Plots", action, plotIds.size());
+    List<Long> uniquePlotIds = List.copyOf(new LinkedHashSet<>(plotIds));
+    List<IrrigationResultDTO> results = new ArrayList<>(uniquePlotIds.size());
+    for (List<Long> part : plotLocks.partition(uniquePlotIds)) {
+      results.addAll(plotLocks.runTransition(part,
+          () -> transactionTemplate.execute(status -> irrigatePart(action, part))));
+    }
+    return results;
+  }
+
+  /**
+   * Gives the water supply drawn by plots back, once they ended irrigation or were deleted. The
+   * waiting plots it admits are started once the locks of the plots ending are released, each
+   * part holding the locks of its plots: the waiting plots that can't start anymore give their
+   * draw back in turn.
+   *
+   * @param plotIds the plot ids.
+   */
+  public void releaseWater(Collection<Long> plotIds) {
+    List<Long> admitted = waterSupply.release(plotIds);
+    if (!admitted.isEmpty()) {
+      plotLocks.afterUnlock(() -> startAdmitted(admitted));
+    }
+  }
+
+  private List<IrrigationResultDTO> irrigatePart(IrrigationAction action, List<Long> plotIds) {
+    Map<Long, PlotIrrigationState> plots = plotStateCache.getAll(plotIds);
+
+    Map<Long, IrrigationOutcome> outcomes = new LinkedHashMap<>();
+    List<Long> eligible = new ArrayList<>();
+    for (Long plotId : plotIds) {
+      PlotIrrigationState plot = plots.get(plotId);
+      IrrigationOutcome outcome;
+      if (plot == null) {
+        outcome = IrrigationOutcome.NOT_FOUND;
+      } else if (action == IrrigationAction.START) {
+        outcome = startOutcome(plot);
       } else {
-        if (plot.getPlotSensor().getStatus() == Status.UP) {
-          if (plot.getIsIrrigated()) {
-            throw new PlotHasAlreadyStartedToBeIrrigated(
-                "Irrigation has already  started by: " + plot.getStartIrrigationTime());
-          }
-          updatePlotIrrigationSuccess(plot);
+        outcome = endOutcome(plot);
+      }
+      if (outcome == IrrigationOutcome.STARTED || outcome == IrrigationOutcome.ENDED) {
+        eligible.add(plotId);
+      }
+      outcomes.put(plotId, outcome);
+    }
+
+    if (action == IrrigationAction.START) {
+      List<Long> admitted = new ArrayList<>();
+      for (Long plotId : eligible) {
+        if (waterSupply.admit(plotId, waterSupply.drawOf(plots.get(plotId).getSlotsCount()))) {
+          admitted.add(plotId);
         } else {
-          if (plot.getHasAlert()) {
-            throw new SensorCantBeReachedException(
-                "Sensor is DOWN, the Plot has alert ON, please try to fix  the sensor first");
-          }
-          sensorCallingScheduler.tryToConnectToSensor(plot);
-          throw new SensorCantBeReachedException(
-              "Sensor is DOWN, a time schedule is arranged to re-call the sensor");
+          outcomes.put(plotId, IrrigationOutcome.QUEUED);
         }
       }
-    }, () -> {
-      throw new ResourceNotFoundException("plot doesn't exist!");
-    });
+      TransactionUtil.afterRollback(() -> waterSupply.cancel(admitted));
+      start(admitted, plots);
+    } else if (!eligible.isEmpty()) {
+      plotBatchRepository.endIrrigation(eligible, getFormattedNow());
+      plotEventBroadcaster.publish(eligible, PlotEventType.IRRIGATION_ENDED);
+      plotStateCache.evictAll(eligible);
+      releaseWater(eligible);
+    }
+    return outcomes.entrySet().stream()
+        .map(outcome -> new IrrigationResultDTO(outcome.getKey(), outcome.getValue()))
+        .collect(Collectors.toList());
+  }
 
-    return existPlot.map(plotMapper::toDto);
+  private void startAdmitted(List<Long> admitted) {
+    for (List<Long> part : plotLocks.partition(admitted)) {
+      List<Long> rejected;
+      try {
+        rejected = plotLocks.runTransition(part,
+            () -> transactionTemplate.execute(status -> startAdmittedPart(part)));
+      } catch (RuntimeException e) {
+        log.error("{} queued plots failed to start with cause = '{}'", part.size(),
+            e.getMessage(), e);
+        rejected = part;
+      }
+      // released once the part completed, so that the plots it admits aren't lost to a rollback
+      List<Long> next = waterSupply.release(rejected);
+      if (!next.isEmpty()) {
+        startAdmitted(next);
+      }
+    }
+  }
+
+  /**
+   * Starts the admitted plots that still can.
+   *
+   * @return the admitted plots that can't start anymore.
+   */
+  private List<Long> startAdmittedPart(List<Long> admitted) {
+    Map<Long, PlotIrrigationState> plots = plotStateCache.getAll(admitted);
+    List<Long> startable = new ArrayList<>();
+    List<Long> rejected = new ArrayList<>();
+    for (Long plotId : admitted) {
+      PlotIrrigationState plot = plots.get(plotId);
+      IrrigationOutcome outcome = plot == null ? IrrigationOutcome.NOT_FOUND : startOutcome(plot);
+      if (outcome == IrrigationOutcome.STARTED) {
+        // admitted again when run after a rollback gave the draw back, without drawing twice
+        if (waterSupply.admit(plotId, waterSupply.drawOf(plot.getSlotsCount()))) {
+          startable.add(plotId);
+        }
+      } else if (outcome != IrrigationOutcome.ALREADY_STARTED) {
+        rejected.add(plotId);
+      }
+    }
+    log.debug("{} queued plots admitted on the water supply, {} can't start anymore",
+        startable.size(), rejected.size());
+    TransactionUtil.afterRollback(() -> waterSupply.cancel(startable));
+    start(startable, plots);
+    return rejected;
+  }
+
+  private void start(List<Long> plotIds, Map<Long, PlotIrrigationState> plots) {
+    if (plotIds.isEmpty()) {
+      return;
+    }
+    plotBatchRepository.startIrrigation(plotIds, getFormattedNow());
+    plotAlertIndex.clear(plotIds);
+    plotEventBroadcaster.publish(plotIds, PlotEventType.IRRIGATION_STARTED);
+    plotEventBroadcaster.publish(plotIds.stream()
+        .filter(plotId -> Boolean.TRUE.equals(plots.get(plotId).getHasAlert()))
+        .collect(Collectors.toList()), PlotEventType.ALERT_CLEARED);
+    plotStateCache.evictAll(plotIds);
+  }
+
+  private IrrigationOutcome startOutcome(PlotIrrigationState plot) {
+    boolean hasAlert = Boolean.TRUE.equals(plot.getHasAlert());
+    if (plot.getSensorCallCount() != null && plot.getSensorCallCount() > 0 && !hasAlert
+        || sensorCallingScheduler.isCallingSensor(plot.getId())) {
+      return IrrigationOutcome.SENSOR_BEING_CALLED;
+    }
+    if (plot.getSensorStatus() == null) {
+      return IrrigationOutcome.NO_SENSOR;
+    }
+    if (plot.getSensorStatus() == Status.UP) {
+      return Boolean.TRUE.equals(plot.getIsIrrigated())
+          ? IrrigationOutcome.ALREADY_STARTED : IrrigationOutcome.STARTED;
+    }
+    if (hasAlert) {
+      return IrrigationOutcome.ALERT_ON;
+    }
+    sensorCallingScheduler.tryToConnectToSensor(plot.getId());
+    return IrrigationOutcome.SENSOR_DOWN;
+  }
+
+  private IrrigationOutcome endOutcome(PlotIrrigationState plot) {
+    return Boolean.TRUE.equals(plot.getIsIrrigated())
+        ? IrrigationOutcome.ENDED : IrrigationOutcome.NOT_STARTED;
   }
 
   private void updatePlotIrrigationSuccess(Plot plot) {
@@ -84,7 +303,6 @@ public class IrrigationService {
     plot.setLastIrrigationTime(getFormattedNow());
     plot.setStartIrrigationTime(getFormattedNow());
     plot.setIsIrrigated(true);
-    plot.setHasAlert(false);
     plot.getPlotTimerSlots().forEach(plotSlot -> plotSlot.setStatus(Status.UP));
   }
 
@@ -93,18 +311,29 @@ public class IrrigationService {
   }
 
   @Loggable
-  public Optional<PlotDTO> endIrrigate(Long plotId) {
+  @PlotTransition
+  public Optional<PlotDTO> endIrrigate(@PlotId Long plotId) {
     log.debug("Request to end irrigate a Plot : {}", plotId);
+    Optional<PlotIrrigationState> state = plotStateCache.get(plotId);
+    if (state.isEmpty()) {
+      return Optional.empty();
+    }
+    if (Boolean.FALSE.equals(state.get().getIsIrrigated())) {
+      throw new BadRequestException("Please start irrigate first!");
+    }
     Optional<Plot> existPlot = plotRepository.findById(plotId);
 
     return existPlot.map(plot -> {
       if (Boolean.FALSE.equals(plot.getIsIrrigated())) {
         throw new BadRequestException("Please start irrigate first!");
       }
+      plotStateCache.evict(plotId);
+      plotEventBroadcaster.publish(List.of(plotId), PlotEventType.IRRIGATION_ENDED);
       plot.setIsIrrigated(false);
       plot.setLastIrrigationTime(
           DateTimeFormatter.ofPattern(DATE_TIME_FORMAT).format(LocalDateTime.now()));
       plot.getPlotTimerSlots().forEach(plotSlot -> plotSlot.setStatus(Status.DOWN));
+      releaseWater(List.of(plotId));
 
       return plot;
     }).map(plotMapper::toDto);
@@ -0,0 +1,81 @@
+package com.example.automaticirrigationsystem.service;
+
+import com.example.automaticirrigationsystem.repository.PlotRepository;
+import com.example.automaticirrigationsystem.util.TransactionUtil;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/**
+ * In-memory set of the ids of the plots with alert, built once on start and then kept up to date
+ * by every write raising or clearing a plot alert. A change made within a transaction is applied
+ * once the transaction commits, so a rolled back write leaves the index as it was.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class PlotAlertIndex {
+
+  private final PlotRepository plotRepository;
+  private final MeterRegistry meterRegistry;
+  private final Set<Long> alertPlotIds = ConcurrentHashMap.newKeySet();
+
+  @PostConstruct
+  public void rebuild() {
+    List<Long> plotIds = plotRepository.findIdsByHasAlertIsTrue();
+    alertPlotIds.addAll(plotIds);
+    alertPlotIds.retainAll(plotIds);
+    log.debug("alert index built with {} plots", alertPlotIds.size());
+    Gauge.builder("plot.alerts", alertPlotIds, Set::size)
+        .description("Plots with alert")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Get the ids of the plots with alert.
+   *
+   * @return a snapshot of the ids of the plots with alert.
+   */
+  public Set<Long> getAlertPlotIds() {
+    return Set.copyOf(alertPlotIds);
+  }
+
+  /**
+   * Records plots whose alert was raised.
+   *
+   * @param plotIds the plot ids.
+   */
+  public void raise(Collection<Long> plotIds) {
+    TransactionUtil.afterCommit(() -> alertPlotIds.addAll(plotIds));
+  }
+
+  /**
+   * Records plots whose alert was cleared, or that were deleted.
+   *
+   * @param plotIds the plot ids.
+   */
+  public void clear(Collection<Long> plotIds) {
+    TransactionUtil.afterCommit(() -> alertPlotIds.removeAll(plotIds));
+  }
+
+  /**
+   * Records the alert of a plot as written.
+   *
+   * @param plotId   the plot id.
+   * @param hasAlert whether the plot has alert.
+   */
+  public void update(Long plotId, Boolean hasAlert) {
+    if (Boolean.TRUE.equals(hasAlert)) {
+      raise(List.of(plotId));
+    } else {
+      clear(List.of(plotId));
+    }
+  }
+}
@@ -0,0 +1,200 @@
+package com.example.automaticirrigationsystem.service;
+
+import com.example.automaticirrigationsystem.domain.enumeration.PlotEventType;
+import com.example.automaticirrigationsystem.dto.PlotEventDTO;
+import com.example.automaticirrigationsystem.repository.PlotEventOutboxRepository;
+import com.example.automaticirrigationsystem.util.TransactionUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Fans the plot state changes out to the event stream subscribers. Publishing never waits on a
+ * subscriber: every subscriber has its own bounded buffer drained by the plot event executor, and a
+ * subscriber whose buffer is full is disconnected, the client reconnects and reads the current
+ * state again. Events published within a transaction are sent once it commits.
+ *
+ * <p>The events are also appended to the outbox in the publishing transaction, for the
+ * {@link PlotEventRelay} to deliver them to the downstream sinks, unless the relay is disabled.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class PlotEventBroadcaster {
+
+  private final PlotEventOutboxRepository plotEventOutboxRepository;
+  private final TaskExecutor plotEventExecutor;
+  private final MeterRegistry meterRegistry;
+  @Value("${plot.events.buffer-size:256}")
+  private int bufferSize = 256;
+  @Value("${plot.events.timeout:1800000}")
+  private long timeout = 1800000;
+  @Value("${plot.outbox.enabled:true}")
+  private boolean outboxEnabled = true;
+  private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+  private Counter sentCounter;
+  private Counter disconnectedCounter;
+
+  @PostConstruct
+  public void registerMeters() {
+    sentCounter = Counter.builder("plot.events.sent")
+        .description("Plot events written to the subscribers")
+        .register(meterRegistry);
+    disconnectedCounter = Counter.builder("plot.events.slow.disconnected")
+        .description("Subscribers disconnected for not keeping up with the events")
+        .register(meterRegistry);
+    Gauge.builder("plot.events.subscribers", subscribers, List::size)
+        .description("Subscribers of the plot event stream")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Subscribes to the plot events.
+   *
+   * @param plotIds the plots to get the events of, all the plots if empty.
+   * @return the emitter the events are sent through.
+   */
+  public SseEmitter subscribe(Collection<Long> plotIds) {
+    return register(new SseEmitter(timeout), plotIds);
+  }
+
+  /**
+   * Publishes the same change of many plots.
+   *
+   * @param plotIds the plot ids.
+   * @param type    the change.
+   */
+  public void publish(Collection<Long> plotIds, PlotEventType type) {
+    if (!plotIds.isEmpty()) {
+      publish(plotIds.stream()
+          .map(plotId -> new PlotEventDTO(plotId, type))
+          .collect(Collectors.toList()));
+    }
+  }
+
+  /**
+   * Publishes plot changes: they are written to the outbox within the current transaction and sent
+   * to the subscribers once it commits. Nothing is written to the outbox when the relay is
+   * disabled, nothing would empty it.
+   *
+   * @param events the changes.
+   */
+  public void publish(List<PlotEventDTO> events) {
+    if (events.isEmpty()) {
+      return;
+    }
+    if (outboxEnabled) {
+      plotEventOutboxRepository.appendAll(events);
+    }
+    if (subscribers.isEmpty()) {
+      return;
+    }
+    TransactionUtil.afterCommit(() -> {
+      for (Subscriber subscriber : subscribers) {
+        subscriber.offer(events);
+      }
+    });
+  }
+
+  SseEmitter register(SseEmitter emitter, Collection<Long> plotIds) {
+    Subscriber subscriber = new Subscriber(emitter, Set.copyOf(plotIds));
+    emitter.onCompletion(() -> subscribers.remove(subscriber));
+    emitter.onTimeout(() -> subscribers.remove(subscriber));
+    emitter.onError(e -> subscribers.remove(subscriber));
+    subscribers.add(subscriber);
+    log.debug("plot events subscriber added, {} subscribers", subscribers.size());
+    return emitter;
+  }
+
+  int subscribersCount() {
+    return subscribers.size();
+  }
+
+  /**
+   * A client of the event stream, with the events not sent to it yet.
+   */
+  private final class Subscriber {
+
+    private final SseEmitter emitter;
+
+    private final Set<Long> plotIds;
+
+    private final BlockingQueue<PlotEventDTO> buffer = new ArrayBlockingQueue<>(bufferSize);
+
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    private Subscriber(SseEmitter emitter, Set<Long> plotIds) {
+      this.emitter = emitter;
+      this.plotIds = plotIds;
+    }
+
+    void offer(List<PlotEventDTO> events) {
+      for (PlotEventDTO event : events) {
+        if ((plotIds.isEmpty() || plotIds.contains(event.getPlotId())) && !buffer.offer(event)) {
+          log.debug("plot events subscriber doesn't keep up, disconnecting it");
+          disconnectedCounter.increment();
+          disconnect(null);
+          return;
+        }
+      }
+      scheduleDrain();
+    }
+
+    private void scheduleDrain() {
+      if (buffer.isEmpty() || !draining.compareAndSet(false, true)) {
+        return;
+      }
+      try {
+        plotEventExecutor.execute(this::drain);
+      } catch (TaskRejectedException e) {
+        // the events stay buffered until the next publication
+        draining.set(false);
+      }
+    }
+
+    private void drain() {
+      try {
+        PlotEventDTO event;
+        while ((event = buffer.poll()) != null) {
+          emitter.send(SseEmitter.event().name(event.getType().name()).data(event));
+          sentCounter.increment();
+        }
+      } catch (IOException | IllegalStateException e) {
+        log.debug("plot events subscriber is gone: {}", e.getMessage());
+        disconnect(e);
+        return;
+      } finally {
+        draining.set(false);
+      }
+      // events offered while the buffer was being emptied
+      scheduleDrain();
+    }
+
+    private void disconnect(Throwable cause) {
+      subscribers.remove(this);
+      buffer.clear();
+      if (cause == null) {
+        emitter.complete();
+      } else {
+        emitter.completeWithError(cause);
+      }
+    }
+  }
+}
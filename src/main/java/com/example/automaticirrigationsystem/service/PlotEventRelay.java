@@ -0,0 +1,156 @@
+package com.example.automaticirrigationsystem.service;
+
+import com.example.automaticirrigationsystem.dto.PlotEventDTO;
+import com.example.automaticirrigationsystem.repository.PlotEventOutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Relays the plot events from the outbox to the sinks. Each batch is read, published to every
+ * sink and deleted in one transaction holding the lock on its events. A batch that fails to publish
+ * is published again one event at a time: the events published are deleted and the others stay in
+ * the outbox for the next run. An event failing while others are published counts a failed attempt,
+ * and is moved to the dead letters after {@code plot.outbox.max-attempts}, so that it can't hold up
+ * the events after it. When no event can be published the sinks are down, no attempt is counted.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class PlotEventRelay {
+
+  private final PlotEventOutboxRepository plotEventOutboxRepository;
+  private final List<PlotEventSink> plotEventSinks;
+  private final TransactionTemplate transactionTemplate;
+  private final TaskScheduler maintenanceScheduler;
+  private final MeterRegistry meterRegistry;
+  @Value("${plot.outbox.enabled:true}")
+  private boolean enabled = true;
+  @Value("${plot.outbox.interval:1000}")
+  private long interval = 1000;
+  @Value("${plot.outbox.batch-size:500}")
+  private int batchSize = 500;
+  @Value("${plot.outbox.max-batches:20}")
+  private int maxBatches = 20;
+  @Value("${plot.outbox.max-attempts:10}")
+  private int maxAttempts = 10;
+  private Counter relayedCounter;
+  private Counter failureCounter;
+  private Counter deadLetterCounter;
+  private ScheduledFuture<?> relayer;
+
+  @PostConstruct
+  public void start() {
+    relayedCounter = Counter.builder("plot.outbox.relayed")
+        .description("Plot events published from the outbox to the sinks")
+        .register(meterRegistry);
+    failureCounter = Counter.builder("plot.outbox.failures")
+        .description("Plot event publishes that a sink failed")
+        .register(meterRegistry);
+    deadLetterCounter = Counter.builder("plot.outbox.dead.letters")
+        .description("Plot events moved to the dead letters after failing too many times")
+        .register(meterRegistry);
+    if (enabled) {
+      relayer = maintenanceScheduler.scheduleWithFixedDelay(this::relaySafely,
+          Instant.now().plusMillis(interval), Duration.ofMillis(interval));
+    }
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (relayer != null) {
+      relayer.cancel(false);
+    }
+  }
+
+  /**
+   * Publishes the events of the outbox, batch after batch, until the outbox is empty or the
+   * maximum number of batches of a run is reached.
+   *
+   * @return the number of events published.
+   */
+  public int relay() {
+    int relayed = 0;
+    for (int batch = 0; batch < maxBatches; batch++) {
+      Integer published = transactionTemplate.execute(status -> relayBatch());
+      relayed += published == null ? 0 : published;
+      if (published == null || published < batchSize) {
+        break;
+      }
+    }
+    return relayed;
+  }
+
+  private int relayBatch() {
+    Map<Long, PlotEventDTO> events = plotEventOutboxRepository.lockOldest(batchSize);
+    if (events.isEmpty()) {
+      return 0;
+    }
+    List<PlotEventDTO> batch = new ArrayList<>(events.values());
+    if (publish(batch)) {
+      plotEventOutboxRepository.deleteAll(events.keySet());
+      relayedCounter.increment(batch.size());
+      log.debug("{} plot events relayed to {} sinks", batch.size(), plotEventSinks.size());
+      return batch.size();
+    }
+    List<Long> published = new ArrayList<>();
+    List<Long> failed = new ArrayList<>();
+    events.forEach((id, event) -> (publish(List.of(event)) ? published : failed).add(id));
+    if (published.isEmpty()) {
+      log.warn("no sink could publish the {} oldest plot events", batch.size());
+      return 0;
+    }
+    plotEventOutboxRepository.deleteAll(published);
+    relayedCounter.increment(published.size());
+    int deadLetters = failed.isEmpty()
+        ? 0 : plotEventOutboxRepository.recordFailures(failed, maxAttempts);
+    if (deadLetters > 0) {
+      deadLetterCounter.increment(deadLetters);
+      log.warn("{} plot events moved to the dead letters after {} attempts", deadLetters,
+          maxAttempts);
+    }
+    log.debug("{} plot events relayed one at a time, {} failed", published.size(), failed.size());
+    // a batch with failed events ends the run, they are tried again on the next one
+    return failed.isEmpty() ? published.size() : 0;
+  }
+
+  /**
+   * Publishes events to every sink.
+   *
+   * @return false if a sink failed, the events may have reached the sinks before it.
+   */
+  private boolean publish(List<PlotEventDTO> events) {
+    for (PlotEventSink sink : plotEventSinks) {
+      try {
+        sink.publish(events);
+      } catch (RuntimeException e) {
+        failureCounter.increment();
+        log.debug("sink {} failed to publish {} plot events with cause = '{}'", sink.getName(),
+            events.size(), e.getMessage());
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void relaySafely() {
+    try {
+      relay();
+    } catch (RuntimeException e) {
+      log.error("plot events relay failed with cause = '{}'", e.getMessage(), e);
+    }
+  }
+}
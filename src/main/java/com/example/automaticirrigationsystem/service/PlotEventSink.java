@@ -0,0 +1,27 @@
+package com.example.automaticirrigationsystem.service;
+
+import com.example.automaticirrigationsystem.dto.PlotEventDTO;
+import java.util.List;
+
+/**
+ * A destination of the plot events relayed from the outbox. Every sink bean is published to.
+ *
+ * <p>The events are delivered at least once: a batch is published again to every sink when one of
+ * them fails, so a sink must tolerate the events it already received.
+ */
+public interface PlotEventSink {
+
+  /**
+   * Get the name of the sink, used in the logs and metrics.
+   *
+   * @return the sink name.
+   */
+  String getName();
+
+  /**
+   * Publishes a batch of events, throwing if they can't be published.
+   *
+   * @param events the events, in the order they were appended to the outbox.
+   */
+  void publish(List<PlotEventDTO> events);
+}
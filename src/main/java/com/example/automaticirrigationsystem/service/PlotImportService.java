@@ -0,0 +1,233 @@
+package com.example.automaticirrigationsystem.service;
+
+import com.example.automaticirrigationsystem.aop.logging.Loggable;
+import com.example.automaticirrigationsystem.dto.ImportErrorDTO;
+import com.example.automaticirrigationsystem.dto.ImportResultDTO;
+import com.example.automaticirrigationsystem.dto.PlotImportDTO;
+import com.example.automaticirrigationsystem.exception.BadRequestException;
+import com.example.automaticirrigationsystem.repository.PlotImportRepository;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Service importing plots, with their sensor and slots, in bulk. The rows are read and validated
+ * one at a time and saved in chunks, each chunk in its own transaction: a rejected row is reported
+ * without failing the rows around it.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class PlotImportService {
+
+  private static final String CSV_SEPARATOR = ",";
+
+  private final PlotImportRepository plotImportRepository;
+  private final IrrigationScheduler irrigationScheduler;
+  private final ObjectMapper objectMapper;
+  private final Validator validator;
+  private final TransactionTemplate transactionTemplate;
+  @Value("${import.chunk-size:1000}")
+  private int chunkSize = 1000;
+  @Value("${import.max-errors:1000}")
+  private int maxErrors = 1000;
+
+  /**
+   * Import plots from a JSON array of {@link PlotImportDTO}. An element that isn't an object is
+   * rejected as a row of its own.
+   *
+   * @param json the JSON array, read as it arrives.
+   * @return the number of plots imported and the rejected rows.
+   * @throws IOException if the input can't be read.
+   */
+  @Loggable
+  public ImportResultDTO importJson(InputStream json) throws IOException {
+    ImportBatch batch = new ImportBatch();
+    long row = 0;
+    try (JsonParser parser = objectMapper.getFactory().createParser(json)) {
+      if (parser.nextToken() != JsonToken.START_ARRAY) {
+        throw new BadRequestException("The plots to import must be a JSON array");
+      }
+      JsonToken token;
+      while ((token = parser.nextToken()) != null && token != JsonToken.END_ARRAY) {
+        row++;
+        if (token != JsonToken.START_OBJECT) {
+          String found = token == JsonToken.START_ARRAY ? "an array" : "'" + parser.getText() + "'";
+          batch.reject(row, "expected a plot object but found " + found);
+          parser.skipChildren();
+          continue;
+        }
+        JsonNode node = parser.readValueAsTree();
+        batch.add(row, node);
+      }
+    } catch (JsonProcessingException e) {
+      // the rest of the input can't be told apart, what was read so far is still imported
+      batch.reject(row + 1, "malformed JSON, import stopped: " + e.getOriginalMessage());
+    }
+    return batch.finish();
+  }
+
+  /**
+   * Import plots from a CSV with a header naming the {@link PlotImportDTO} fields, values separated
+   * by commas and not quoted.
+   *
+   * @param csv the CSV, read as it arrives.
+   * @return the number of plots imported and the rejected rows.
+   * @throws IOException if the input can't be read.
+   */
+  @Loggable
+  public ImportResultDTO importCsv(InputStream csv) throws IOException {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(csv, StandardCharsets.UTF_8));
+    String header = reader.readLine();
+    if (header == null || header.isBlank()) {
+      throw new BadRequestException("The plots to import must start with a header");
+    }
+    String[] columns = header.trim().split(CSV_SEPARATOR);
+
+    ImportBatch batch = new ImportBatch();
+    long row = 0;
+    String line;
+    while ((line = reader.readLine()) != null) {
+      if (line.isBlank()) {
+        continue;
+      }
+      row++;
+      String[] values = line.split(CSV_SEPARATOR, -1);
+      if (values.length != columns.length) {
+        batch.reject(row, "expected " + columns.length + " values but found " + values.length);
+        continue;
+      }
+      ObjectNode node = objectMapper.createObjectNode();
+      for (int i = 0; i < columns.length; i++) {
+        String value = values[i].trim();
+        if (!value.isEmpty()) {
+          node.put(columns[i].trim(), value);
+        }
+      }
+      batch.add(row, node);
+    }
+    return batch.finish();
+  }
+
+  /**
+   * The rows of one import, saved a chunk at a time.
+   */
+  private class ImportBatch {
+
+    private final ImportResultDTO result = new ImportResultDTO();
+
+    private final List<Long> rows = new ArrayList<>(chunkSize);
+
+    private final List<PlotImportDTO> plots = new ArrayList<>(chunkSize);
+
+    void add(long row, JsonNode node) {
+      PlotImportDTO plot;
+      try {
+        plot = objectMapper.treeToValue(node, PlotImportDTO.class);
+      } catch (JsonProcessingException e) {
+        reject(row, e.getOriginalMessage());
+        return;
+      }
+      Set<ConstraintViolation<PlotImportDTO>> violations = validator.validate(plot);
+      if (!violations.isEmpty()) {
+        reject(row, violations.stream()
+            .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+            .sorted()
+            .collect(Collectors.joining(", ")));
+        return;
+      }
+      rows.add(row);
+      plots.add(plot);
+      if (plots.size() >= chunkSize) {
+        flush();
+      }
+    }
+
+    void reject(long row, String message) {
+      result.setRejected(result.getRejected() + 1);
+      if (result.getErrors().size() < maxErrors) {
+        result.getErrors().add(new ImportErrorDTO(row, message));
+      }
+    }
+
+    ImportResultDTO finish() {
+      flush();
+      log.debug("{} plots imported, {} rows rejected", result.getImported(),
+          result.getRejected());
+      return result;
+    }
+
+    private void flush() {
+      if (plots.isEmpty()) {
+        return;
+      }
+      try {
+        List<ImportErrorDTO> rejected = transactionTemplate.execute(status -> saveChunk());
+        rejected.forEach(error -> reject(error.getRow(), error.getMessage()));
+        result.setImported(result.getImported() + plots.size() - rejected.size());
+      } catch (DataAccessException e) {
+        log.error("import of rows {} to {} failed with cause = '{}'", rows.get(0),
+            rows.get(rows.size() - 1), e.getMessage(), e);
+        rows.forEach(row -> reject(row, "not saved: " + e.getMostSpecificCause().getMessage()));
+      }
+      rows.clear();
+      plots.clear();
+    }
+
+    private List<ImportErrorDTO> saveChunk() {
+      Set<String> takenPlotCodes = plotImportRepository.findExistingPlotCodes(plots.stream()
+          .map(PlotImportDTO::getPlotCode)
+          .collect(Collectors.toSet()));
+      Set<String> takenSensorCodes = plotImportRepository.findExistingSensorCodes(plots.stream()
+          .map(PlotImportDTO::getSensorCode)
+          .filter(Objects::nonNull)
+          .collect(Collectors.toSet()));
+
+      List<ImportErrorDTO> rejected = new ArrayList<>();
+      List<PlotImportDTO> accepted = new ArrayList<>(plots.size());
+      for (int i = 0; i < plots.size(); i++) {
+        PlotImportDTO plot = plots.get(i);
+        if (takenPlotCodes.contains(plot.getPlotCode())) {
+          rejected.add(new ImportErrorDTO(rows.get(i),
+              "plotCode " + plot.getPlotCode() + " already exists"));
+        } else if (plot.getSensorCode() != null
+            && takenSensorCodes.contains(plot.getSensorCode())) {
+          rejected.add(new ImportErrorDTO(rows.get(i),
+              "sensorCode " + plot.getSensorCode() + " already exists"));
+        } else {
+          // the codes of this chunk are taken for the rows after it
+          takenPlotCodes.add(plot.getPlotCode());
+          if (plot.getSensorCode() != null) {
+            takenSensorCodes.add(plot.getSensorCode());
+          }
+          accepted.add(plot);
+        }
+      }
+      if (!accepted.isEmpty()) {
+        irrigationScheduler.reschedule(plotImportRepository.insertAll(accepted));
+      }
+      return rejected;
+    }
+  }
+}
@@ -0,0 +1,213 @@
+package com.example.automaticirrigationsystem.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import javax.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Serializes the state transitions of each plot within the instance, and retries the transitions
+ * that conflict anyway. The plots are hashed to a fixed set of lock stripes: transitions of
+ * different plots rarely share a stripe and run in parallel, those of a plot wait for each other
+ * instead of overwriting each other.
+ *
+ * <p>The stripes are taken before the transaction of the transition begins and released once it
+ * completes, in stripe order, and waiting for a stripe is bounded: a transition that can't get its
+ * stripes fails with a {@link CannotAcquireLockException}. A transition failing on a version
+ * conflict, with a writer the stripes don't cover, or on a lock timeout is run again with a short
+ * random backoff, up to a bounded number of attempts. A transition joining a transaction already
+ * started is run once, as the conflict would only show when that transaction commits.
+ *
+ * <p>A transition of many plots is split in parts of a bounded size, each locked and committed on
+ * its own, and a transition starting other plots does it once its own stripes are released.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class PlotLocks {
+
+  private final MeterRegistry meterRegistry;
+  /**
+   * Number of lock stripes, rounded up to a power of two.
+   */
+  @Value("${plot.lock.stripes:1024}")
+  private int stripesCount = 1024;
+  @Value("${plot.lock.timeout:5000}")
+  private long timeout = 5000;
+  @Value("${plot.lock.max-attempts:3}")
+  private int maxAttempts = 3;
+  @Value("${plot.lock.backoff:20}")
+  private long backoff = 20;
+  /**
+   * Plots a transition of many plots locks at once, well below the stripes count.
+   */
+  @Value("${plot.lock.batch-size:64}")
+  private int batchSize = 64;
+  private ReentrantLock[] stripes;
+  /**
+   * The actions to run once the current thread releases its stripes, null while it holds none.
+   */
+  private final ThreadLocal<List<Runnable>> afterUnlock = new ThreadLocal<>();
+  private Counter retryCounter;
+  private Counter timeoutCounter;
+
+  @PostConstruct
+  public void start() {
+    int size = Integer.highestOneBit(Math.max(1, stripesCount - 1)) << 1;
+    stripes = new ReentrantLock[size];
+    for (int i = 0; i < size; i++) {
+      stripes[i] = new ReentrantLock();
+    }
+    retryCounter = Counter.builder("plot.transition.retries")
+        .description("Plot transitions run again after a conflict")
+        .register(meterRegistry);
+    timeoutCounter = Counter.builder("plot.lock.timeouts")
+        .description("Plot transitions that gave up waiting for their lock")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Runs a transition of plots holding their stripes, and runs it again if it conflicts.
+   *
+   * @param plotIds    the plots the transition writes.
+   * @param transition the transition, starting its own transaction.
+   * @param <T>        the type of the result.
+   * @return the result of the transition.
+   */
+  public <T> T runTransition(Collection<Long> plotIds, Supplier<T> transition) {
+    int attempts = TransactionSynchronizationManager.isActualTransactionActive() ? 1 : maxAttempts;
+    for (int attempt = 1; ; attempt++) {
+      try {
+        return runLocked(plotIds, transition);
+      } catch (ConcurrencyFailureException e) {
+        if (attempt >= attempts) {
+          throw e;
+        }
+        retryCounter.increment();
+        log.debug("transition of {} plots conflicted, attempt {}/{}: {}", plotIds.size(),
+            attempt, attempts, e.getMessage());
+        pause(attempt);
+      }
+    }
+  }
+
+  /**
+   * Runs an action once holding the stripes of plots, for the actions that can't be run again.
+   *
+   * @param plotIds the plots the action writes.
+   * @param action  the action.
+   * @param <T>     the type of the result.
+   * @return the result of the action.
+   */
+  public <T> T runLocked(Collection<Long> plotIds, Supplier<T> action) {
+    // taken in stripe order, so that transitions of many plots can't wait on each other in a cycle
+    TreeSet<Integer> indexes = new TreeSet<>();
+    plotIds.forEach(plotId -> indexes.add(stripeOf(plotId)));
+    List<ReentrantLock> held = new ArrayList<>(indexes.size());
+    boolean outermost = afterUnlock.get() == null;
+    if (outermost) {
+      afterUnlock.set(new ArrayList<>());
+    }
+    try {
+      for (Integer index : indexes) {
+        ReentrantLock stripe = stripes[index];
+        if (!stripe.tryLock(timeout, TimeUnit.MILLISECONDS)) {
+          timeoutCounter.increment();
+          throw new CannotAcquireLockException(
+              "timed out after " + timeout + "ms waiting for the lock of a plot");
+        }
+        held.add(stripe);
+      }
+      return action.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CannotAcquireLockException("interrupted waiting for the lock of a plot", e);
+    } finally {
+      for (int i = held.size() - 1; i >= 0; i--) {
+        held.get(i).unlock();
+      }
+      if (outermost) {
+        runAfterUnlock();
+      }
+    }
+  }
+
+  /**
+   * Runs an action once the current thread holds no stripe anymore, so that the action can take
+   * the stripes of other plots without waiting on a cycle: after the transition running, or right
+   * away outside of any. The action is run whether the transition succeeded or not.
+   *
+   * @param action the action.
+   */
+  public void afterUnlock(Runnable action) {
+    List<Runnable> actions = afterUnlock.get();
+    if (actions == null) {
+      action.run();
+    } else {
+      actions.add(action);
+    }
+  }
+
+  /**
+   * Splits plots in parts locked one at a time, so that a transition of many plots never holds
+   * most of the stripes and holds up the transitions of single plots.
+   *
+   * @param items the plots, or what stands for them.
+   * @param <T>   the type of the items.
+   * @return the parts, in order.
+   */
+  public <T> List<List<T>> partition(List<T> items) {
+    List<List<T>> parts = new ArrayList<>((items.size() + batchSize - 1) / batchSize);
+    for (int from = 0; from < items.size(); from += batchSize) {
+      parts.add(items.subList(from, Math.min(from + batchSize, items.size())));
+    }
+    return parts;
+  }
+
+  /**
+   * Get the stripe of a plot.
+   *
+   * @param plotId the plot id.
+   * @return the index of the stripe.
+   */
+  int stripeOf(Long plotId) {
+    long hash = plotId * 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ hash >>> 32) & (stripes.length - 1);
+  }
+
+  private void runAfterUnlock() {
+    List<Runnable> actions = afterUnlock.get();
+    afterUnlock.remove();
+    for (Runnable action : actions) {
+      try {
+        action.run();
+      } catch (RuntimeException e) {
+        log.error("action after plot transition failed with cause = '{}'", e.getMessage(), e);
+      }
+    }
+  }
+
+  private void pause(int attempt) {
+    try {
+      Thread.sleep(backoff * attempt + ThreadLocalRandom.current().nextLong(backoff + 1));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CannotAcquireLockException("interrupted before running a plot transition again",
+          e);
+    }
+  }
+}
@@ -1,20 +1,32 @@
 package com.example.automaticirrigationsystem.service;
 
 import com.example.automaticirrigationsystem.aop.logging.Loggable;
+import com.example.automaticirrigationsystem.aop.transition.PlotId;
+import com.example.automaticirrigationsystem.aop.transition.PlotTransition;
 import com.example.automaticirrigationsystem.domain.Plot;
-import com.example.automaticirrigationsystem.domain.Slot;
-import com.example.automaticirrigationsystem.domain.enumeration.Status;
+import com.example.automaticirrigationsystem.domain.enumeration.PlotEventType;
 import com.example.automaticirrigationsystem.dto.PlotConfigDTO;
 import com.example.automaticirrigationsystem.dto.PlotDTO;
+import com.example.automaticirrigationsystem.repository.PlotBatchRepository;
+import com.example.automaticirrigationsystem.repository.PlotQueryRepository;
 import com.example.automaticirrigationsystem.repository.PlotRepository;
 import com.example.automaticirrigationsystem.service.mapper.PlotMapper;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -29,28 +41,54 @@ public class PlotService {
 
   private final PlotRepository plotRepository;
 
+  private final PlotQueryRepository plotQueryRepository;
+
+  private final PlotBatchRepository plotBatchRepository;
+
   private final PlotMapper plotMapper;
 
+  private final PlotStateCache plotStateCache;
+
+  private final PlotAlertIndex plotAlertIndex;
+
+  private final IrrigationScheduler irrigationScheduler;
+
+  private final IrrigationService irrigationService;
+
+  private final PlotEventBroadcaster plotEventBroadcaster;
+
+  private final TelemetryService telemetryService;
+
+  private final EntityManager entityManager;
+
+  @Value("${export.chunk-size:500}")
+  private int exportChunkSize = 500;
 
   /**
-   * update a plot.
+   * update a plot. The transition holds the lock of the plot and is run again if the plot was
+   * written meanwhile.
    *
    * @param plotConfigDTO the plot to save.
    * @return the persisted plot.
    */
   @Loggable
-  public Optional<PlotDTO> configurePlot(PlotConfigDTO plotConfigDTO, long id) {
+  @PlotTransition
+  public Optional<PlotDTO> configurePlot(PlotConfigDTO plotConfigDTO, @PlotId long id) {
     log.debug("Request to configure Plot : {}", plotConfigDTO);
     Optional<Plot> existPlot = plotRepository.findById(id);
+    plotStateCache.evict(id);
 
-    return existPlot.map(plot -> {
-          plot.setId(id);
+    return existPlot.map(plot -> configurePlotTimingSlots(plot, plotConfigDTO.getSlotsCount()))
+        .map(plot -> {
           plot.setCropType(plotConfigDTO.getCropType());
           plot.setWaterAmount(plotConfigDTO.getWaterAmount());
-          plot.setPlotTimerSlots(configurePlotAddingTimingSlots(plot, plotConfigDTO.getSlotsCount()));
           return plot;
         })
         .map(plotRepository::save)
+        .map(plot -> {
+          irrigationScheduler.reschedule(List.of(plot.getId()));
+          return plot;
+        })
         .map(plotMapper::toDto);
   }
 
@@ -71,22 +109,31 @@ public class PlotService {
   }
 
   /**
-   * Partially update a plot.
+   * Partially update a plot. The transition holds the lock of the plot and is run again if the
+   * plot was written meanwhile.
    *
    * @param plotDTO the plot to update partially.
+   * @param id      the id of the plot.
    * @return the persisted plot.
    */
   @Loggable
-  public Optional<PlotDTO> partialUpdate(PlotDTO plotDTO) {
+  @PlotTransition
+  public Optional<PlotDTO> partialUpdate(PlotDTO plotDTO, @PlotId Long id) {
     log.debug("Request to partially update Plot : {}", plotDTO);
+    plotStateCache.evict(id);
 
     return plotRepository
-        .findById(plotDTO.getId())
+        .findById(id)
         .map(existingPlot -> {
           plotMapper.partialUpdate(existingPlot, plotDTO);
           return existingPlot;
         })
         .map(plotRepository::save)
+        .map(plot -> {
+          plotAlertIndex.update(plot.getId(), plot.getHasAlert());
+          irrigationScheduler.reschedule(List.of(plot.getId()));
+          return plot;
+        })
         .map(plotMapper::toDto);
   }
 
@@ -100,7 +147,59 @@ public class PlotService {
   @Transactional(readOnly = true)
   public Page<PlotDTO> findAll(Pageable pageable) {
     log.debug("Request to get all Plots");
-    return plotRepository.findAll(pageable).map(plotMapper::toDto);
+    return plotQueryRepository.findAll(pageable);
+  }
+
+  /**
+   * Get the plots following a cursor.
+   *
+   * @param after the id of the last plot already returned, null to start from the first plot.
+   * @param limit the maximum number of plots to return.
+   * @return the plots ordered by id.
+   */
+  @Loggable
+  @Transactional(readOnly = true)
+  public Slice<PlotDTO> findAllAfter(Long after, int limit) {
+    log.debug("Request to get Plots after : {}", after);
+    return plotQueryRepository.findAllAfter(after, limit);
+  }
+
+  /**
+   * Walks every plot in id order through a forward-only cursor, one chunk at a time: the slots of
+   * a chunk are fetched with one query, and the persistence context is cleared once the chunk is
+   * handed over, so memory use doesn't grow with the number of plots.
+   *
+   * @param action called with each plot, in id order.
+   * @return the number of plots walked.
+   */
+  @Loggable
+  @Transactional(readOnly = true)
+  public long forEachPlot(Consumer<PlotDTO> action) {
+    log.debug("Request to walk all Plots");
+    long count = 0;
+    List<Plot> chunk = new ArrayList<>(exportChunkSize);
+    try (Stream<Plot> plots = plotRepository.streamAllWithSensor()) {
+      Iterator<Plot> iterator = plots.iterator();
+      while (iterator.hasNext()) {
+        chunk.add(iterator.next());
+        // the chunk is released before moving the cursor, which loads the next plot
+        if (chunk.size() == exportChunkSize) {
+          count += releaseChunk(chunk, action);
+        }
+      }
+      count += releaseChunk(chunk, action);
+    }
+    return count;
+  }
+
+  /**
+   * Count the plots.
+   *
+   * @return the number of plots.
+   */
+  @Transactional(readOnly = true)
+  public long count() {
+    return plotRepository.count();
   }
 
   /**
@@ -113,31 +212,52 @@ public class PlotService {
   @Transactional(readOnly = true)
   public Optional<PlotDTO> findOne(Long id) {
     log.debug("Request to get Plot : {}", id);
-    return plotRepository.findById(id).map(plotMapper::toDto);
+    return plotQueryRepository.findById(id);
   }
 
   /**
-   * Delete the plot by id.
+   * Delete the plot by id. The plot is locked as in any transition, and the waiting plots its
+   * water supply admits are started once the lock is released.
    *
    * @param id the id of the plot.
    */
   @Loggable
-  public void delete(Long id) {
+  @PlotTransition
+  public void delete(@PlotId Long id) {
     log.debug("Request to delete Plot : {}", id);
+    // the sensor of the plot is deleted along with it
+    plotRepository.findById(id)
+        .map(Plot::getPlotSensor)
+        .ifPresent(sensor -> telemetryService.evictSensors(List.of(sensor.getId())));
     plotRepository.deleteById(id);
+    plotStateCache.evict(id);
+    plotAlertIndex.clear(List.of(id));
+    irrigationScheduler.cancel(id);
+    irrigationService.releaseWater(List.of(id));
+  }
+
+  private int releaseChunk(List<Plot> chunk, Consumer<PlotDTO> action) {
+    int size = chunk.size();
+    if (size == 0) {
+      return 0;
+    }
+    // fetching the chunk again initializes the slots of the plots already loaded
+    plotRepository.findAllWithSensorAndSlotsByIdIn(
+        chunk.stream().map(Plot::getId).collect(Collectors.toList()), Sort.unsorted());
+    chunk.stream().map(plotMapper::toDto).forEach(action);
+    chunk.clear();
+    entityManager.clear();
+    return size;
   }
 
-  private List<Slot> configurePlotAddingTimingSlots(
-      Plot plot, int slotsCount) {
-    List<Slot> slots = plot.getPlotTimerSlots();
-    slots.clear();
-    for (int i = 0; i < slotsCount; i++) {
-      Slot slot = new Slot();
-      slot.setStatus(Status.DOWN);
-      slot.setPlot(plot);
-      slots.add(slot);
+  private Plot configurePlotTimingSlots(Plot plot, int slotsCount) {
+    plotBatchRepository.resizeSlots(plot.getId(), slotsCount);
+    if (!Hibernate.isInitialized(plot.getPlotTimerSlots())) {
+      return plot;
     }
-    return slots;
+    // the slots already loaded missed the bulk statements, the plot is loaded again
+    entityManager.detach(plot);
+    return entityManager.find(Plot.class, plot.getId());
   }
 
   private Plot setPlotToDefault(Plot plot) {
@@ -151,15 +271,33 @@ public class PlotService {
     return plot;
   }
 
+  /**
+   * Get all the plots with alert, looked up by id from the alert index. The ids come from memory,
+   * the plots are read by primary key since their sensor, slots and call counters change on every
+   * sensor call and transition.
+   *
+   * @return the plots with alert.
+   */
+  @Transactional(readOnly = true)
   public List<PlotDTO> getAllPlotsHasAlarm() {
-
-    return plotRepository.findAllByHasAlertIsTrue().stream()
-        .map(plotMapper::toDto)
-        .collect(Collectors.toList());
+    return plotQueryRepository.findAllWithAlertByIdIn(plotAlertIndex.getAlertPlotIds());
   }
 
-  public int setPlotAlertOff(Long id) {
-
-    return plotRepository.fixPlotAlert(id);
+  /**
+   * Clear the alert of a plot. The plot is locked as in any transition, and the alert index is
+   * updated once the transaction commits.
+   *
+   * @param id the id of the plot.
+   * @return the number of plots whose alert was cleared.
+   */
+  @PlotTransition
+  public int setPlotAlertOff(@PlotId Long id) {
+    int fixed = plotRepository.fixPlotAlert(id);
+    plotStateCache.evict(id);
+    if (fixed > 0) {
+      plotAlertIndex.clear(List.of(id));
+      plotEventBroadcaster.publish(List.of(id), PlotEventType.ALERT_CLEARED);
+    }
+    return fixed;
   }
 }
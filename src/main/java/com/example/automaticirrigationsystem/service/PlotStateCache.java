@@ -0,0 +1,326 @@
+package com.example.automaticirrigationsystem.service;
+
+import com.example.automaticirrigationsystem.repository.PlotIrrigationState;
+import com.example.automaticirrigationsystem.repository.PlotRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Read-through cache of the irrigation state of the plots, keyed by plot id, so that the start and
+ * end checks don't hit the database again and again for the same plots. The least recently used
+ * plots are evicted past the maximum size, and every entry expires after the time to live.
+ *
+ * <p>Every write to a plot, or to its sensor, must evict the plot: the eviction is applied right
+ * away and again once the current transaction completes, so that a state read from the database
+ * before the commit isn't kept. A load racing with an eviction of its plot or of its sensor isn't
+ * cached at all. Lookups don't lock, the entries are held in a concurrent map and the plots and
+ * sensors evicted are tracked per id, by stripes so that the memory used is bounded.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class PlotStateCache {
+
+  private static final int STRIPES = 256;
+
+  private final PlotRepository plotRepository;
+  private final MeterRegistry meterRegistry;
+  @Value("${plot.cache.enabled:true}")
+  private boolean enabled = true;
+  @Value("${plot.cache.max-size:10000}")
+  private int maxSize = 10000;
+  @Value("${plot.cache.ttl:30000}")
+  private long ttl = 30000;
+  private final ConcurrentMap<Long, Entry> entries = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Long, Long> plotIdsBySensor = new ConcurrentHashMap<>();
+  /**
+   * Generations of the plots and of the sensors, by stripe of their id, incremented on every
+   * eviction: a load started before an eviction of its plot or of its sensor isn't cached.
+   */
+  private final AtomicLongArray plotGenerations = new AtomicLongArray(STRIPES);
+  private final AtomicLongArray sensorGenerations = new AtomicLongArray(STRIPES);
+  /**
+   * Ticks on every lookup, the entries looked up the least recently are dropped past the maximum
+   * size.
+   */
+  private final AtomicLong accessClock = new AtomicLong();
+  private final ReentrantLock trimLock = new ReentrantLock();
+  private Counter hitCounter;
+  private Counter missCounter;
+  private Counter sizeEvictionCounter;
+  private Counter expiryCounter;
+
+  @PostConstruct
+  public void registerMeters() {
+    hitCounter = Counter.builder("plot.cache.requests")
+        .description("Plot state cache lookups")
+        .tag("result", "hit")
+        .register(meterRegistry);
+    missCounter = Counter.builder("plot.cache.requests")
+        .description("Plot state cache lookups")
+        .tag("result", "miss")
+        .register(meterRegistry);
+    sizeEvictionCounter = Counter.builder("plot.cache.evictions")
+        .description("Plot states dropped from the cache")
+        .tag("cause", "size")
+        .register(meterRegistry);
+    expiryCounter = Counter.builder("plot.cache.evictions")
+        .description("Plot states dropped from the cache")
+        .tag("cause", "expired")
+        .register(meterRegistry);
+    Gauge.builder("plot.cache.size", this, PlotStateCache::size)
+        .description("Plot states held by the cache")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Get the irrigation state of a plot.
+   *
+   * @param plotId the plot id.
+   * @return the state of the plot, empty if it doesn't exist.
+   */
+  public Optional<PlotIrrigationState> get(Long plotId) {
+    return Optional.ofNullable(getAll(List.of(plotId)).get(plotId));
+  }
+
+  /**
+   * Get the irrigation state of plots, the plots missing from the cache are loaded with one query.
+   *
+   * @param plotIds the plot ids.
+   * @return the state of each existing plot, by plot id.
+   */
+  public Map<Long, PlotIrrigationState> getAll(Collection<Long> plotIds) {
+    Map<Long, PlotIrrigationState> states = new HashMap<>();
+    if (!enabled) {
+      plotRepository.findIrrigationStateByIdIn(plotIds)
+          .forEach(state -> states.put(state.getId(), state));
+      return states;
+    }
+    List<Long> misses = new ArrayList<>();
+    long now = System.currentTimeMillis();
+    for (Long plotId : plotIds) {
+      Entry entry = entries.get(plotId);
+      if (entry != null && entry.expiresAt <= now) {
+        if (remove(plotId, entry)) {
+          expiryCounter.increment();
+        }
+        entry = null;
+      }
+      if (entry == null) {
+        misses.add(plotId);
+      } else {
+        entry.accessedAt = accessClock.incrementAndGet();
+        states.put(plotId, entry.state);
+      }
+    }
+    hitCounter.increment(states.size());
+    missCounter.increment(misses.size());
+    if (misses.isEmpty()) {
+      return states;
+    }
+
+    Map<Long, Long> loadedAfter = new HashMap<>();
+    misses.forEach(plotId -> loadedAfter.put(plotId, plotGenerations.get(stripeOf(plotId))));
+    long[] sensorsLoadedAfter = new long[STRIPES];
+    for (int i = 0; i < STRIPES; i++) {
+      sensorsLoadedAfter[i] = sensorGenerations.get(i);
+    }
+    List<CachedPlotState> loaded = new ArrayList<>();
+    plotRepository.findIrrigationStateByIdIn(misses)
+        .forEach(state -> loaded.add(CachedPlotState.of(state)));
+    long expiresAt = System.currentTimeMillis() + ttl;
+    int skipped = 0;
+    for (CachedPlotState state : loaded) {
+      if (!put(state, expiresAt, loadedAfter.get(state.getId()), sensorsLoadedAfter)) {
+        skipped++;
+      }
+      states.put(state.getId(), state);
+    }
+    if (skipped > 0) {
+      log.debug("plots evicted while {} states were loaded, not caching them", skipped);
+    }
+    trim();
+    return states;
+  }
+
+  /**
+   * Evicts a plot whose state or sensor changed.
+   *
+   * @param plotId the plot id.
+   */
+  public void evict(Long plotId) {
+    evictAll(List.of(plotId));
+  }
+
+  /**
+   * Evicts plots whose state or sensor changed.
+   *
+   * @param plotIds the plot ids.
+   */
+  public void evictAll(Collection<Long> plotIds) {
+    if (enabled && !plotIds.isEmpty()) {
+      afterEachCompletion(() -> plotIds.forEach(this::evictNow));
+    }
+  }
+
+  /**
+   * Evicts the plots of sensors whose status changed.
+   *
+   * @param sensorIds the sensor ids.
+   */
+  public void evictSensors(Collection<Long> sensorIds) {
+    if (enabled && !sensorIds.isEmpty()) {
+      afterEachCompletion(() -> sensorIds.forEach(sensorId -> {
+        sensorGenerations.incrementAndGet(stripeOf(sensorId));
+        // the generation is moved first: a plot mapped to the sensor after this lookup was
+        // loaded after the eviction, or isn't cached
+        Long plotId = plotIdsBySensor.get(sensorId);
+        if (plotId != null) {
+          evictNow(plotId);
+        }
+      }));
+    }
+  }
+
+  /**
+   * Get the number of plot states held.
+   *
+   * @return the size of the cache.
+   */
+  public int size() {
+    return entries.size();
+  }
+
+  private void afterEachCompletion(Runnable eviction) {
+    eviction.run();
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCompletion(int status) {
+          eviction.run();
+        }
+      });
+    }
+  }
+
+  /**
+   * Caches a state loaded unless its plot or its sensor was evicted since the load started.
+   *
+   * @return whether the state is cached.
+   */
+  private boolean put(CachedPlotState state, long expiresAt, long loadedAfter,
+      long[] sensorsLoadedAfter) {
+    Long sensorId = state.getSensorId();
+    boolean[] cached = new boolean[1];
+    entries.compute(state.getId(), (plotId, current) -> {
+      // mapped before the generations are checked, see evictSensors
+      if (sensorId != null) {
+        plotIdsBySensor.put(sensorId, plotId);
+      }
+      if (plotGenerations.get(stripeOf(plotId)) != loadedAfter || (sensorId != null
+          && sensorGenerations.get(stripeOf(sensorId)) != sensorsLoadedAfter[stripeOf(sensorId)])) {
+        return current;
+      }
+      if (current != null && current.state.getSensorId() != null
+          && !current.state.getSensorId().equals(sensorId)) {
+        plotIdsBySensor.remove(current.state.getSensorId(), plotId);
+      }
+      cached[0] = true;
+      return new Entry(state, expiresAt, accessClock.incrementAndGet());
+    });
+    return cached[0];
+  }
+
+  private void evictNow(Long plotId) {
+    entries.compute(plotId, (id, entry) -> {
+      plotGenerations.incrementAndGet(stripeOf(id));
+      unmapSensor(id, entry);
+      return null;
+    });
+  }
+
+  private boolean remove(Long plotId, Entry entry) {
+    boolean[] removed = new boolean[1];
+    entries.computeIfPresent(plotId, (id, current) -> {
+      if (current != entry) {
+        return current;
+      }
+      unmapSensor(id, current);
+      removed[0] = true;
+      return null;
+    });
+    return removed[0];
+  }
+
+  private void unmapSensor(Long plotId, Entry entry) {
+    if (entry != null && entry.state.getSensorId() != null) {
+      plotIdsBySensor.remove(entry.state.getSensorId(), plotId);
+    }
+  }
+
+  /**
+   * Drops the entries looked up the least recently past the maximum size, a tenth of it at once so
+   * that the entries are sorted once in a while only. A single thread trims at a time, the others
+   * don't wait for it.
+   */
+  private void trim() {
+    if (entries.size() <= maxSize || !trimLock.tryLock()) {
+      return;
+    }
+    try {
+      // the access ticks are copied, they keep moving while the entries are sorted
+      List<Map.Entry<Long, Entry>> candidates = new ArrayList<>();
+      entries.values().forEach(entry -> candidates.add(Map.entry(entry.accessedAt, entry)));
+      int excess = candidates.size() - (maxSize - maxSize / 10);
+      if (excess <= 0) {
+        return;
+      }
+      candidates.sort(Map.Entry.comparingByKey());
+      for (Map.Entry<Long, Entry> candidate : candidates.subList(0, excess)) {
+        if (remove(candidate.getValue().state.getId(), candidate.getValue())) {
+          sizeEvictionCounter.increment();
+        }
+      }
+    } finally {
+      trimLock.unlock();
+    }
+  }
+
+  private static int stripeOf(Long id) {
+    return Math.floorMod(Long.hashCode(id), STRIPES);
+  }
+
+  private static final class Entry {
+
+    private final CachedPlotState state;
+
+    private final long expiresAt;
+
+    private volatile long accessedAt;
+
+    private Entry(CachedPlotState state, long expiresAt, long accessedAt) {
+      this.state = state;
+      this.expiresAt = expiresAt;
+      this.accessedAt = accessedAt;
+    }
+  }
+}
@@ -0,0 +1,208 @@
+package com.example.automaticirrigationsystem.service;
+
+import com.example.automaticirrigationsystem.aop.logging.Loggable;
+import com.example.automaticirrigationsystem.domain.enumeration.Resolution;
+import com.example.automaticirrigationsystem.dto.ReadingSeriesDTO;
+import com.example.automaticirrigationsystem.exception.BadRequestException;
+import com.example.automaticirrigationsystem.exception.ResourceNotFoundException;
+import com.example.automaticirrigationsystem.repository.PlotRepository;
+import com.example.automaticirrigationsystem.repository.SensorReading;
+import com.example.automaticirrigationsystem.repository.SensorReadingRollupRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Rolls the sensor readings up into 1-minute, 1-hour and 1-day aggregates and enforces their
+ * retention. Each resolution is rolled up from the finer one behind a watermark: only the buckets
+ * that can't receive readings anymore are aggregated, readings arriving later than the allowed
+ * lateness are merged into the buckets already rolled up as they are appended. Range queries read
+ * the aggregates only, at the finest resolution that keeps the number of points bounded.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ReadingRollupService {
+
+  private final SensorReadingRollupRepository sensorReadingRollupRepository;
+  private final PlotRepository plotRepository;
+  private final TransactionTemplate transactionTemplate;
+  private final TaskScheduler maintenanceScheduler;
+  private final MeterRegistry meterRegistry;
+  @Value("${telemetry.rollup.enabled:true}")
+  private boolean enabled = true;
+  @Value("${telemetry.rollup.interval:60000}")
+  private long interval = 60000;
+  @Value("${telemetry.rollup.lateness:60000}")
+  private long lateness = 60000;
+  @Value("${telemetry.retention.raw:7d}")
+  private Duration rawRetention = Duration.ofDays(7);
+  @Value("${telemetry.retention.minute:30d}")
+  private Duration minuteRetention = Duration.ofDays(30);
+  @Value("${telemetry.retention.hour:400d}")
+  private Duration hourRetention = Duration.ofDays(400);
+  @Value("${telemetry.retention.day:0d}")
+  private Duration dayRetention = Duration.ZERO;
+  @Value("${telemetry.query.max-points:1440}")
+  private int maxPoints = 1440;
+  private Timer rollupTimer;
+  private ScheduledFuture<?> roller;
+
+  @PostConstruct
+  public void start() {
+    rollupTimer = Timer.builder("telemetry.rollup")
+        .description("Time taken to roll the sensor readings up and enforce their retention")
+        .register(meterRegistry);
+    if (enabled) {
+      roller = maintenanceScheduler.scheduleWithFixedDelay(this::rollUpSafely,
+          Instant.now().plusMillis(interval), Duration.ofMillis(interval));
+    }
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (roller != null) {
+      roller.cancel(false);
+    }
+  }
+
+  /**
+   * Rolls every resolution up to what can't change anymore at a given time, then deletes what is
+   * past its retention and already rolled up into the coarser resolution.
+   *
+   * @param now the epoch millis the job runs at.
+   */
+  public void rollUp(long now) {
+    rollupTimer.record(() -> {
+      long minuteWatermark = rollUp(Resolution.MINUTE, now - lateness);
+      long hourWatermark = rollUp(Resolution.HOUR, minuteWatermark);
+      long dayWatermark = rollUp(Resolution.DAY, hourWatermark);
+
+      int readings = sensorReadingRollupRepository.deleteReadingsBefore(
+          Math.min(now - rawRetention.toMillis(), minuteWatermark));
+      int minutes = sensorReadingRollupRepository.deleteRollupsBefore(Resolution.MINUTE,
+          Math.min(now - minuteRetention.toMillis(), hourWatermark));
+      int hours = sensorReadingRollupRepository.deleteRollupsBefore(Resolution.HOUR,
+          Math.min(now - hourRetention.toMillis(), dayWatermark));
+      int days = dayRetention.isZero() ? 0 : sensorReadingRollupRepository
+          .deleteRollupsBefore(Resolution.DAY, now - dayRetention.toMillis());
+      log.debug("retention deleted {} readings, {} minutes, {} hours and {} days", readings,
+          minutes, hours, days);
+    });
+  }
+
+  /**
+   * Merges the readings appended behind the watermarks into the buckets already rolled up, within
+   * the transaction appending them. The watermarks are locked finest first, as the roll-up job
+   * does, so the job can't roll a bucket up while a reading is merged into it.
+   *
+   * @param readings the readings appended.
+   */
+  public void addLateReadings(List<SensorReading> readings) {
+    long lateBefore = System.currentTimeMillis() - lateness;
+    List<SensorReading> late = readings.stream()
+        .filter(reading -> reading.getReadAt() < lateBefore)
+        .collect(Collectors.toList());
+    for (Resolution resolution : Resolution.values()) {
+      if (late.isEmpty()) {
+        return;
+      }
+      long watermark = sensorReadingRollupRepository.lockWatermark(resolution);
+      late = late.stream()
+          .filter(reading -> resolution.bucketStart(reading.getReadAt()) < watermark)
+          .collect(Collectors.toList());
+      if (!late.isEmpty()) {
+        int buckets = sensorReadingRollupRepository.mergeReadings(resolution, late);
+        log.debug("{} late readings merged into {} buckets of {}", late.size(), buckets,
+            resolution);
+      }
+    }
+  }
+
+  /**
+   * Get the readings of the sensor of a plot over a time range.
+   *
+   * @param plotId     the plot id.
+   * @param from       the epoch millis the range starts at.
+   * @param to         the epoch millis the range ends before.
+   * @param resolution the resolution, or null to pick the finest one within the points limit.
+   * @return the aggregates of the readings, one point per bucket holding readings.
+   */
+  @Loggable
+  public ReadingSeriesDTO findReadings(Long plotId, long from, long to, Resolution resolution) {
+    if (from >= to) {
+      throw new BadRequestException("The range must end after it starts");
+    }
+    Resolution selected = resolution == null ? selectResolution(from, to) : resolution;
+    long bucketsCount = (to - selected.bucketStart(from)) / selected.getMillis();
+    if (bucketsCount > maxPoints) {
+      throw new BadRequestException("The range holds more than " + maxPoints + " points at "
+          + selected + " resolution");
+    }
+    if (!plotRepository.existsById(plotId)) {
+      throw new ResourceNotFoundException("plot doesn't exist!");
+    }
+    ReadingSeriesDTO series = new ReadingSeriesDTO();
+    series.setPlotId(plotId);
+    series.setResolution(selected);
+    series.setFrom(from);
+    series.setTo(to);
+    series.setPoints(sensorReadingRollupRepository.findPointsOfPlot(plotId, selected,
+        selected.bucketStart(from), to));
+    return series;
+  }
+
+  private Resolution selectResolution(long from, long to) {
+    for (Resolution resolution : Resolution.values()) {
+      if ((to - resolution.bucketStart(from)) / resolution.getMillis() <= maxPoints) {
+        return resolution;
+      }
+    }
+    return Resolution.DAY;
+  }
+
+  /**
+   * Rolls one resolution up to the last bucket ending before a limit, in a transaction holding the
+   * watermark lock.
+   *
+   * @return the watermark of the resolution.
+   */
+  private long rollUp(Resolution resolution, long limit) {
+    long to = resolution.bucketStart(limit);
+    Long watermark = transactionTemplate.execute(status -> {
+      long from = sensorReadingRollupRepository.lockWatermark(resolution);
+      if (from >= to) {
+        return from;
+      }
+      Long first = sensorReadingRollupRepository.findFirstSourceTime(resolution, from);
+      if (first != null && first < to) {
+        int buckets = sensorReadingRollupRepository.rollUp(resolution,
+            Math.max(from, resolution.bucketStart(first)), to);
+        log.debug("{} buckets of {} rolled up before {}", buckets, resolution, to);
+      }
+      sensorReadingRollupRepository.updateWatermark(resolution, to);
+      return to;
+    });
+    return watermark == null ? 0 : watermark;
+  }
+
+  private void rollUpSafely() {
+    try {
+      rollUp(System.currentTimeMillis());
+    } catch (RuntimeException e) {
+      log.error("sensor readings roll-up failed with cause = '{}'", e.getMessage(), e);
+    }
+  }
+}
@@ -0,0 +1,50 @@
+package com.example.automaticirrigationsystem.service;
+
+import com.example.automaticirrigationsystem.domain.enumeration.Status;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * Progress of the sensor re-calls of a single plot, every plot gets its own tries budget.
+ */
+@Getter
+@ToString
+class RetryState {
+
+  private final Long plotId;
+
+  private final AtomicInteger remainingTries;
+
+  private final AtomicInteger sensorCalls = new AtomicInteger();
+
+  /**
+   * Epoch millis from which the poller calls the sensor again, right away for a new state.
+   */
+  @Setter
+  private volatile long nextCallTime;
+
+  /**
+   * Completed with the last sensor status seen: UP once irrigation started, DOWN once the tries
+   * are exhausted and the plot alert is raised.
+   */
+  @ToString.Exclude
+  private final CompletableFuture<Status> result = new CompletableFuture<>();
+
+  RetryState(Long plotId, int triesCount) {
+    this.plotId = plotId;
+    this.remainingTries = new AtomicInteger(triesCount);
+  }
+
+  /**
+   * Consumes one try of the budget.
+   *
+   * @return the tries left after this one, negative when the budget was already exhausted.
+   */
+  int useTry() {
+    sensorCalls.incrementAndGet();
+    return remainingTries.decrementAndGet();
+  }
+}
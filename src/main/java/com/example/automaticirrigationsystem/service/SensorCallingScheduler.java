@@ -2,83 +2,258 @@ package com.example.automaticirrigationsystem.service;
 
 import com.example.automaticirrigationsystem.aop.logging.Loggable;
 import com.example.automaticirrigationsystem.domain.Plot;
+import com.example.automaticirrigationsystem.domain.enumeration.PlotEventType;
 import com.example.automaticirrigationsystem.domain.enumeration.Status;
+import com.example.automaticirrigationsystem.dto.PlotEventDTO;
+import com.example.automaticirrigationsystem.exception.ResourceNotFoundException;
+import com.example.automaticirrigationsystem.repository.PlotBatchRepository;
 import com.example.automaticirrigationsystem.repository.PlotRepository;
+import com.example.automaticirrigationsystem.repository.PlotSensorStatus;
+import com.example.automaticirrigationsystem.repository.SensorCallOutcome;
+import com.example.automaticirrigationsystem.util.TransactionUtil;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
-
+/**
+ * Re-calls the sensors of the plots whose sensor was DOWN when irrigation was requested. A single
+ * poller checks every due plot on each tick: the sensor statuses are read with one query per chunk
+ * of plots and the results are written back in JDBC batches.
+ */
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class SensorCallingScheduler {
 
   public static final String DATE_TIME_FORMAT = "dd-MM-yyyy HH:mm:ss";
-  private static final int TIME_SLEEP = 1000 * 30;
   private final PlotRepository plotRepository;
+  private final PlotBatchRepository plotBatchRepository;
+  private final PlotStateCache plotStateCache;
+  private final PlotAlertIndex plotAlertIndex;
+  private final PlotEventBroadcaster plotEventBroadcaster;
+  private final WaterSupply waterSupply;
+  private final PlotLocks plotLocks;
+  private final TransactionTemplate transactionTemplate;
+  private final TaskScheduler sensorRetryScheduler;
+  private final TaskExecutor sensorRetryExecutor;
+  private final MeterRegistry meterRegistry;
   @Value("${tries.count}")
   private int triesCount = 10;
+  @Value("${tries.interval:30000}")
+  private long triesInterval = 1000 * 30;
+  @Value("${tries.poll-interval:1000}")
+  private long pollInterval = 1000;
+  @Value("${tries.batch-size:1000}")
+  private int batchSize = 1000;
+  private final ConcurrentMap<Long, RetryState> retryStates = new ConcurrentHashMap<>();
+  private Timer tickTimer;
+  private ScheduledFuture<?> poller;
+
+  @PostConstruct
+  public void startPolling() {
+    tickTimer = Timer.builder("sensor.poller.tick")
+        .description("Time taken to call every due sensor")
+        .register(meterRegistry);
+    Gauge.builder("sensor.poller.pending", retryStates, Map::size)
+        .description("Plots waiting for their sensor to be called again")
+        .register(meterRegistry);
+    poller = sensorRetryScheduler.scheduleWithFixedDelay(
+        () -> tickTimer.record(this::pollSensors), Duration.ofMillis(pollInterval));
+  }
+
+  @PreDestroy
+  public void stopPolling() {
+    if (poller != null) {
+      poller.cancel(false);
+    }
+  }
 
-  @Async
+  /**
+   * Starts calling the sensor of a plot, or joins the calls already in flight for that plot.
+   *
+   * @param plot the plot whose sensor is DOWN.
+   * @return completed with UP once irrigation started, or DOWN once the plot alert is raised.
+   */
   @Loggable
-  public void tryToConnectToSensor(Plot plot) {
+  public CompletableFuture<Status> tryToConnectToSensor(Plot plot) {
     log.debug("try to connect to sensor  '{}'", plot);
+    return tryToConnectToSensor(plot.getId());
+  }
+
+  /**
+   * Starts calling the sensor of a plot, or joins the calls already in flight for that plot.
+   *
+   * @param plotId the id of the plot whose sensor is DOWN.
+   * @return completed with UP once irrigation started, or DOWN once the plot alert is raised.
+   */
+  public CompletableFuture<Status> tryToConnectToSensor(Long plotId) {
+    RetryState retryState = new RetryState(plotId, triesCount);
+    RetryState inFlight = retryStates.putIfAbsent(plotId, retryState);
+    if (inFlight != null) {
+      log.debug("sensor of plot {} is already being called, joining {}", plotId, inFlight);
+      return inFlight.getResult();
+    }
+    return retryState.getResult();
+  }
+
+  /**
+   * Whether the sensor of a plot is being called.
+   *
+   * @param plotId the plot id.
+   * @return true while sensor calls are in flight for the plot.
+   */
+  public boolean isCallingSensor(Long plotId) {
+    return retryStates.containsKey(plotId);
+  }
+
+  private void pollSensors() {
+    long now = System.currentTimeMillis();
+    List<RetryState> due = retryStates.values().stream()
+        .filter(retryState -> retryState.getNextCallTime() <= now)
+        .collect(Collectors.toList());
+    if (due.isEmpty()) {
+      return;
+    }
+    log.debug("calling the sensors of {} plots", due.size());
+
+    List<CompletableFuture<Void>> chunks = new ArrayList<>();
+    for (int from = 0; from < due.size(); from += batchSize) {
+      List<RetryState> chunk = due.subList(from, Math.min(from + batchSize, due.size()));
+      chunks.add(CompletableFuture.runAsync(() -> callSensors(chunk, now), sensorRetryExecutor));
+    }
+    CompletableFuture.allOf(chunks.toArray(CompletableFuture[]::new))
+        .exceptionally(e -> {
+          log.error("sensor calls failed with cause = '{}'", e.getMessage(), e);
+          return null;
+        })
+        .join();
+  }
+
+  private void callSensors(List<RetryState> chunk, long now) {
+    // a part of the chunk at a time, so that the poller never holds most of the plot locks
+    for (List<RetryState> part : plotLocks.partition(chunk)) {
+      callSensorsLocked(part, now);
+    }
+  }
 
-    while (triesCount > 0) {
-      log.debug("try to connect sensor tries remain: {}", triesCount);
-      triesCount--;
-      plot = plotRepository.findById(plot.getId()).stream().findFirst().orElse(new Plot());
+  private void callSensorsLocked(List<RetryState> chunk, long now) {
+    Map<Long, RetryState> byPlot = chunk.stream()
+        .collect(Collectors.toMap(RetryState::getPlotId, Function.identity()));
+    List<Long> plotIds = List.copyOf(byPlot.keySet());
+    List<RetryState> reached = new ArrayList<>();
+    List<RetryState> alerted = new ArrayList<>();
+    // the plots are read and written holding their locks, so that a request can't interleave, and
+    // the plot rows and their outbox events are written together
+    plotLocks.runLocked(plotIds, () -> {
+      transactionTemplate.executeWithoutResult(
+          status -> callSensors(byPlot, reached, alerted, now));
+      return null;
+    });
+    plotStateCache.evictAll(plotIds);
 
-      log.debug("current plot status {}", plot);
+    reached.forEach(retryState -> finish(retryState, Status.UP));
+    alerted.forEach(retryState -> finish(retryState, Status.DOWN));
+    // whatever is left was not returned by the query: the plot or its sensor is gone
+    byPlot.values().forEach(retryState -> {
+      log.debug("plot {} doesn't exist anymore, stop calling its sensor", retryState.getPlotId());
+      retryStates.remove(retryState.getPlotId(), retryState);
+      retryState.getResult()
+          .completeExceptionally(new ResourceNotFoundException("plot doesn't exist!"));
+    });
+  }
+
+  private void callSensors(Map<Long, RetryState> byPlot, List<RetryState> reached,
+      List<RetryState> alerted, long now) {
+    List<PlotSensorStatus> plots = plotRepository.findSensorStatusByIdIn(byPlot.keySet());
 
-      if (plot.getPlotSensor().getStatus() == Status.UP) {
+    List<Long> admittedPlotIds = new ArrayList<>();
+    List<Long> queuedPlotIds = new ArrayList<>();
+    List<SensorCallOutcome> outcomes = new ArrayList<>();
+    for (PlotSensorStatus plot : plots) {
+      RetryState retryState = byPlot.remove(plot.getId());
+      int remainingTries = retryState.useTry();
+      log.debug("try to connect sensor of plot {} tries remain: {}", plot.getId(), remainingTries);
+
+      if (plot.getSensorStatus() == Status.UP) {
         if (plot.getSensorCallCount() != 0) {
-          log.debug("sensor is up now after {} tries", triesCount);
+          log.debug("sensor of plot {} is up now after {} tries", plot.getId(),
+              retryState.getSensorCalls());
+        }
+        reached.add(retryState);
+        // a plot not fitting in the water supply starts once enough plots end
+        if (waterSupply.admit(plot.getId(), waterSupply.drawOf(plot.getSlotsCount()))) {
+          admittedPlotIds.add(plot.getId());
+        } else {
+          queuedPlotIds.add(plot.getId());
         }
-        UpdatePlotIrrigationSuccess(plot);
-        break;
+        continue;
       }
-
-      plot.setSensorCallCount(plot.getSensorCallCount() + 1);
-      plot.setLastSensorCallTime(getFormattedNow());
-      plotRepository.save(plot);
-      if (triesCount != 0) {
-        sleepTillNextTry();
+      boolean hasAlert = remainingTries <= 0;
+      outcomes.add(new SensorCallOutcome(plot.getId(), plot.getSensorCallCount() + 1, hasAlert));
+      if (hasAlert) {
+        alerted.add(retryState);
+      } else {
+        retryState.setNextCallTime(now + triesInterval);
       }
     }
+    recordCalls(admittedPlotIds, queuedPlotIds, alerted, outcomes);
+  }
 
-    if (triesCount == 0) {
-      plot.setHasAlert(true);
+  private void recordCalls(List<Long> reachedPlotIds, List<Long> queuedPlotIds,
+      List<RetryState> alerted, List<SensorCallOutcome> outcomes) {
+    String formattedNow = getFormattedNow();
+    if (!queuedPlotIds.isEmpty()) {
+      // the calls are over: once admitted, the queued plots start like any plot with its sensor UP
+      plotBatchRepository.clearSensorCalls(queuedPlotIds);
+      plotAlertIndex.clear(queuedPlotIds);
+    }
+    if (!reachedPlotIds.isEmpty()) {
+      TransactionUtil.afterRollback(() -> waterSupply.cancel(reachedPlotIds));
+      plotBatchRepository.startIrrigation(reachedPlotIds, formattedNow);
+      plotAlertIndex.clear(reachedPlotIds);
+      plotEventBroadcaster.publish(reachedPlotIds, PlotEventType.IRRIGATION_STARTED);
+    }
+    if (!outcomes.isEmpty()) {
+      plotBatchRepository.recordSensorCalls(outcomes, formattedNow);
+      List<Long> alertedPlotIds =
+          alerted.stream().map(RetryState::getPlotId).collect(Collectors.toList());
+      plotAlertIndex.raise(alertedPlotIds);
+      long time = System.currentTimeMillis();
+      plotEventBroadcaster.publish(outcomes.stream()
+          .map(outcome -> new PlotEventDTO(outcome.getPlotId(), PlotEventType.SENSOR_CALLED, time,
+              outcome.getSensorCallCount()))
+          .collect(Collectors.toList()));
+      plotEventBroadcaster.publish(alertedPlotIds, PlotEventType.ALERT_RAISED);
     }
-
-    plotRepository.save(plot);
   }
 
-  private void UpdatePlotIrrigationSuccess(Plot plot) {
-    plot.setHasAlert(false);
-    plot.setSensorCallCount(0);
-    plot.setLastSensorCallTime("");
-    plot.setLastIrrigationTime(getFormattedNow());
-    plot.setStartIrrigationTime(getFormattedNow());
-    plot.setIsIrrigated(true);
-    plot.getPlotTimerSlots().forEach(plotSlot -> plotSlot.setStatus(Status.UP));
+  private void finish(RetryState retryState, Status sensorStatus) {
+    retryStates.remove(retryState.getPlotId(), retryState);
+    retryState.getResult().complete(sensorStatus);
   }
 
   private String getFormattedNow() {
     return DateTimeFormatter.ofPattern(DATE_TIME_FORMAT).format(LocalDateTime.now());
   }
-
-  private void sleepTillNextTry() {
-    try {
-      Thread.sleep(TIME_SLEEP);
-    } catch (InterruptedException e) {
-      log.error("interrupted '{}'", e.getMessage());
-      Thread.currentThread().interrupt();
-    }
-  }
 }
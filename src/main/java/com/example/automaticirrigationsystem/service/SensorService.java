@@ -3,17 +3,22 @@ package com.example.automaticirrigationsystem.service;
 import com.example.automaticirrigationsystem.aop.logging.Loggable;
 import com.example.automaticirrigationsystem.domain.Plot;
 import com.example.automaticirrigationsystem.domain.Sensor;
+import com.example.automaticirrigationsystem.domain.enumeration.Status;
 import com.example.automaticirrigationsystem.dto.SensorDTO;
 import com.example.automaticirrigationsystem.exception.NoMoreThanOneSensorAllowed;
 import com.example.automaticirrigationsystem.exception.ResourceNotFoundException;
 import com.example.automaticirrigationsystem.repository.PlotRepository;
 import com.example.automaticirrigationsystem.repository.SensorRepository;
 import com.example.automaticirrigationsystem.service.mapper.SensorMapper;
+import java.util.List;
 import java.util.Optional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -29,6 +34,9 @@ public class SensorService {
   private final SensorRepository sensorRepository;
   private final PlotRepository plotRepository;
   private final SensorMapper sensorMapper;
+  private final SensorStatusBuffer sensorStatusBuffer;
+  private final PlotStateCache plotStateCache;
+  private final TelemetryService telemetryService;
 
   /**
    * Save a sensor.
@@ -51,9 +59,38 @@ public class SensorService {
     }
     existPlot.setPlotSensor(sensor);
     existPlot = plotRepository.save(existPlot);
+    plotStateCache.evict(plotId);
     return sensorMapper.toDto(existPlot.getPlotSensor());
   }
 
+  /**
+   * Whether the status updates of the sensors are buffered, see {@link SensorStatusBuffer}.
+   *
+   * @return true when write-behind is enabled.
+   */
+  public boolean isStatusBuffered() {
+    return sensorStatusBuffer.isEnabled();
+  }
+
+  /**
+   * Buffer the status reported by a sensor, to be written later together with other sensors'.
+   * The sensor is looked up unless a status of it is already buffered.
+   *
+   * @param sensorId the sensor id.
+   * @param status   the status reported.
+   * @return false if the sensor doesn't exist, its status isn't buffered then.
+   */
+  @Loggable
+  public boolean bufferStatus(Long sensorId, Status status) {
+    log.debug("Request to buffer Sensor status : {}, {}", sensorId, status);
+    if (sensorStatusBuffer.getPendingStatus(sensorId).isEmpty()
+        && !sensorRepository.existsById(sensorId)) {
+      return false;
+    }
+    sensorStatusBuffer.offer(sensorId, status);
+    return true;
+  }
+
   /**
    * Partially update a sensor.
    *
@@ -63,6 +100,11 @@ public class SensorService {
   @Loggable
   public Optional<SensorDTO> partialUpdate(SensorDTO sensorDTO) {
     log.debug("Request to partially update Sensor : {}", sensorDTO);
+    sensorStatusBuffer.discard(sensorDTO.getId());
+    plotStateCache.evictSensors(List.of(sensorDTO.getId()));
+    if (sensorDTO.getSensorCode() != null) {
+      telemetryService.evictSensors(List.of(sensorDTO.getId()));
+    }
 
     return sensorRepository
         .findById(sensorDTO.getId())
@@ -87,6 +129,33 @@ public class SensorService {
     return sensorRepository.findAll(pageable).map(sensorMapper::toDto);
   }
 
+  /**
+   * Get the sensors following a cursor.
+   *
+   * @param after the id of the last sensor already returned, null to start from the first one.
+   * @param limit the maximum number of sensors to return.
+   * @return the sensors ordered by id.
+   */
+  @Loggable
+  @Transactional(readOnly = true)
+  public Slice<SensorDTO> findAllAfter(Long after, int limit) {
+    log.debug("Request to get Sensors after : {}", after);
+    return sensorRepository
+        .findAllByIdGreaterThan(after == null ? Long.MIN_VALUE : after,
+            PageRequest.of(0, limit, Sort.by("id")))
+        .map(sensorMapper::toDto);
+  }
+
+  /**
+   * Count the sensors.
+   *
+   * @return the number of sensors.
+   */
+  @Transactional(readOnly = true)
+  public long count() {
+    return sensorRepository.count();
+  }
+
   /**
    * Get one sensor by id.
    *
@@ -97,7 +166,12 @@ public class SensorService {
   @Transactional(readOnly = true)
   public Optional<SensorDTO> findOne(Long id) {
     log.debug("Request to get Sensor : {}", id);
-    return sensorRepository.findById(id).map(sensorMapper::toDto);
+    return sensorRepository.findById(id)
+        .map(sensorMapper::toDto)
+        .map(sensor -> {
+          sensorStatusBuffer.getPendingStatus(id).ifPresent(sensor::setStatus);
+          return sensor;
+        });
   }
 
   /**
@@ -109,5 +183,8 @@ public class SensorService {
   public void delete(Long id) {
     log.debug("Request to delete Sensor : {}", id);
     sensorRepository.deleteById(id);
+    sensorStatusBuffer.discard(id);
+    plotStateCache.evictSensors(List.of(id));
+    telemetryService.evictSensors(List.of(id));
   }
 }
@@ -0,0 +1,209 @@
+package com.example.automaticirrigationsystem.service;
+
+import com.example.automaticirrigationsystem.domain.enumeration.Status;
+import com.example.automaticirrigationsystem.repository.SensorBatchRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+
+/**
+ * Write-behind buffer for the statuses reported by the sensors. Only the last status of each
+ * sensor is kept until it is written, and the statuses are written in JDBC batches: on a fixed
+ * interval, as soon as a batch is full, and on shutdown. When the buffer holds as many sensors as
+ * its capacity, the caller writes a batch itself before its status is buffered, and writes its own
+ * status right away when that batch couldn't be written, so the buffer never grows past capacity.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class SensorStatusBuffer {
+
+  private final SensorBatchRepository sensorBatchRepository;
+  private final PlotStateCache plotStateCache;
+  private final TaskScheduler maintenanceScheduler;
+  private final TaskExecutor taskExecutor;
+  private final MeterRegistry meterRegistry;
+  @Value("${sensor.write-behind.enabled:false}")
+  private boolean enabled;
+  @Value("${sensor.write-behind.flush-interval:500}")
+  private long flushInterval = 500;
+  @Value("${sensor.write-behind.batch-size:500}")
+  private int batchSize = 500;
+  @Value("${sensor.write-behind.capacity:10000}")
+  private int capacity = 10000;
+  private final ConcurrentMap<Long, Status> pending = new ConcurrentHashMap<>();
+  private final AtomicBoolean flushRequested = new AtomicBoolean();
+  private final Object flushLock = new Object();
+  private Timer flushTimer;
+  private Counter writtenCounter;
+  private ScheduledFuture<?> flusher;
+
+  @PostConstruct
+  public void start() {
+    flushTimer = Timer.builder("sensor.status.flush")
+        .description("Time taken to write a batch of buffered sensor statuses")
+        .register(meterRegistry);
+    writtenCounter = Counter.builder("sensor.status.written")
+        .description("Buffered sensor statuses written to the database")
+        .register(meterRegistry);
+    Gauge.builder("sensor.status.pending", pending, Map::size)
+        .description("Sensor statuses waiting to be written")
+        .register(meterRegistry);
+    if (enabled) {
+      flusher = maintenanceScheduler.scheduleWithFixedDelay(this::flushAll,
+          Instant.now().plusMillis(flushInterval), Duration.ofMillis(flushInterval));
+    }
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (flusher != null) {
+      flusher.cancel(false);
+    }
+    flushAll();
+  }
+
+  /**
+   * Whether the sensor statuses are buffered instead of written right away.
+   *
+   * @return true when write-behind is enabled.
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Buffers the status reported by a sensor, replacing the one still pending for that sensor.
+   *
+   * @param sensorId the sensor id.
+   * @param status   the status reported.
+   */
+  public void offer(Long sensorId, Status status) {
+    if (isFull(sensorId)) {
+      log.debug("sensor status buffer is full, writing a batch before buffering {}", sensorId);
+      flush();
+      if (isFull(sensorId)) {
+        log.warn("sensor status buffer is still full, writing the status of {} now", sensorId);
+        write(sensorId, status);
+        return;
+      }
+    }
+    pending.put(sensorId, status);
+    if (pending.size() >= batchSize && flushRequested.compareAndSet(false, true)) {
+      taskExecutor.execute(() -> {
+        try {
+          flushAll();
+        } finally {
+          flushRequested.set(false);
+        }
+      });
+    }
+  }
+
+  /**
+   * Get the status of a sensor not written yet.
+   *
+   * @param sensorId the sensor id.
+   * @return the last status buffered for the sensor, if any.
+   */
+  public Optional<Status> getPendingStatus(Long sensorId) {
+    return Optional.ofNullable(pending.get(sensorId));
+  }
+
+  /**
+   * Drops the status buffered for a sensor, superseded by a write of the whole sensor.
+   *
+   * @param sensorId the sensor id.
+   */
+  public void discard(Long sensorId) {
+    pending.remove(sensorId);
+  }
+
+  private boolean isFull(Long sensorId) {
+    return pending.size() >= capacity && !pending.containsKey(sensorId);
+  }
+
+  /**
+   * Writes the status of a sensor without buffering it, after the batches being written. A status
+   * of the sensor buffered meanwhile is replaced instead. A failed write is thrown to the caller.
+   */
+  private void write(Long sensorId, Status status) {
+    synchronized (flushLock) {
+      if (pending.replace(sensorId, status) != null) {
+        return;
+      }
+      flushTimer.record(() -> sensorBatchRepository.updateStatuses(Map.of(sensorId, status)));
+      writtenCounter.increment();
+      plotStateCache.evictSensors(Set.of(sensorId));
+    }
+  }
+
+  /**
+   * Writes batches until the buffer holds less than a batch.
+   */
+  void flushAll() {
+    while (flush() >= batchSize) {
+      log.debug("{} sensor statuses left to write", pending.size());
+    }
+  }
+
+  /**
+   * Writes one batch of buffered statuses. Batches are written one at a time, so a status taken
+   * from the buffer is never written after a newer one of the same sensor.
+   *
+   * @return the number of statuses taken from the buffer.
+   */
+  private int flush() {
+    synchronized (flushLock) {
+      Map<Long, Status> batch = new HashMap<>();
+      Iterator<Long> sensorIds = pending.keySet().iterator();
+      while (sensorIds.hasNext() && batch.size() < batchSize) {
+        Long sensorId = sensorIds.next();
+        Status status = pending.remove(sensorId);
+        if (status != null) {
+          batch.put(sensorId, status);
+        }
+      }
+      if (batch.isEmpty()) {
+        return 0;
+      }
+      try {
+        int written = flushTimer.record(() -> sensorBatchRepository.updateStatuses(batch));
+        writtenCounter.increment(written);
+        plotStateCache.evictSensors(batch.keySet());
+        if (written < batch.size()) {
+          log.warn("{} buffered statuses belong to sensors that don't exist anymore",
+              batch.size() - written);
+        }
+      } catch (DataAccessException e) {
+        log.error("writing {} sensor statuses failed with cause = '{}'", batch.size(),
+            e.getMessage(), e);
+        // keep them for the next flush, unless a newer status arrived meanwhile
+        batch.forEach(pending::putIfAbsent);
+        return 0;
+      }
+      return batch.size();
+    }
+  }
+}
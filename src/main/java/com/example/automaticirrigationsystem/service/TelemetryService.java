@@ -0,0 +1,287 @@
+package com.example.automaticirrigationsystem.service;
+
+import com.example.automaticirrigationsystem.aop.logging.Loggable;
+import com.example.automaticirrigationsystem.domain.enumeration.Status;
+import com.example.automaticirrigationsystem.dto.TelemetryResultDTO;
+import com.example.automaticirrigationsystem.exception.BadRequestException;
+import com.example.automaticirrigationsystem.repository.ReadingSegmentLog;
+import com.example.automaticirrigationsystem.repository.SensorReading;
+import com.example.automaticirrigationsystem.repository.SensorReadingRepository;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.JsonEOFException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Service ingesting the readings pushed by the sensors. The readings are parsed token by token and
+ * appended in chunks, so memory use depends on the chunk size and not on the size of the batch.
+ * Each chunk is committed on its own and the readings already stored for a sensor at a time are
+ * skipped, a batch that failed halfway is pushed again as is.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class TelemetryService {
+
+  private final SensorReadingRepository sensorReadingRepository;
+  private final ReadingSegmentLog readingSegmentLog;
+  private final ReadingRollupService readingRollupService;
+  private final TransactionTemplate transactionTemplate;
+  private final ObjectMapper objectMapper;
+  private final MeterRegistry meterRegistry;
+  @Value("${telemetry.chunk-size:5000}")
+  private int chunkSize = 5000;
+  @Value("${telemetry.sensor-cache.max-size:100000}")
+  private int sensorCacheMaxSize = 100000;
+  @Value("${telemetry.sensor-cache.ttl:300000}")
+  private long sensorCacheTtl = 300000;
+
+  /**
+   * Sensor ids by code, the codes are resolved once for the readings to come until they expire or
+   * their sensor is deleted. Past the maximum size the codes are all resolved again.
+   */
+  private final ConcurrentMap<String, CachedSensorId> sensorIds = new ConcurrentHashMap<>();
+  private Counter acceptedCounter;
+  private Counter rejectedCounter;
+
+  @PostConstruct
+  public void registerMeters() {
+    acceptedCounter = Counter.builder("telemetry.readings")
+        .description("Sensor readings received")
+        .tag("outcome", "accepted")
+        .register(meterRegistry);
+    rejectedCounter = Counter.builder("telemetry.readings")
+        .description("Sensor readings received")
+        .tag("outcome", "rejected")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Ingest a batch of readings, a JSON array of {@code [sensorCode, epochMillis, moisture, status]}
+   * arrays. The readings of unknown sensors and the malformed ones are rejected, the others are
+   * appended. If the input turns malformed, the readings before are appended and their count is
+   * reported in the error.
+   *
+   * @param readings the readings, read as they arrive.
+   * @return the number of readings accepted and rejected.
+   * @throws IOException if the input can't be read.
+   */
+  @Loggable
+  public TelemetryResultDTO ingest(InputStream readings) throws IOException {
+    TelemetryResultDTO result = new TelemetryResultDTO();
+    List<PendingReading> chunk = new ArrayList<>(chunkSize);
+    try (JsonParser parser = objectMapper.getFactory().createParser(readings)) {
+      if (parser.nextToken() != JsonToken.START_ARRAY) {
+        throw new BadRequestException("The readings must be a JSON array");
+      }
+      JsonToken token;
+      while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+        if (token == null) {
+          throw new JsonEOFException(parser, null, "The readings array is not closed");
+        }
+        PendingReading reading = token == JsonToken.START_ARRAY ? readReading(parser) : null;
+        if (reading == null) {
+          parser.skipChildren();
+          rejectedCounter.increment();
+          result.setRejected(result.getRejected() + 1);
+          continue;
+        }
+        chunk.add(reading);
+        if (chunk.size() >= chunkSize) {
+          append(chunk, result);
+        }
+      }
+    } catch (JsonProcessingException e) {
+      // the rest of the input can't be told apart, what was read so far is still appended and
+      // skipped if the batch is pushed again
+      log.debug("malformed readings, ingestion stopped: {}", e.getOriginalMessage());
+      append(chunk, result);
+      throw new BadRequestException("Malformed readings after " + result.getAccepted()
+          + " accepted: " + e.getOriginalMessage());
+    }
+    append(chunk, result);
+    return result;
+  }
+
+  /**
+   * Reads the values of one reading, the parser ends on the closing token of the reading.
+   *
+   * @return the reading, or null if it's malformed.
+   */
+  private PendingReading readReading(JsonParser parser) throws IOException {
+    PendingReading reading = new PendingReading();
+    boolean valid = true;
+    int index = 0;
+    JsonToken token;
+    while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+      if (token == null) {
+        throw new JsonEOFException(parser, null, "A reading is not closed");
+      }
+      if (token.isStructStart()) {
+        parser.skipChildren();
+        valid = false;
+      } else if (index == 0 && token == JsonToken.VALUE_STRING) {
+        reading.sensorCode = parser.getText();
+      } else if (index == 1 && token == JsonToken.VALUE_NUMBER_INT) {
+        reading.readAt = parser.getLongValue();
+      } else if (index == 2 && token.isNumeric()) {
+        reading.moisture = parser.getDoubleValue();
+      } else if (index == 3 && token == JsonToken.VALUE_STRING) {
+        reading.status = toStatus(parser.getText());
+        valid &= reading.status != null;
+      } else if (index != 3 || token != JsonToken.VALUE_NULL) {
+        valid = false;
+      }
+      index++;
+    }
+    return valid && index >= 3 && index <= 4 ? reading : null;
+  }
+
+  /**
+   * Forgets the codes of sensors deleted, or whose code changed, so that their readings aren't
+   * appended to them anymore. The codes are forgotten right away and once the current transaction
+   * completes, a code resolved meanwhile from the rows not yet written isn't kept.
+   *
+   * @param deletedSensorIds the sensor ids.
+   */
+  public void evictSensors(Collection<Long> deletedSensorIds) {
+    if (deletedSensorIds.isEmpty()) {
+      return;
+    }
+    Set<Long> evicted = Set.copyOf(deletedSensorIds);
+    Runnable eviction = () -> sensorIds.values().removeIf(cached -> evicted.contains(cached.id));
+    eviction.run();
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCompletion(int status) {
+          eviction.run();
+        }
+      });
+    }
+  }
+
+  private void append(List<PendingReading> chunk, TelemetryResultDTO result) {
+    if (chunk.isEmpty()) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    resolveSensorIds(chunk, now);
+    List<SensorReading> readings = new ArrayList<>(chunk.size());
+    for (PendingReading reading : chunk) {
+      Long sensorId = sensorIdOf(reading.sensorCode, now);
+      if (sensorId != null) {
+        readings.add(new SensorReading(sensorId, reading.readAt, reading.moisture,
+            reading.status));
+      }
+    }
+    if (!readings.isEmpty()) {
+      List<SensorReading> appended = transactionTemplate.execute(status -> {
+        List<SensorReading> stored = sensorReadingRepository.appendAll(readings);
+        readingRollupService.addLateReadings(stored);
+        return stored;
+      });
+      if (readingSegmentLog.isEnabled() && appended != null && !appended.isEmpty()) {
+        readingSegmentLog.appendAll(appended);
+      }
+    }
+    int rejected = chunk.size() - readings.size();
+    acceptedCounter.increment(readings.size());
+    rejectedCounter.increment(rejected);
+    result.setAccepted(result.getAccepted() + readings.size());
+    result.setRejected(result.getRejected() + rejected);
+    chunk.clear();
+  }
+
+  private void resolveSensorIds(List<PendingReading> chunk, long now) {
+    Set<String> unknownCodes = new HashSet<>();
+    for (PendingReading reading : chunk) {
+      if (sensorIdOf(reading.sensorCode, now) == null) {
+        unknownCodes.add(reading.sensorCode);
+      }
+    }
+    if (!unknownCodes.isEmpty()) {
+      Map<String, Long> found = sensorReadingRepository.findSensorIdsByCode(unknownCodes);
+      if (sensorIds.size() + found.size() > sensorCacheMaxSize) {
+        log.debug("{} sensor codes resolved, forgetting them all", sensorIds.size());
+        sensorIds.clear();
+      }
+      long expiresAt = now + sensorCacheTtl;
+      found.forEach((code, id) -> sensorIds.put(code, new CachedSensorId(id, expiresAt)));
+      if (found.size() < unknownCodes.size()) {
+        log.debug("readings of {} unknown sensors rejected", unknownCodes.size() - found.size());
+      }
+    }
+  }
+
+  private Long sensorIdOf(String sensorCode, long now) {
+    CachedSensorId cached = sensorIds.get(sensorCode);
+    if (cached == null) {
+      return null;
+    }
+    if (cached.expiresAt <= now) {
+      sensorIds.remove(sensorCode, cached);
+      return null;
+    }
+    return cached.id;
+  }
+
+  private static Status toStatus(String value) {
+    for (Status status : Status.values()) {
+      if (status.name().equals(value)) {
+        return status;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * The id a sensor code was resolved to, until it expires.
+   */
+  private static final class CachedSensorId {
+
+    private final long id;
+
+    private final long expiresAt;
+
+    private CachedSensorId(long id, long expiresAt) {
+      this.id = id;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  /**
+   * A reading parsed whose sensor code isn't resolved yet.
+   */
+  private static class PendingReading {
+
+    private String sensorCode;
+
+    private long readAt;
+
+    private double moisture;
+
+    private Status status;
+  }
+}
@@ -0,0 +1,253 @@
+package com.example.automaticirrigationsystem.service;
+
+import com.example.automaticirrigationsystem.repository.PlotIrrigationDemand;
+import com.example.automaticirrigationsystem.repository.PlotRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Admission control of the irrigation on the shared water supply. Every irrigated plot draws the
+ * flow of its slots, and a plot starts only if its draw fits in the capacity left: the running
+ * total is reserved with a compare-and-set, so admission never takes a lock while nothing waits.
+ *
+ * <p>The plots that don't fit wait in arrival order, in a skip list, and are admitted as the plots
+ * ending irrigation release their draw: the caller ending the plots starts the admitted ones. A
+ * plot drawing more than the whole capacity is admitted alone. With no capacity configured every
+ * plot is admitted right away and nothing is tracked.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class WaterSupply {
+
+  private final PlotRepository plotRepository;
+  private final MeterRegistry meterRegistry;
+  /**
+   * Water the supply delivers per minute, 0 for no limit.
+   */
+  @Value("${irrigation.supply.capacity:0}")
+  private long capacity;
+  /**
+   * Water delivered by one slot per minute.
+   */
+  @Value("${irrigation.slot-flow-rate:10}")
+  private double slotFlowRate = 10;
+  private final AtomicLong activeDraw = new AtomicLong();
+  private final ConcurrentMap<Long, Long> drawByPlot = new ConcurrentHashMap<>();
+  private final AtomicLong arrivals = new AtomicLong();
+  private final ConcurrentSkipListMap<Long, Waiting> queue = new ConcurrentSkipListMap<>();
+  private final ConcurrentMap<Long, Long> arrivalByPlot = new ConcurrentHashMap<>();
+  /**
+   * Guards the queue, taken only when a plot has to wait or waiting plots may be admitted.
+   */
+  private final Object queueLock = new Object();
+  private Counter admittedCounter;
+  private Counter queuedCounter;
+
+  @PostConstruct
+  public void start() {
+    admittedCounter = Counter.builder("irrigation.supply.admissions")
+        .description("Plots admitted on the water supply")
+        .tag("result", "admitted")
+        .register(meterRegistry);
+    queuedCounter = Counter.builder("irrigation.supply.admissions")
+        .description("Plots admitted on the water supply")
+        .tag("result", "queued")
+        .register(meterRegistry);
+    Gauge.builder("irrigation.supply.draw", activeDraw, AtomicLong::get)
+        .description("Water drawn per minute by the irrigated plots")
+        .register(meterRegistry);
+    Gauge.builder("irrigation.supply.queued", queue, Map::size)
+        .description("Plots waiting for water supply to start")
+        .register(meterRegistry);
+    if (isLimited()) {
+      for (PlotIrrigationDemand plot : plotRepository.findIrrigatedDemands()) {
+        long draw = drawOf(plot.getSlotsCount());
+        drawByPlot.put(plot.getId(), draw);
+        activeDraw.addAndGet(draw);
+      }
+      log.debug("water supply drawn at {}/{} by {} plots", activeDraw.get(), capacity,
+          drawByPlot.size());
+    }
+  }
+
+  /**
+   * Whether the water supply has a capacity.
+   *
+   * @return true when the plots are admitted against a capacity.
+   */
+  public boolean isLimited() {
+    return capacity > 0;
+  }
+
+  /**
+   * Computes the water a plot draws per minute while irrigated.
+   *
+   * @param slotsCount the number of slots of the plot.
+   * @return the draw of the plot.
+   */
+  public long drawOf(Integer slotsCount) {
+    return slotsCount == null ? 0 : Math.round(slotsCount * slotFlowRate);
+  }
+
+  /**
+   * Admits a plot to start irrigation, or queues it until its draw fits. A plot already admitted
+   * is admitted again without drawing twice, a plot already queued keeps its place.
+   *
+   * @param plotId the plot id.
+   * @param draw   the draw of the plot.
+   * @return true if the plot can start, false if it was queued.
+   */
+  public boolean admit(Long plotId, long draw) {
+    if (!isLimited() || drawByPlot.containsKey(plotId)) {
+      return true;
+    }
+    if (queue.isEmpty() && reserve(plotId, draw)) {
+      admittedCounter.increment();
+      return true;
+    }
+    synchronized (queueLock) {
+      Long arrival = arrivalByPlot.get(plotId);
+      boolean first = queue.isEmpty() || arrival != null && arrival.equals(queue.firstKey());
+      if (first && reserve(plotId, draw)) {
+        if (arrival != null) {
+          queue.remove(arrival);
+          arrivalByPlot.remove(plotId);
+        }
+        admittedCounter.increment();
+        return true;
+      }
+      if (arrival == null) {
+        long next = arrivals.incrementAndGet();
+        queue.put(next, new Waiting(plotId, draw));
+        arrivalByPlot.put(plotId, next);
+        queuedCounter.increment();
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Releases the draw of plots that ended irrigation, or were deleted, and admits the waiting
+   * plots that fit in the capacity left. The plots released are no longer waiting either.
+   *
+   * @param plotIds the plot ids.
+   * @return the waiting plots admitted, in arrival order, their draw reserved: the caller has to
+   *     start them, or to release them.
+   */
+  public List<Long> release(Collection<Long> plotIds) {
+    if (!isLimited()) {
+      return List.of();
+    }
+    cancel(plotIds);
+    // always under the lock: a plot queued while the draw was released is seen here
+    List<Long> admitted = new ArrayList<>();
+    synchronized (queueLock) {
+      plotIds.forEach(this::dequeue);
+      Map.Entry<Long, Waiting> first;
+      while ((first = queue.firstEntry()) != null
+          && reserve(first.getValue().plotId, first.getValue().draw)) {
+        queue.remove(first.getKey());
+        arrivalByPlot.remove(first.getValue().plotId);
+        admitted.add(first.getValue().plotId);
+      }
+    }
+    admittedCounter.increment(admitted.size());
+    return admitted;
+  }
+
+  /**
+   * Gives back the draw of plots without admitting the waiting ones, when the start of the plots
+   * was rolled back.
+   *
+   * @param plotIds the plot ids.
+   */
+  public void cancel(Collection<Long> plotIds) {
+    for (Long plotId : plotIds) {
+      Long draw = drawByPlot.remove(plotId);
+      if (draw != null) {
+        activeDraw.addAndGet(-draw);
+      }
+    }
+  }
+
+  /**
+   * Get the water drawn per minute by the admitted plots.
+   *
+   * @return the active draw.
+   */
+  public long getActiveDraw() {
+    return activeDraw.get();
+  }
+
+  /**
+   * Whether a plot is waiting for water supply.
+   *
+   * @param plotId the plot id.
+   * @return true if the plot is queued.
+   */
+  public boolean isQueued(Long plotId) {
+    return arrivalByPlot.containsKey(plotId);
+  }
+
+  /**
+   * Get the number of plots waiting for water supply.
+   *
+   * @return the size of the queue.
+   */
+  public int queuedCount() {
+    return queue.size();
+  }
+
+  private boolean reserve(Long plotId, long draw) {
+    // the plot is claimed first, so that concurrent starts of a plot draw once
+    if (drawByPlot.putIfAbsent(plotId, draw) != null) {
+      return true;
+    }
+    long current;
+    do {
+      current = activeDraw.get();
+      if (current > 0 && current + draw > capacity) {
+        drawByPlot.remove(plotId, draw);
+        return false;
+      }
+    } while (!activeDraw.compareAndSet(current, current + draw));
+    return true;
+  }
+
+  private void dequeue(Long plotId) {
+    Long arrival = arrivalByPlot.remove(plotId);
+    if (arrival != null) {
+      queue.remove(arrival);
+    }
+  }
+
+  /**
+   * A plot waiting for water supply.
+   */
+  private static final class Waiting {
+
+    private final Long plotId;
+
+    private final long draw;
+
+    private Waiting(Long plotId, long draw) {
+      this.plotId = plotId;
+      this.draw = draw;
+    }
+  }
+}
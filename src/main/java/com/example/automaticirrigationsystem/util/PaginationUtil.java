@@ -1,18 +1,35 @@
 package com.example.automaticirrigationsystem.util;
 
 import java.text.MessageFormat;
+import java.util.function.Function;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpHeaders;
 import org.springframework.web.util.UriComponentsBuilder;
 
 public final class PaginationUtil {
 
+  public static final int DEFAULT_LIMIT = 20;
+  public static final int MAX_LIMIT = 2000;
   private static final String HEADER_X_TOTAL_COUNT = "X-Total-Count";
   private static final String HEADER_LINK_FORMAT = "<{0}>; rel=\"{1}\"";
 
   private PaginationUtil() {
   }
 
+  /**
+   * Bounds the size of a cursor page.
+   *
+   * @param limit the requested limit, or null for the default one.
+   * @return the limit to apply.
+   */
+  public static int cursorLimit(Integer limit) {
+    if (limit == null) {
+      return DEFAULT_LIMIT;
+    }
+    return Math.max(1, Math.min(limit, MAX_LIMIT));
+  }
+
   public static <T> HttpHeaders generatePaginationHttpHeaders(UriComponentsBuilder uriBuilder,
       Page<T> page) {
     HttpHeaders headers = new HttpHeaders();
@@ -34,6 +51,35 @@ public final class PaginationUtil {
     return headers;
   }
 
+  /**
+   * Generates the headers of a cursor page: a {@code next} link seeking after the last element
+   * returned, and the total count only when it was asked for.
+   *
+   * @param uriBuilder the request uri.
+   * @param slice      the elements returned.
+   * @param cursorOf   extracts the cursor from an element.
+   * @param totalCount the total count, or null to leave it out.
+   * @return the pagination headers.
+   */
+  public static <T> HttpHeaders generateCursorPaginationHttpHeaders(UriComponentsBuilder uriBuilder,
+      Slice<T> slice, Function<T, ?> cursorOf, Long totalCount) {
+    HttpHeaders headers = new HttpHeaders();
+    if (totalCount != null) {
+      headers.add(HEADER_X_TOTAL_COUNT, Long.toString(totalCount));
+    }
+    if (slice.hasNext()) {
+      T last = slice.getContent().get(slice.getNumberOfElements() - 1);
+      String uri = uriBuilder.replaceQueryParam("after", cursorOf.apply(last))
+          .replaceQueryParam("limit", slice.getSize())
+          .replaceQueryParam("page")
+          .replaceQueryParam("size")
+          .toUriString()
+          .replace(",", "%2C").replace(";", "%3B");
+      headers.add(HttpHeaders.LINK, MessageFormat.format(HEADER_LINK_FORMAT, uri, "next"));
+    }
+    return headers;
+  }
+
   private static String prepareLink(UriComponentsBuilder uriBuilder, int pageNumber, int pageSize,
       String relType) {
     return MessageFormat.format("<{0}>; rel=\"{1}\"",
@@ -0,0 +1,49 @@
+package com.example.automaticirrigationsystem.util;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public final class TransactionUtil {
+
+  private TransactionUtil() {
+  }
+
+  /**
+   * Runs an action once the current transaction commits, or right away outside a transaction. The
+   * action is dropped if the transaction rolls back.
+   *
+   * @param action the action to run.
+   */
+  public static void afterCommit(Runnable action) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      action.run();
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        action.run();
+      }
+    });
+  }
+
+  /**
+   * Runs an action if the current transaction rolls back, to undo what was done in memory for it.
+   * Nothing is run outside a transaction.
+   *
+   * @param action the action to run.
+   */
+  public static void afterRollback(Runnable action) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCompletion(int status) {
+        if (status == STATUS_ROLLED_BACK) {
+          action.run();
+        }
+      }
+    });
+  }
+}
@@ -2,15 +2,21 @@ package com.example.automaticirrigationsystem.web.rest;
 
 
 import com.example.automaticirrigationsystem.aop.logging.Loggable;
+import com.example.automaticirrigationsystem.dto.IrrigationBatchDTO;
+import com.example.automaticirrigationsystem.dto.IrrigationResultDTO;
 import com.example.automaticirrigationsystem.dto.PlotDTO;
 import com.example.automaticirrigationsystem.exception.ResourceNotFoundException;
 import com.example.automaticirrigationsystem.service.IrrigationService;
+import java.util.List;
 import java.util.Optional;
+import javax.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -63,6 +69,20 @@ public class IrrigationController {
         });
   }
 
-
-
+  /**
+   * {@code POST  /irrigate/batch} : start or end irrigate many plots at once.
+   *
+   * @param irrigationBatchDTO the action and the ids of the plots.
+   * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the outcome of
+   * each plot, or with status {@code 400 (Bad Request)} if the batch is not valid.
+   */
+  @PostMapping("/irrigate/batch")
+  @Loggable
+  public ResponseEntity<List<IrrigationResultDTO>> batchPlotIrrigation(
+      @Valid @RequestBody IrrigationBatchDTO irrigationBatchDTO) {
+    log.debug("REST request to {} irrigation : {}", irrigationBatchDTO.getAction(),
+        irrigationBatchDTO.getPlotIds());
+    return ResponseEntity.ok().body(irrigationService.irrigateAll(
+        irrigationBatchDTO.getAction(), irrigationBatchDTO.getPlotIds()));
+  }
 }
@@ -0,0 +1,41 @@
+package com.example.automaticirrigationsystem.web.rest;
+
+import com.example.automaticirrigationsystem.aop.logging.Loggable;
+import com.example.automaticirrigationsystem.service.PlotEventBroadcaster;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * REST controller pushing the changes of the plots state as server-sent events.
+ */
+@RestController
+@RequestMapping("/api")
+@Slf4j
+@RequiredArgsConstructor
+public class PlotEventController {
+
+  private final PlotEventBroadcaster plotEventBroadcaster;
+
+  /**
+   * {@code GET  /plots/events} : subscribe to the changes of the plots state: irrigation started or
+   * ended, sensor called again, alert raised or cleared. Each event is named after its type and
+   * carries the plot id. A client that doesn't keep up with the events is disconnected.
+   *
+   * @param plotIds the plots to get the events of, all the plots if absent.
+   * @return the stream of events.
+   */
+  @GetMapping(value = "/plots/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  @Loggable
+  public SseEmitter streamPlotEvents(
+      @RequestParam(value = "plotId", required = false) List<Long> plotIds) {
+    log.debug("REST request to stream the events of Plots : {}", plotIds);
+    return plotEventBroadcaster.subscribe(plotIds == null ? List.of() : plotIds);
+  }
+}
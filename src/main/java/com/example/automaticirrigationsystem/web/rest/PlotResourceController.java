@@ -2,11 +2,18 @@ package com.example.automaticirrigationsystem.web.rest;
 
 
 import com.example.automaticirrigationsystem.aop.logging.Loggable;
+import com.example.automaticirrigationsystem.dto.ImportResultDTO;
 import com.example.automaticirrigationsystem.dto.PlotConfigDTO;
 import com.example.automaticirrigationsystem.dto.PlotDTO;
 import com.example.automaticirrigationsystem.exception.ResourceNotFoundException;
+import com.example.automaticirrigationsystem.service.PlotImportService;
 import com.example.automaticirrigationsystem.service.PlotService;
 import com.example.automaticirrigationsystem.util.PaginationUtil;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.List;
@@ -16,8 +23,10 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.web.PageableDefault;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -26,7 +35,9 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 /**
@@ -40,6 +51,10 @@ public class PlotResourceController {
 
   private final PlotService plotService;
 
+  private final PlotImportService plotImportService;
+
+  private final ObjectMapper objectMapper;
+
   /**
    * {@code POST  /plots} : Create a new plot.
    *
@@ -62,6 +77,39 @@ public class PlotResourceController {
         .body(result);
   }
 
+  /**
+   * {@code POST  /plots/import} : Import plots, with their sensor and slots, from a JSON array.
+   *
+   * @param json the JSON array of plots to import.
+   * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the number of
+   * plots imported and the rejected rows, or with status {@code 400 (Bad Request)} if the body is
+   * not a JSON array.
+   * @throws IOException if the body can't be read.
+   */
+  @PostMapping(value = "/plots/import", consumes = MediaType.APPLICATION_JSON_VALUE)
+  @Loggable
+  public ResponseEntity<ImportResultDTO> importPlotsFromJson(InputStream json)
+      throws IOException {
+    log.debug("REST request to import Plots from JSON");
+    return ResponseEntity.ok().body(plotImportService.importJson(json));
+  }
+
+  /**
+   * {@code POST  /plots/import} : Import plots, with their sensor and slots, from a CSV.
+   *
+   * @param csv the CSV of plots to import, with a header naming the columns.
+   * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the number of
+   * plots imported and the rejected rows, or with status {@code 400 (Bad Request)} if the body has
+   * no header.
+   * @throws IOException if the body can't be read.
+   */
+  @PostMapping(value = "/plots/import", consumes = "text/csv")
+  @Loggable
+  public ResponseEntity<ImportResultDTO> importPlotsFromCsv(InputStream csv) throws IOException {
+    log.debug("REST request to import Plots from CSV");
+    return ResponseEntity.ok().body(plotImportService.importCsv(csv));
+  }
+
   /**
    * {@code PUT  /plots/:id} : Updates an existing plot.
    *
@@ -104,7 +152,7 @@ public class PlotResourceController {
     log.debug("REST request to update Plot : {}, {}", id, plotDTO);
 
     plotDTO.setId(id);
-    Optional<PlotDTO> result = plotService.partialUpdate(plotDTO);
+    Optional<PlotDTO> result = plotService.partialUpdate(plotDTO, id);
     return result.map(plot -> ResponseEntity.ok().body(plot))
         .orElseThrow(() -> {
           throw new ResourceNotFoundException("Plot doesn't exist");
@@ -112,15 +160,31 @@ public class PlotResourceController {
   }
 
   /**
-   * {@code GET  /plots} : get all the plots.
+   * {@code GET  /plots} : get all the plots. With {@code after} or {@code limit} the plots are
+   * paged with a cursor: the id index is seeked instead of counting and skipping rows, and the
+   * {@code next} link carries the cursor of the following page.
    *
    * @param pageable the pagination information.
+   * @param after    switches to cursor paging: the id of the last plot already returned.
+   * @param limit    switches to cursor paging: the maximum number of plots to return.
+   * @param count    whether a cursor page carries the total count.
    * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of plots in body.
    */
   @GetMapping("/plots")
   @Loggable
   public ResponseEntity<List<PlotDTO>> getAllPlots(
-      @PageableDefault(sort = {"id"}) Pageable pageable) {
+      @PageableDefault(sort = {"id"}) Pageable pageable,
+      @RequestParam(value = "after", required = false) Long after,
+      @RequestParam(value = "limit", required = false) Integer limit,
+      @RequestParam(value = "count", defaultValue = "false") boolean count) {
+    if (after != null || limit != null) {
+      log.debug("REST request to get Plots after : {}", after);
+      Slice<PlotDTO> slice = plotService.findAllAfter(after, PaginationUtil.cursorLimit(limit));
+      HttpHeaders headers = PaginationUtil.generateCursorPaginationHttpHeaders(
+          ServletUriComponentsBuilder.fromCurrentRequest(), slice, PlotDTO::getId,
+          count ? plotService.count() : null);
+      return ResponseEntity.ok().headers(headers).body(slice.getContent());
+    }
     log.debug("REST request to get a page of Plots");
     Page<PlotDTO> page = plotService.findAll(pageable);
     HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(
@@ -128,6 +192,33 @@ public class PlotResourceController {
     return ResponseEntity.ok().headers(headers).body(page.getContent());
   }
 
+  /**
+   * {@code GET  /plots/stream} : get all the plots as newline-delimited JSON, one plot per line.
+   * The plots are written to the response while the database cursor moves forward, so neither the
+   * client nor the server has to hold the whole fleet in memory.
+   *
+   * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the plots streamed in body.
+   */
+  @GetMapping(value = "/plots/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+  @Loggable
+  public ResponseEntity<StreamingResponseBody> streamAllPlots() {
+    log.debug("REST request to stream all Plots");
+    StreamingResponseBody body = out -> {
+      JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+      long count = plotService.forEachPlot(plot -> {
+        try {
+          generator.writeObject(plot);
+          generator.writeRaw('\n');
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+      generator.flush();
+      log.debug("{} plots streamed", count);
+    };
+    return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+  }
+
   /**
    * {@code GET  /plots/:id} : get the "id" plot.
    *
@@ -15,6 +15,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.web.PageableDefault;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
@@ -25,6 +26,7 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
@@ -68,7 +70,10 @@ public class SensorResourceController {
    * @param sensorDTO the sensorDTO to update.
    * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated
    * sensorDTO, or with status {@code 400 (Bad Request)} if the sensorDTO is not valid, or with
-   * status {@code 500 (Internal Server Error)} if the sensorDTO couldn't be updated.
+   * status {@code 500 (Internal Server Error)} if the sensorDTO couldn't be updated. With
+   * write-behind enabled, a status alone is buffered and acknowledged with status
+   * {@code 202 (Accepted)} before it is written, or with status {@code 404 (Not Found)} if the
+   * sensor doesn't exist.
    */
   @PutMapping("/sensors/{id}")
   @Loggable
@@ -78,6 +83,12 @@ public class SensorResourceController {
     log.debug("REST request to update Sensor : {}, {}", sensorId, sensorDTO);
 
     sensorDTO.setId(sensorId);
+    if (sensorService.isStatusBuffered() && sensorDTO.getSensorCode() == null) {
+      if (!sensorService.bufferStatus(sensorId, sensorDTO.getStatus())) {
+        throw new ResourceNotFoundException("sensor doesn't exist");
+      }
+      return ResponseEntity.accepted().body(sensorDTO);
+    }
     Optional<SensorDTO> result = sensorService.partialUpdate(sensorDTO);
     return result.map(sensor -> ResponseEntity.ok().body(sensor))
         .orElseThrow(() -> {
@@ -86,16 +97,32 @@ public class SensorResourceController {
   }
 
   /**
-   * {@code GET  /sensors} : get all the sensors.
+   * {@code GET  /sensors} : get all the sensors. With {@code after} or {@code limit} the sensors
+   * are paged with a cursor: the id index is seeked instead of counting and skipping rows, and
+   * the {@code next} link carries the cursor of the following page.
    *
    * @param pageable the pagination information.
+   * @param after    switches to cursor paging: the id of the last sensor already returned.
+   * @param limit    switches to cursor paging: the maximum number of sensors to return.
+   * @param count    whether a cursor page carries the total count.
    * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of sensors in
    * body.
    */
   @GetMapping("/sensors")
   @Loggable
   public ResponseEntity<List<SensorDTO>> getAllSensors(
-      @PageableDefault(sort = {"id"}) Pageable pageable) {
+      @PageableDefault(sort = {"id"}) Pageable pageable,
+      @RequestParam(value = "after", required = false) Long after,
+      @RequestParam(value = "limit", required = false) Integer limit,
+      @RequestParam(value = "count", defaultValue = "false") boolean count) {
+    if (after != null || limit != null) {
+      log.debug("REST request to get Sensors after : {}", after);
+      Slice<SensorDTO> slice = sensorService.findAllAfter(after, PaginationUtil.cursorLimit(limit));
+      HttpHeaders headers = PaginationUtil.generateCursorPaginationHttpHeaders(
+          ServletUriComponentsBuilder.fromCurrentRequest(), slice, SensorDTO::getId,
+          count ? sensorService.count() : null);
+      return ResponseEntity.ok().headers(headers).body(slice.getContent());
+    }
 
     log.debug("REST request to get a page of Sensors");
     Page<SensorDTO> page = sensorService.findAll(pageable);
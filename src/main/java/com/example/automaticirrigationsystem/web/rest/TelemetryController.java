@@ -0,0 +1,75 @@
+package com.example.automaticirrigationsystem.web.rest;
+
+import com.example.automaticirrigationsystem.aop.logging.Loggable;
+import com.example.automaticirrigationsystem.domain.enumeration.Resolution;
+import com.example.automaticirrigationsystem.dto.ReadingSeriesDTO;
+import com.example.automaticirrigationsystem.dto.TelemetryResultDTO;
+import com.example.automaticirrigationsystem.service.ReadingRollupService;
+import com.example.automaticirrigationsystem.service.TelemetryService;
+import java.io.IOException;
+import java.io.InputStream;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * REST controller receiving the readings pushed by the sensors and serving them back per plot.
+ */
+@RestController
+@RequestMapping("/api")
+@Slf4j
+@RequiredArgsConstructor
+public class TelemetryController {
+
+  private final TelemetryService telemetryService;
+  private final ReadingRollupService readingRollupService;
+
+  /**
+   * {@code POST  /telemetry} : push a batch of sensor readings, a JSON array of
+   * {@code [sensorCode, epochMillis, moisture, status]} arrays, the status being optional.
+   *
+   * @param readings the readings.
+   * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the number of
+   * readings accepted and rejected, or with status {@code 400 (Bad Request)} if the body is not a
+   * JSON array.
+   * @throws IOException if the body can't be read.
+   */
+  @PostMapping(value = "/telemetry", consumes = MediaType.APPLICATION_JSON_VALUE)
+  @Loggable
+  public ResponseEntity<TelemetryResultDTO> pushReadings(InputStream readings)
+      throws IOException {
+    log.debug("REST request to push sensor readings");
+    return ResponseEntity.ok().body(telemetryService.ingest(readings));
+  }
+
+  /**
+   * {@code GET  /plots/:id/readings} : get the readings of the sensor of a plot over a time range,
+   * aggregated per bucket of the resolution.
+   *
+   * @param plotId     the id of the plot.
+   * @param from       the epoch millis the range starts at.
+   * @param to         the epoch millis the range ends before.
+   * @param resolution the resolution, the finest one returning a bounded number of points if absent.
+   * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the readings, or
+   * with status {@code 400 (Bad Request)} if the range is empty or holds too many points, or with
+   * status {@code 404 (Not Found)} if the plot doesn't exist.
+   */
+  @GetMapping("/plots/{id}/readings")
+  @Loggable
+  public ResponseEntity<ReadingSeriesDTO> getPlotReadings(
+      @PathVariable(value = "id") final Long plotId,
+      @RequestParam(value = "from") long from,
+      @RequestParam(value = "to") long to,
+      @RequestParam(value = "resolution", required = false) Resolution resolution) {
+    log.debug("REST request to get the readings of Plot : {}", plotId);
+    return ResponseEntity.ok()
+        .body(readingRollupService.findReadings(plotId, from, to, resolution));
+  }
+}
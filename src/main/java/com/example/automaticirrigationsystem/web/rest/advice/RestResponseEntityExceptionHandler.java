@@ -5,6 +5,8 @@ import com.example.automaticirrigationsystem.exception.NoMoreThanOneSensorAllowe
 import com.example.automaticirrigationsystem.exception.PlotHasAlreadyStartedToBeIrrigated;
 import com.example.automaticirrigationsystem.exception.ResourceNotFoundException;
 import com.example.automaticirrigationsystem.exception.SensorCantBeReachedException;
+import com.example.automaticirrigationsystem.exception.WaterSupplyAtCapacityException;
+import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -21,13 +23,20 @@ public class RestResponseEntityExceptionHandler extends ResponseEntityExceptionH
 
   @ExceptionHandler(value = {IllegalArgumentException.class, IllegalStateException.class,
       NoMoreThanOneSensorAllowed.class, SensorCantBeReachedException.class,
-      PlotHasAlreadyStartedToBeIrrigated.class})
+      PlotHasAlreadyStartedToBeIrrigated.class, WaterSupplyAtCapacityException.class})
   protected ResponseEntity<Object> handleConflict(RuntimeException ex, WebRequest request) {
 
     return handleExceptionInternal(ex, ex.getMessage(), new HttpHeaders(), HttpStatus.CONFLICT,
         request);
   }
 
+  @ExceptionHandler(ConcurrencyFailureException.class)
+  public ResponseEntity<Object> concurrencyFailureExceptionHandler(Exception ex) {
+
+    return new ResponseEntity<Object>("The plot is being changed concurrently, please try again",
+        HttpStatus.CONFLICT);
+  }
+
   @ExceptionHandler(ResourceNotFoundException.class)
   public ResponseEntity<Object> resourceDoesntExistExceptionHandler(Exception ex) {
 
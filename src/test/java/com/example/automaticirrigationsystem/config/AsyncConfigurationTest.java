@@ -0,0 +1,96 @@
+package com.example.automaticirrigationsystem.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * Tests for the executors of the {@link AsyncConfiguration}.
+ */
+class AsyncConfigurationTest {
+
+  private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+      .withUserConfiguration(AsyncConfiguration.class)
+      .withBean(MeterRegistry.class, SimpleMeterRegistry::new)
+      .withPropertyValues("async.background.core-size=2", "async.background.max-size=2",
+          "async.background.queue-size=100");
+
+  @Test
+  @DisplayName("the executor gauges read the pool of the executor bean while tasks are running")
+  void executorGauges() {
+    contextRunner.run(context -> {
+      ThreadPoolTaskExecutor executor = context.getBean("taskExecutor",
+          ThreadPoolTaskExecutor.class);
+      MeterRegistry meterRegistry = context.getBean(MeterRegistry.class);
+      CountDownLatch running = new CountDownLatch(2);
+      CountDownLatch release = new CountDownLatch(1);
+      try {
+        for (int i = 0; i < 10; i++) {
+          executor.execute(() -> {
+            running.countDown();
+            try {
+              release.await();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+          });
+        }
+        assertThat(running.await(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(meterRegistry.get("async.executor.active").tag("name", "taskExecutor")
+            .gauge().value()).isEqualTo(2);
+        assertThat(meterRegistry.get("async.executor.queue.depth").tag("name", "taskExecutor")
+            .gauge().value()).isEqualTo(8);
+      } finally {
+        release.countDown();
+      }
+    });
+  }
+
+  @Test
+  @DisplayName("the maintenance jobs run on a scheduler of their own, apart from the sensor retries")
+  void maintenanceScheduler() {
+    contextRunner.run(context -> {
+      ThreadPoolTaskScheduler maintenanceScheduler = context.getBean("maintenanceScheduler",
+          ThreadPoolTaskScheduler.class);
+      MeterRegistry meterRegistry = context.getBean(MeterRegistry.class);
+      CountDownLatch release = new CountDownLatch(1);
+      ScheduledFuture<?> later = maintenanceScheduler.schedule(() -> {
+      }, Instant.now().plus(Duration.ofHours(1)));
+      try {
+        CompletableFuture<String> threadName = new CompletableFuture<>();
+        maintenanceScheduler.execute(() -> {
+          threadName.complete(Thread.currentThread().getName());
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        });
+
+        assertThat(threadName.get(10, TimeUnit.SECONDS)).startsWith("maintenance-");
+        assertThat(meterRegistry.get("async.scheduler.active").tag("name", "maintenanceScheduler")
+            .gauge().value()).isEqualTo(1);
+        assertThat(meterRegistry.get("async.scheduler.queue.depth")
+            .tag("name", "maintenanceScheduler").gauge().value()).isEqualTo(1);
+        assertThat(meterRegistry.get("async.scheduler.active").tag("name", "sensorRetryScheduler")
+            .gauge().value()).isZero();
+      } finally {
+        later.cancel(false);
+        release.countDown();
+      }
+    });
+  }
+}
@@ -0,0 +1,131 @@
+package com.example.automaticirrigationsystem.loadtest;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Latency and outcome of the requests sent to one endpoint. The latency is measured from the time
+ * a request was due to be sent rather than the time it was sent, so that a server falling behind
+ * shows in the percentiles instead of slowing the load down.
+ */
+final class EndpointStats {
+
+  static final String HEADER = String.format(Locale.ROOT,
+      "%-16s %9s %9s %9s %9s %9s %9s %9s %8s %8s %8s %8s %8s %7s",
+      "endpoint", "requests", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms",
+      "2xx", "4xx", "5xx", "failed", "dropped", "errors");
+
+  private static final long HIGHEST_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+  private final String name;
+
+  private final Histogram latencies = new ConcurrentHistogram(HIGHEST_LATENCY_MICROS, 3);
+
+  private final LongAdder successes = new LongAdder();
+
+  private final LongAdder clientErrors = new LongAdder();
+
+  private final LongAdder serverErrors = new LongAdder();
+
+  private final LongAdder failures = new LongAdder();
+
+  private final LongAdder dropped = new LongAdder();
+
+  EndpointStats(String name) {
+    this.name = name;
+  }
+
+  String getName() {
+    return name;
+  }
+
+  /**
+   * Records a response.
+   *
+   * @param latencyNanos the time from when the request was due to the response.
+   * @param status       the status of the response.
+   */
+  void record(long latencyNanos, int status) {
+    recordLatency(latencyNanos);
+    if (status >= 500) {
+      serverErrors.increment();
+    } else if (status >= 400) {
+      clientErrors.increment();
+    } else {
+      successes.increment();
+    }
+  }
+
+  /**
+   * Records a request that got no response: the connection failed or timed out.
+   *
+   * @param latencyNanos the time from when the request was due to the failure.
+   */
+  void fail(long latencyNanos) {
+    recordLatency(latencyNanos);
+    failures.increment();
+  }
+
+  /**
+   * Records a request that wasn't sent, too many requests to the endpoint being in flight.
+   */
+  void drop() {
+    dropped.increment();
+  }
+
+  /**
+   * Forgets what was recorded, once the warmup is over.
+   */
+  void reset() {
+    latencies.reset();
+    successes.reset();
+    clientErrors.reset();
+    serverErrors.reset();
+    failures.reset();
+    dropped.reset();
+  }
+
+  long getRequests() {
+    return successes.sum() + clientErrors.sum() + serverErrors.sum() + failures.sum()
+        + dropped.sum();
+  }
+
+  /**
+   * Get the share of the requests that failed on the server side, got no response or weren't
+   * sent. The client errors are answers of the API, such as a plot already irrigated.
+   *
+   * @return the error rate, between 0 and 1.
+   */
+  double getErrorRate() {
+    long requests = getRequests();
+    return requests == 0 ? 0
+        : (double) (serverErrors.sum() + failures.sum() + dropped.sum()) / requests;
+  }
+
+  double getLatencyMillis(double percentile) {
+    return latencies.getValueAtPercentile(percentile) / 1000.0;
+  }
+
+  /**
+   * Formats the stats as a row of the report.
+   *
+   * @param elapsedSeconds the time the requests were recorded over.
+   * @return the row, aligned with {@link #HEADER}.
+   */
+  String format(double elapsedSeconds) {
+    return String.format(Locale.ROOT,
+        "%-16s %9d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f %8d %8d %8d %8d %8d %6.2f%%",
+        name, getRequests(), (getRequests() - dropped.sum()) / elapsedSeconds,
+        getLatencyMillis(50), getLatencyMillis(90), getLatencyMillis(99), getLatencyMillis(99.9),
+        latencies.getMaxValue() / 1000.0, successes.sum(), clientErrors.sum(),
+        serverErrors.sum(), failures.sum(), dropped.sum(), getErrorRate() * 100);
+  }
+
+  private void recordLatency(long latencyNanos) {
+    latencies.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(latencyNanos),
+        HIGHEST_LATENCY_MICROS));
+  }
+}
@@ -0,0 +1,37 @@
+package com.example.automaticirrigationsystem.loadtest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the {@link EndpointStats}.
+ */
+class EndpointStatsTest {
+
+  @Test
+  @DisplayName("the responses are counted by class, and the server side failures make the errors")
+  void record_countsOutcomes() {
+    EndpointStats stats = new EndpointStats("irrigate-start");
+    for (int i = 0; i < 96; i++) {
+      stats.record(TimeUnit.MILLISECONDS.toNanos(1), 200);
+    }
+    stats.record(TimeUnit.MILLISECONDS.toNanos(2), 409);
+    stats.record(TimeUnit.MILLISECONDS.toNanos(3), 500);
+    stats.fail(TimeUnit.SECONDS.toNanos(10));
+    stats.drop();
+
+    assertThat(stats.getRequests()).isEqualTo(100);
+    assertThat(stats.getErrorRate()).isCloseTo(0.03, within(1e-9));
+    assertThat(stats.getLatencyMillis(50)).isCloseTo(1, within(0.01));
+    assertThat(stats.getLatencyMillis(100)).isCloseTo(10_000, within(10.0));
+    assertThat(stats.format(10)).startsWith("irrigate-start").contains("3.00%");
+
+    stats.reset();
+    assertThat(stats.getRequests()).isZero();
+    assertThat(stats.getErrorRate()).isZero();
+  }
+}
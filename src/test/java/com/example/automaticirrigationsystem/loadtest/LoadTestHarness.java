@@ -0,0 +1,257 @@
+package com.example.automaticirrigationsystem.loadtest;
+
+import com.example.automaticirrigationsystem.AutomaticIrrigationSystemApplication;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+
+/**
+ * Load test of the API against the application started in process, on a random port and its
+ * in-memory database. A fleet of plots with their sensor is imported, then every endpoint driven is
+ * sent requests at its own fixed rate for the duration of the test, while the sensors flap between
+ * {@code UP} and {@code DOWN}. The latency percentiles, throughput and error rate of each endpoint
+ * are printed once the test ends.
+ *
+ * <p>The test is set with {@code --loadtest.*} arguments, the other arguments going to the
+ * application:
+ * <ul>
+ *   <li>{@code plots}, {@code slots}: the size of the fleet imported;</li>
+ *   <li>{@code warmup}, {@code duration}: the time the requests are sent unrecorded, then
+ *   recorded;</li>
+ *   <li>{@code rate.<endpoint>}: the requests per second sent to an endpoint, 0 leaving it out;</li>
+ *   <li>{@code sensors.down-ratio}: the share of the sensors imported, and of the flaps, that are
+ *   {@code DOWN};</li>
+ *   <li>{@code max-in-flight}: the requests to an endpoint waiting for their response over which
+ *   the next ones are dropped;</li>
+ *   <li>{@code request-timeout}: the time after which a request without response failed.</li>
+ * </ul>
+ */
+public final class LoadTestHarness {
+
+  private static final String PLOT_CODE_PREFIX = "load-plot-";
+
+  /**
+   * The logs of each request would cost more than the requests: the application logs at
+   * {@code DEBUG}, and every request turned down at {@code ERROR}. Set as system properties, so
+   * that they rank over the application configuration and under the arguments.
+   */
+  private static final Map<String, String> QUIET_LOGGING = Map.of(
+      "logging.level.com.example.automaticirrigationsystem", "OFF",
+      "logging.level.org.springframework.web", "WARN",
+      "logging.level.org.hibernate.SQL", "WARN",
+      "spring.jpa.show-sql", "false");
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  private final Environment environment;
+
+  private final String baseUrl;
+
+  private final HttpClient httpClient;
+
+  private final Duration requestTimeout;
+
+  private final List<Long> plotIds = new ArrayList<>();
+
+  private final List<Long> sensorIds = new ArrayList<>();
+
+  private LoadTestHarness(Environment environment, String baseUrl, HttpClient httpClient) {
+    this.environment = environment;
+    this.baseUrl = baseUrl;
+    this.httpClient = httpClient;
+    this.requestTimeout = environment.getProperty("loadtest.request-timeout", Duration.class,
+        Duration.ofSeconds(10));
+  }
+
+  public static void main(String[] args) throws Exception {
+    QUIET_LOGGING.forEach((key, value) -> {
+      if (System.getProperty(key) == null) {
+        System.setProperty(key, value);
+      }
+    });
+    ConfigurableApplicationContext context = new SpringApplicationBuilder(
+        AutomaticIrrigationSystemApplication.class)
+        .properties("server.port=0")
+        .run(args);
+    ExecutorService clientExecutor = Executors.newFixedThreadPool(
+        Runtime.getRuntime().availableProcessors());
+    try {
+      Environment environment = context.getEnvironment();
+      HttpClient httpClient = HttpClient.newBuilder()
+          .version(HttpClient.Version.HTTP_1_1)
+          .connectTimeout(Duration.ofSeconds(5))
+          .executor(clientExecutor)
+          .build();
+      new LoadTestHarness(environment,
+          "http://localhost:" + environment.getRequiredProperty("local.server.port"), httpClient)
+          .run();
+    } finally {
+      clientExecutor.shutdownNow();
+      context.close();
+    }
+  }
+
+  private void run() throws IOException, InterruptedException {
+    int plotsCount = environment.getProperty("loadtest.plots", Integer.class, 1000);
+    long seedStartedAt = System.nanoTime();
+    seed(plotsCount);
+    loadIds();
+    System.out.printf("%d plots seeded in %d ms%n", plotIds.size(),
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - seedStartedAt));
+    if (plotIds.isEmpty()) {
+      throw new IllegalStateException("no plot was seeded");
+    }
+    drive();
+  }
+
+  /**
+   * Imports the fleet of plots, in chunks.
+   */
+  private void seed(int plotsCount) throws IOException, InterruptedException {
+    int slotsCount = environment.getProperty("loadtest.slots", Integer.class, 4);
+    int chunkSize = environment.getProperty("loadtest.seed-chunk", Integer.class, 1000);
+    double downRatio = environment.getProperty("loadtest.sensors.down-ratio", Double.class, 0.1);
+    long runId = System.currentTimeMillis();
+    for (int first = 0; first < plotsCount; first += chunkSize) {
+      ArrayNode plots = objectMapper.createArrayNode();
+      for (int i = first; i < Math.min(first + chunkSize, plotsCount); i++) {
+        ObjectNode plot = plots.addObject();
+        plot.put("plotCode", PLOT_CODE_PREFIX + runId + "-" + i);
+        plot.put("plotLength", 10D);
+        plot.put("plotWidth", 10D);
+        plot.put("cropType", "BEANS");
+        plot.put("waterAmount", 100);
+        plot.put("slotsCount", slotsCount);
+        plot.put("sensorCode", "load-sensor-" + runId + "-" + i);
+        plot.put("sensorStatus", randomStatus(downRatio));
+      }
+      HttpResponse<String> response = httpClient.send(HttpRequest.newBuilder()
+              .uri(URI.create(baseUrl + "/api/plots/import"))
+              .header("Content-Type", "application/json")
+              .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(plots)))
+              .build(),
+          HttpResponse.BodyHandlers.ofString());
+      if (response.statusCode() != 200) {
+        throw new IllegalStateException(
+            "import failed with status " + response.statusCode() + ": " + response.body());
+      }
+    }
+  }
+
+  /**
+   * Reads the ids of the plots seeded and of their sensor from the plots stream.
+   */
+  private void loadIds() throws IOException, InterruptedException {
+    HttpResponse<Stream<String>> response = httpClient.send(HttpRequest.newBuilder()
+            .uri(URI.create(baseUrl + "/api/plots/stream"))
+            .GET()
+            .build(),
+        HttpResponse.BodyHandlers.ofLines());
+    try (Stream<String> lines = response.body()) {
+      lines.filter(line -> !line.isBlank()).forEach(line -> {
+        try {
+          JsonNode plot = objectMapper.readTree(line);
+          if (plot.path("plotCode").asText().startsWith(PLOT_CODE_PREFIX)) {
+            plotIds.add(plot.path("id").asLong());
+            JsonNode sensorId = plot.path("plotSensor").path("id");
+            if (sensorId.isNumber()) {
+              sensorIds.add(sensorId.asLong());
+            }
+          }
+        } catch (IOException e) {
+          throw new IllegalStateException("unreadable plot: " + line, e);
+        }
+      });
+    }
+  }
+
+  /**
+   * Sends the requests of every endpoint for the warmup and the duration, then prints the report.
+   */
+  private void drive() throws InterruptedException {
+    Duration warmup = environment.getProperty("loadtest.warmup", Duration.class,
+        Duration.ofSeconds(10));
+    Duration duration = environment.getProperty("loadtest.duration", Duration.class,
+        Duration.ofSeconds(60));
+    int maxInFlight = environment.getProperty("loadtest.max-in-flight", Integer.class, 512);
+    double downRatio = environment.getProperty("loadtest.sensors.down-ratio", Double.class, 0.1);
+
+    Map<String, Supplier<HttpRequest>> endpoints = new LinkedHashMap<>();
+    endpoints.put("sensor-flap", () -> HttpRequest.newBuilder()
+        .uri(URI.create(baseUrl + "/api/sensors/" + randomOf(sensorIds)))
+        .timeout(requestTimeout)
+        .header("Content-Type", "application/json")
+        .PUT(HttpRequest.BodyPublishers.ofString(
+            "{\"status\":\"" + randomStatus(downRatio) + "\"}"))
+        .build());
+    endpoints.put("irrigate-start", () -> get("/api/irrigate/start/" + randomOf(plotIds)));
+    endpoints.put("irrigate-end", () -> get("/api/irrigate/end/" + randomOf(plotIds)));
+    endpoints.put("alert-list", () -> get("/api/alert"));
+    endpoints.put("alert-off", () -> get("/api/alert/off/" + randomOf(plotIds)));
+    Map<String, Double> defaultRates = Map.of("sensor-flap", 20D, "irrigate-start", 40D,
+        "irrigate-end", 40D, "alert-list", 5D, "alert-off", 5D);
+
+    long startedAt = System.nanoTime();
+    long until = startedAt + warmup.toNanos() + duration.toNanos();
+    List<EndpointStats> stats = new ArrayList<>();
+    ExecutorService drivers = Executors.newFixedThreadPool(endpoints.size());
+    endpoints.forEach((name, requests) -> {
+      double rate = environment.getProperty("loadtest.rate." + name, Double.class,
+          defaultRates.get(name));
+      if (rate > 0 && !(name.equals("sensor-flap") && sensorIds.isEmpty())) {
+        EndpointStats endpointStats = new EndpointStats(name);
+        stats.add(endpointStats);
+        drivers.execute(new RateDriver(httpClient, requests, endpointStats, rate, until,
+            maxInFlight));
+      }
+    });
+    drivers.shutdown();
+
+    System.out.printf("warming up for %d s%n", warmup.toSeconds());
+    TimeUnit.NANOSECONDS.sleep(warmup.toNanos());
+    stats.forEach(EndpointStats::reset);
+    System.out.printf("recording for %d s%n", duration.toSeconds());
+    drivers.awaitTermination(duration.toSeconds() + requestTimeout.toSeconds() + 60,
+        TimeUnit.SECONDS);
+    double elapsedSeconds = duration.toNanos() / 1e9;
+
+    System.out.println(EndpointStats.HEADER);
+    stats.forEach(endpointStats -> System.out.println(endpointStats.format(elapsedSeconds)));
+  }
+
+  private HttpRequest get(String path) {
+    return HttpRequest.newBuilder()
+        .uri(URI.create(baseUrl + path))
+        .timeout(requestTimeout)
+        .GET()
+        .build();
+  }
+
+  private static Long randomOf(List<Long> ids) {
+    return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+  }
+
+  private static String randomStatus(double downRatio) {
+    return ThreadLocalRandom.current().nextDouble() < downRatio ? "DOWN" : "UP";
+  }
+}
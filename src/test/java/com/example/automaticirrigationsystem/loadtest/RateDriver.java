@@ -0,0 +1,92 @@
+package com.example.automaticirrigationsystem.loadtest;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Sends requests to one endpoint at a fixed rate, whatever the time the responses take: each
+ * request has a due time, and a driver falling behind catches up by sending the late requests right
+ * away. The requests in flight are bounded, the requests over the bound are dropped and counted.
+ * The driver ends once the last requests sent got their response.
+ */
+final class RateDriver implements Runnable {
+
+  private static final long DRAIN_TIMEOUT_SECONDS = 30;
+
+  private final HttpClient httpClient;
+
+  private final Supplier<HttpRequest> requests;
+
+  private final EndpointStats stats;
+
+  private final long intervalNanos;
+
+  private final long untilNanos;
+
+  private final int maxInFlight;
+
+  private final Semaphore inFlight;
+
+  /**
+   * Creates a driver.
+   *
+   * @param httpClient  the client sending the requests.
+   * @param requests    creates the next request.
+   * @param stats       the stats of the endpoint.
+   * @param rate        the requests per second.
+   * @param untilNanos  the {@link System#nanoTime()} to stop at.
+   * @param maxInFlight the maximum number of requests waiting for their response.
+   */
+  RateDriver(HttpClient httpClient, Supplier<HttpRequest> requests, EndpointStats stats,
+      double rate, long untilNanos, int maxInFlight) {
+    this.httpClient = httpClient;
+    this.requests = requests;
+    this.stats = stats;
+    this.intervalNanos = (long) (1_000_000_000L / rate);
+    this.untilNanos = untilNanos;
+    this.maxInFlight = maxInFlight;
+    this.inFlight = new Semaphore(maxInFlight);
+  }
+
+  @Override
+  public void run() {
+    long dueAt = System.nanoTime();
+    while (dueAt < untilNanos && !Thread.currentThread().isInterrupted()) {
+      long wait = dueAt - System.nanoTime();
+      if (wait > 0) {
+        LockSupport.parkNanos(wait);
+        continue;
+      }
+      send(dueAt);
+      dueAt += intervalNanos;
+    }
+    // the requests in flight time out at the latest
+    try {
+      inFlight.tryAcquire(maxInFlight, DRAIN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void send(long dueAt) {
+    if (!inFlight.tryAcquire()) {
+      stats.drop();
+      return;
+    }
+    httpClient.sendAsync(requests.get(), HttpResponse.BodyHandlers.discarding())
+        .whenComplete((response, error) -> {
+          inFlight.release();
+          long latency = System.nanoTime() - dueAt;
+          if (error != null) {
+            stats.fail(latency);
+          } else {
+            stats.record(latency, response.statusCode());
+          }
+        });
+  }
+}
@@ -0,0 +1,178 @@
+package com.example.automaticirrigationsystem.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.automaticirrigationsystem.domain.Plot;
+import com.example.automaticirrigationsystem.domain.Sensor;
+import com.example.automaticirrigationsystem.domain.Slot;
+import com.example.automaticirrigationsystem.domain.enumeration.Status;
+import com.example.automaticirrigationsystem.dto.PlotDTO;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Integration tests for the {@link PlotQueryRepository} paging queries, counting the statements a
+ * page of plots costs.
+ */
+@Slf4j
+@SpringBootTest
+@AutoConfigureMockMvc
+class PlotQueryRepositoryIT {
+
+  private static final int PLOTS_COUNT = 30;
+  private static final int SLOTS_COUNT = 4;
+  private static final int PAGE_SIZE = 20;
+  private static final Set<String> STATEMENT_METHODS =
+      Set.of("createStatement", "prepareStatement", "prepareCall");
+
+  @Autowired
+  private PlotRepository plotRepository;
+
+  @Autowired
+  private DataSource dataSource;
+
+  @Autowired
+  private EntityManagerFactory entityManagerFactory;
+
+  @Autowired
+  private TransactionTemplate transactionTemplate;
+
+  private final AtomicInteger statements = new AtomicInteger();
+
+  private PlotQueryRepository plotQueryRepository;
+
+  private Statistics statistics;
+
+  private List<Long> plotIds;
+
+  @BeforeEach
+  public void initTest() {
+    plotQueryRepository =
+        new PlotQueryRepository(new NamedParameterJdbcTemplate(new CountingDataSource()));
+    // committed, the repository reads through connections of its own
+    plotIds = transactionTemplate.execute(status -> {
+      List<Long> ids = new ArrayList<>();
+      for (int i = 0; i < PLOTS_COUNT; i++) {
+        ids.add(plotRepository.save(createPlot(i)).getId());
+      }
+      return ids;
+    });
+    statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    statistics.setStatisticsEnabled(true);
+    statistics.clear();
+    statements.set(0);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    statistics.setStatisticsEnabled(false);
+    plotRepository.deleteAllById(plotIds);
+  }
+
+  @Test
+  @DisplayName("a page of plots with their sensor and slots costs a fixed number of statements")
+  void findAll() {
+    Page<PlotDTO> page =
+        plotQueryRepository.findAll(PageRequest.of(0, PAGE_SIZE, Sort.by("id").descending()));
+
+    log.info("page of {} plots loaded with {} statements", page.getNumberOfElements(),
+        statements.get());
+    assertPlots(page.getContent());
+    assertThat(page.getTotalElements()).isGreaterThanOrEqualTo(PLOTS_COUNT);
+    // the page of plots joined to their sensor, the slots of the page and the total count
+    assertThat(statements.get()).isEqualTo(3);
+    assertThat(statistics.getPrepareStatementCount()).isZero();
+  }
+
+  @Test
+  @DisplayName("a cursor page of plots with their sensor and slots costs a fixed number of"
+      + " statements")
+  void findAllAfter() {
+    Slice<PlotDTO> slice = plotQueryRepository.findAllAfter(plotIds.get(0) - 1, PAGE_SIZE);
+
+    assertPlots(slice.getContent());
+    assertThat(slice.getContent()).extracting(PlotDTO::getId)
+        .containsExactlyElementsOf(plotIds.subList(0, PAGE_SIZE));
+    assertThat(slice.hasNext()).isTrue();
+    // the page of plots joined to their sensor and the slots of the page, nothing is counted
+    assertThat(statements.get()).isEqualTo(2);
+    assertThat(statistics.getPrepareStatementCount()).isZero();
+  }
+
+  private void assertPlots(List<PlotDTO> plots) {
+    assertThat(plots).hasSize(PAGE_SIZE).allSatisfy(plot -> {
+      assertThat(plot.getPlotSensor()).isNotNull();
+      assertThat(plot.getPlotTimerSlots()).hasSize(SLOTS_COUNT);
+    });
+  }
+
+  private Plot createPlot(int index) {
+    Plot plot = new Plot();
+    plot.setPlotCode("paged-plot-" + index + "-" + System.nanoTime());
+    plot.setPlotLength(10D);
+    plot.setPlotWidth(10D);
+    plot.setIsIrrigated(false);
+    plot.setHasAlert(false);
+    plot.setSensorCallCount(0);
+    plot.setPlotSensor(
+        new Sensor(null, "paged-sensor-" + index + "-" + System.nanoTime(), Status.UP, null));
+    for (int i = 0; i < SLOTS_COUNT; i++) {
+      Slot slot = new Slot();
+      slot.setStatus(Status.DOWN);
+      slot.setPlot(plot);
+      plot.getPlotTimerSlots().add(slot);
+    }
+    return plot;
+  }
+
+  /**
+   * Counts the statements created on its connections.
+   */
+  private class CountingDataSource extends DelegatingDataSource {
+
+    private CountingDataSource() {
+      super(dataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+      Connection connection = super.getConnection();
+      return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+          new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+            if (STATEMENT_METHODS.contains(method.getName())) {
+              statements.incrementAndGet();
+            }
+            try {
+              return method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+              throw e.getCause();
+            }
+          });
+    }
+  }
+}
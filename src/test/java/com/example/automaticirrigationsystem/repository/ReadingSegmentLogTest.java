@@ -0,0 +1,142 @@
+package com.example.automaticirrigationsystem.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.automaticirrigationsystem.domain.enumeration.Status;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Tests for the {@link ReadingSegmentLog} archive.
+ */
+class ReadingSegmentLogTest {
+
+  private static final int READINGS_COUNT = 1000;
+  private static final int SEGMENT_RECORDS = 300;
+  private static final long READ_AT = 1_700_000_000_000L;
+
+  @TempDir
+  Path directory;
+
+  private ReadingSegmentLog readingSegmentLog;
+
+  @BeforeEach
+  public void initTest() {
+    readingSegmentLog = openLog();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    readingSegmentLog.close();
+  }
+
+  @Test
+  @DisplayName("readings are replayed in the order they were appended, across segments")
+  void replay() throws IOException {
+    List<SensorReading> readings = createReadings();
+    readingSegmentLog.appendAll(readings.subList(0, 500));
+    readingSegmentLog.appendAll(readings.subList(500, READINGS_COUNT));
+
+    assertThat(readingSegmentLog.size()).isEqualTo(READINGS_COUNT);
+    assertThat(replay(readingSegmentLog)).containsExactlyElementsOf(readings);
+    try (Stream<Path> files = Files.list(directory)) {
+      assertThat(files.collect(Collectors.toList())).hasSize(4);
+    }
+  }
+
+  @Test
+  @DisplayName("a range read visits the readings taken within the range only")
+  void scan() {
+    List<SensorReading> readings = createReadings();
+    readingSegmentLog.appendAll(readings);
+
+    List<SensorReading> scanned = new ArrayList<>();
+    readingSegmentLog.scan(READ_AT + 250_000, READ_AT + 260_000,
+        (sensorId, readAt, moisture, status) ->
+            scanned.add(new SensorReading(sensorId, readAt, moisture, status)));
+
+    assertThat(scanned).containsExactlyElementsOf(readings.stream()
+        .filter(reading -> reading.getReadAt() >= READ_AT + 250_000
+            && reading.getReadAt() < READ_AT + 260_000)
+        .collect(Collectors.toList()));
+    assertThat(scanned).hasSize(20);
+  }
+
+  @Test
+  @DisplayName("a reopened archive holds the readings appended before and keeps appending")
+  void reopen() {
+    List<SensorReading> readings = createReadings();
+    readingSegmentLog.appendAll(readings.subList(0, 700));
+    readingSegmentLog.close();
+
+    readingSegmentLog = openLog();
+    assertThat(readingSegmentLog.size()).isEqualTo(700);
+    readingSegmentLog.appendAll(readings.subList(700, READINGS_COUNT));
+
+    assertThat(replay(readingSegmentLog)).containsExactlyElementsOf(readings);
+  }
+
+  @Test
+  @DisplayName("the segments holding only readings older than the cutoff are deleted whole")
+  void deleteBefore() throws IOException {
+    List<SensorReading> readings = createReadings();
+    readingSegmentLog.appendAll(readings);
+
+    // the second segment ends with the reading 599, taken at 300.5 s
+    assertThat(readingSegmentLog.deleteBefore(READ_AT + 300_501)).isEqualTo(600);
+
+    assertThat(readingSegmentLog.size()).isEqualTo(READINGS_COUNT - 600);
+    assertThat(replay(readingSegmentLog))
+        .containsExactlyElementsOf(readings.subList(600, READINGS_COUNT));
+    try (Stream<Path> files = Files.list(directory)) {
+      assertThat(files.collect(Collectors.toList())).hasSize(2);
+    }
+    // the last segment is kept, it is appended to
+    assertThat(readingSegmentLog.deleteBefore(Long.MAX_VALUE)).isEqualTo(300);
+    readingSegmentLog.close();
+    readingSegmentLog = openLog();
+    assertThat(replay(readingSegmentLog))
+        .containsExactlyElementsOf(readings.subList(900, READINGS_COUNT));
+  }
+
+  private ReadingSegmentLog openLog() {
+    ReadingSegmentLog segmentLog = new ReadingSegmentLog(null);
+    ReflectionTestUtils.setField(segmentLog, "enabled", true);
+    ReflectionTestUtils.setField(segmentLog, "directory", directory.toString());
+    ReflectionTestUtils.setField(segmentLog, "segmentRecords", SEGMENT_RECORDS);
+    ReflectionTestUtils.setField(segmentLog, "indexInterval", 16);
+    ReflectionTestUtils.setField(segmentLog, "syncInterval", 0L);
+    ReflectionTestUtils.setField(segmentLog, "retentionInterval", 0L);
+    segmentLog.open();
+    return segmentLog;
+  }
+
+  private static List<SensorReading> replay(ReadingSegmentLog segmentLog) {
+    List<SensorReading> replayed = new ArrayList<>();
+    segmentLog.replay((sensorId, readAt, moisture, status) ->
+        replayed.add(new SensorReading(sensorId, readAt, moisture, status)));
+    return replayed;
+  }
+
+  private static List<SensorReading> createReadings() {
+    List<SensorReading> readings = new ArrayList<>();
+    for (int i = 0; i < READINGS_COUNT; i++) {
+      // two sensors reporting every second, the second one a little late
+      long readAt = READ_AT + (i / 2) * 1000L + (i % 2) * 1500L;
+      Status status = i % 3 == 0 ? null : Status.values()[i % 2];
+      readings.add(new SensorReading(i % 2 + 1, readAt, i * 0.5, status));
+    }
+    return readings;
+  }
+}
@@ -0,0 +1,300 @@
+package com.example.automaticirrigationsystem.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.example.automaticirrigationsystem.domain.enumeration.CropType;
+import com.example.automaticirrigationsystem.domain.enumeration.IrrigationAction;
+import com.example.automaticirrigationsystem.domain.enumeration.IrrigationOutcome;
+import com.example.automaticirrigationsystem.dto.IrrigationResultDTO;
+import com.example.automaticirrigationsystem.repository.PlotIrrigationDemand;
+import com.example.automaticirrigationsystem.repository.PlotRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Tests for the {@link IrrigationScheduler}.
+ */
+class IrrigationSchedulerTest {
+
+  private static final int BATCH_SIZE = 100;
+  private static final long RETRY_DELAY = 60_000L;
+  private static final long ONE_MINUTE = 60_000L;
+  private static final long TICK = 1000L;
+
+  private final List<PlotIrrigationDemand> demands = new ArrayList<>();
+  private final Map<Long, IrrigationOutcome> startOutcomes = new HashMap<>();
+  private final List<Call> calls = new ArrayList<>();
+  private final Set<Long> queued = new HashSet<>();
+
+  private PlotRepository plotRepository;
+  private WaterSupply waterSupply;
+  private IrrigationScheduler irrigationScheduler;
+
+  @BeforeEach
+  public void initTest() {
+    plotRepository = mock(PlotRepository.class);
+    when(plotRepository.findIrrigationDemands()).thenReturn(demands);
+    IrrigationService irrigationService = mock(IrrigationService.class);
+    when(irrigationService.irrigateAll(any(), anyCollection())).thenAnswer(invocation -> {
+      IrrigationAction action = invocation.getArgument(0);
+      Collection<Long> plotIds = invocation.getArgument(1);
+      calls.add(new Call(action, List.copyOf(plotIds)));
+      return plotIds.stream()
+          .map(plotId -> new IrrigationResultDTO(plotId, action == IrrigationAction.START
+              ? startOutcomes.getOrDefault(plotId, IrrigationOutcome.STARTED)
+              : IrrigationOutcome.ENDED))
+          .collect(Collectors.toList());
+    });
+
+    waterSupply = mock(WaterSupply.class);
+    when(waterSupply.isQueued(any())).thenAnswer(invocation -> queued.contains(
+        invocation.<Long>getArgument(0)));
+
+    irrigationScheduler = new IrrigationScheduler(plotRepository, irrigationService, waterSupply,
+        mock(TaskScheduler.class), new SimpleMeterRegistry());
+    ReflectionTestUtils.setField(irrigationScheduler, "enabled", true);
+    ReflectionTestUtils.setField(irrigationScheduler, "batchSize", BATCH_SIZE);
+    ReflectionTestUtils.setField(irrigationScheduler, "retryDelay", RETRY_DELAY);
+    ReflectionTestUtils.setField(irrigationScheduler, "tick", TICK);
+  }
+
+  @Test
+  @DisplayName("a plot is started when due, ended once its water is delivered, then started again")
+  void runDue_startsThenEnds() {
+    // 100 of water through 10 slots of 10 per minute: a one minute run
+    demands.add(demand(1L, CropType.RICE, 100, 10, null));
+    irrigationScheduler.start();
+    long now = System.currentTimeMillis();
+
+    assertThat(irrigationScheduler.runDue(now)).isEqualTo(1);
+    assertThat(irrigationScheduler.runDue(now + ONE_MINUTE - 1)).isZero();
+    assertThat(irrigationScheduler.runDue(now + ONE_MINUTE)).isEqualTo(1);
+    assertThat(irrigationScheduler.runDue(now + CropType.RICE.getIntervalMillis() - 1)).isZero();
+    assertThat(irrigationScheduler.runDue(now + CropType.RICE.getIntervalMillis())).isEqualTo(1);
+
+    assertThat(calls).containsExactly(
+        new Call(IrrigationAction.START, List.of(1L)),
+        new Call(IrrigationAction.END, List.of(1L)),
+        new Call(IrrigationAction.START, List.of(1L)));
+  }
+
+  @Test
+  @DisplayName("the due runs are applied in bounded batches, the others aren't read")
+  void runDue_batches() {
+    int dueCount = BATCH_SIZE * 10 + 1;
+    LongStream.rangeClosed(1, dueCount)
+        .forEach(plotId -> demands.add(demand(plotId, CropType.BEANS, 100, 5, null)));
+    // irrigated a minute ago, not due before a day
+    String lastIrrigationTime = DateTimeFormatter.ofPattern(IrrigationService.DATE_TIME_FORMAT)
+        .format(LocalDateTime.now().minusMinutes(1));
+    LongStream.rangeClosed(dueCount + 1, dueCount * 2L)
+        .forEach(plotId -> demands.add(demand(plotId, CropType.BEANS, 100, 5,
+            lastIrrigationTime)));
+    irrigationScheduler.start();
+
+    assertThat(irrigationScheduler.size()).isEqualTo(dueCount * 2);
+    assertThat(irrigationScheduler.runDue(System.currentTimeMillis())).isEqualTo(dueCount);
+    assertThat(calls).hasSize(11)
+        .allMatch(call -> call.action == IrrigationAction.START)
+        .allMatch(call -> call.plotIds.size() <= BATCH_SIZE);
+    assertThat(calls.stream().flatMap(call -> call.plotIds.stream()))
+        .containsExactlyElementsOf(LongStream.rangeClosed(1, dueCount).boxed()
+            .collect(Collectors.toList()));
+  }
+
+  @Test
+  @DisplayName("a plot that can't start is tried again later, a deleted plot is dropped")
+  void runDue_retriesLater() {
+    demands.add(demand(1L, CropType.RICE, 100, 10, null));
+    demands.add(demand(2L, CropType.RICE, 100, 10, null));
+    startOutcomes.put(1L, IrrigationOutcome.SENSOR_DOWN);
+    startOutcomes.put(2L, IrrigationOutcome.NOT_FOUND);
+    irrigationScheduler.start();
+    long now = System.currentTimeMillis();
+
+    assertThat(irrigationScheduler.runDue(now)).isEqualTo(2);
+    assertThat(irrigationScheduler.size()).isEqualTo(1);
+    assertThat(irrigationScheduler.runDue(now + RETRY_DELAY - 1)).isZero();
+    startOutcomes.remove(1L);
+    assertThat(irrigationScheduler.runDue(now + RETRY_DELAY)).isEqualTo(1);
+
+    assertThat(calls).containsExactly(
+        new Call(IrrigationAction.START, List.of(1L, 2L)),
+        new Call(IrrigationAction.START, List.of(1L)));
+  }
+
+  @Test
+  @DisplayName("a plot queued on the water supply waits, then ends from the time it started")
+  void runDue_queued() {
+    // a three minute run
+    demands.add(demand(1L, CropType.RICE, 300, 10, null));
+    startOutcomes.put(1L, IrrigationOutcome.QUEUED);
+    irrigationScheduler.start();
+    long now = System.currentTimeMillis();
+
+    assertThat(irrigationScheduler.runDue(now)).isEqualTo(1);
+    queued.add(1L);
+    assertThat(irrigationScheduler.runDue(now + TICK)).isZero();
+    assertThat(irrigationScheduler.runDue(now + 2 * TICK)).isZero();
+
+    // admitted and started two minutes later by the plots ending irrigation
+    long startedAt = now + 2 * ONE_MINUTE;
+    queued.remove(1L);
+    startOutcomes.put(1L, IrrigationOutcome.ALREADY_STARTED);
+    when(plotRepository.findIrrigationDemandsByIdIn(List.of(1L))).thenReturn(List.of(
+        started(demand(1L, CropType.RICE, 300, 10, null), startedAt)));
+    assertThat(irrigationScheduler.runDue(startedAt + ONE_MINUTE)).isEqualTo(1);
+    // ended three minutes after the start, read to the second
+    assertThat(irrigationScheduler.runDue(startedAt + 3 * ONE_MINUTE - 2 * TICK)).isZero();
+    assertThat(irrigationScheduler.runDue(startedAt + 3 * ONE_MINUTE)).isEqualTo(1);
+
+    assertThat(calls).containsExactly(
+        new Call(IrrigationAction.START, List.of(1L)),
+        new Call(IrrigationAction.START, List.of(1L)),
+        new Call(IrrigationAction.END, List.of(1L)));
+  }
+
+  @Test
+  @DisplayName("the run lasts as long as the slots take to deliver the water amount")
+  void durationOf() {
+    assertThat(irrigationScheduler.durationOf(demand(1L, CropType.RICE, 300, 10, null)))
+        .isEqualTo(3 * ONE_MINUTE);
+    assertThat(irrigationScheduler.durationOf(demand(1L, CropType.RICE, 1, 10, null)))
+        .isEqualTo(ONE_MINUTE);
+    assertThat(irrigationScheduler.durationOf(demand(1L, CropType.RICE, 1_000_000, 1, null)))
+        .isEqualTo(CropType.RICE.getIntervalMillis() / 2);
+  }
+
+  private static PlotIrrigationDemand demand(Long plotId, CropType cropType, int waterAmount,
+      int slotsCount, String lastIrrigationTime) {
+    return new PlotIrrigationDemand() {
+      @Override
+      public Long getId() {
+        return plotId;
+      }
+
+      @Override
+      public CropType getCropType() {
+        return cropType;
+      }
+
+      @Override
+      public Integer getWaterAmount() {
+        return waterAmount;
+      }
+
+      @Override
+      public Integer getSlotsCount() {
+        return slotsCount;
+      }
+
+      @Override
+      public Boolean getIsIrrigated() {
+        return false;
+      }
+
+      @Override
+      public String getStartIrrigationTime() {
+        return "";
+      }
+
+      @Override
+      public String getLastIrrigationTime() {
+        return lastIrrigationTime;
+      }
+    };
+  }
+
+  private static PlotIrrigationDemand started(PlotIrrigationDemand demand, long startedAt) {
+    String startIrrigationTime = DateTimeFormatter.ofPattern(IrrigationService.DATE_TIME_FORMAT)
+        .format(LocalDateTime.ofInstant(Instant.ofEpochMilli(startedAt), ZoneId.systemDefault()));
+    return new PlotIrrigationDemand() {
+      @Override
+      public Long getId() {
+        return demand.getId();
+      }
+
+      @Override
+      public CropType getCropType() {
+        return demand.getCropType();
+      }
+
+      @Override
+      public Integer getWaterAmount() {
+        return demand.getWaterAmount();
+      }
+
+      @Override
+      public Integer getSlotsCount() {
+        return demand.getSlotsCount();
+      }
+
+      @Override
+      public Boolean getIsIrrigated() {
+        return true;
+      }
+
+      @Override
+      public String getStartIrrigationTime() {
+        return startIrrigationTime;
+      }
+
+      @Override
+      public String getLastIrrigationTime() {
+        return startIrrigationTime;
+      }
+    };
+  }
+
+  private static final class Call {
+
+    private final IrrigationAction action;
+
+    private final List<Long> plotIds;
+
+    private Call(IrrigationAction action, List<Long> plotIds) {
+      this.action = action;
+      this.plotIds = plotIds;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Call)) {
+        return false;
+      }
+      Call call = (Call) o;
+      return action == call.action && plotIds.equals(call.plotIds);
+    }
+
+    @Override
+    public int hashCode() {
+      return action.hashCode() * 31 + plotIds.hashCode();
+    }
+
+    @Override
+    public String toString() {
+      return action + " " + plotIds;
+    }
+  }
+}
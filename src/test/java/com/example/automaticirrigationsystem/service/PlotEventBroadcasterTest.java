@@ -0,0 +1,168 @@
+package com.example.automaticirrigationsystem.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import com.example.automaticirrigationsystem.domain.enumeration.PlotEventType;
+import com.example.automaticirrigationsystem.dto.PlotEventDTO;
+import com.example.automaticirrigationsystem.repository.PlotEventOutboxRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Tests for the {@link PlotEventBroadcaster}.
+ */
+class PlotEventBroadcasterTest {
+
+  private static final int BUFFER_SIZE = 4;
+  private static final int EVENTS_COUNT = 50;
+
+  private ThreadPoolTaskExecutor plotEventExecutor;
+  private PlotEventBroadcaster plotEventBroadcaster;
+
+  @BeforeEach
+  public void initTest() {
+    plotEventExecutor = new ThreadPoolTaskExecutor();
+    plotEventExecutor.setCorePoolSize(2);
+    plotEventExecutor.initialize();
+    plotEventBroadcaster = new PlotEventBroadcaster(mock(PlotEventOutboxRepository.class),
+        plotEventExecutor, new SimpleMeterRegistry());
+    ReflectionTestUtils.setField(plotEventBroadcaster, "bufferSize", BUFFER_SIZE);
+    plotEventBroadcaster.registerMeters();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    plotEventExecutor.shutdown();
+  }
+
+  @Test
+  @DisplayName("every subscriber gets the events of its plots, in order")
+  void publish() throws Exception {
+    RecordingEmitter all = new RecordingEmitter(null);
+    RecordingEmitter plot2 = new RecordingEmitter(null);
+    plotEventBroadcaster.register(all, List.of());
+    plotEventBroadcaster.register(plot2, List.of(2L));
+
+    // publish one at a time, so the buffers never overflow
+    for (long plotId = 1; plotId <= EVENTS_COUNT; plotId++) {
+      plotEventBroadcaster.publish(List.of(plotId % 3), PlotEventType.SENSOR_CALLED);
+      all.awaitEvents((int) plotId);
+    }
+
+    int plot2Count = (int) LongStream.rangeClosed(1, EVENTS_COUNT)
+        .filter(plotId -> plotId % 3 == 2)
+        .count();
+    plot2.awaitEvents(plot2Count);
+    assertThat(all.events).containsExactlyElementsOf(LongStream.rangeClosed(1, EVENTS_COUNT)
+        .mapToObj(plotId -> "SENSOR_CALLED:" + plotId % 3)
+        .collect(Collectors.toList()));
+    assertThat(plot2.events).hasSize(plot2Count).containsOnly("SENSOR_CALLED:2");
+  }
+
+  @Test
+  @DisplayName("nothing is written to the outbox when the relay is disabled")
+  void publish_outboxDisabled() throws Exception {
+    PlotEventOutboxRepository plotEventOutboxRepository = mock(PlotEventOutboxRepository.class);
+    PlotEventBroadcaster broadcaster = new PlotEventBroadcaster(plotEventOutboxRepository,
+        plotEventExecutor, new SimpleMeterRegistry());
+    ReflectionTestUtils.setField(broadcaster, "outboxEnabled", false);
+    broadcaster.registerMeters();
+    RecordingEmitter all = new RecordingEmitter(null);
+    broadcaster.register(all, List.of());
+
+    broadcaster.publish(List.of(1L), PlotEventType.SENSOR_CALLED);
+
+    all.awaitEvents(1);
+    verifyNoInteractions(plotEventOutboxRepository);
+  }
+
+  @Test
+  @DisplayName("a subscriber that doesn't keep up is disconnected, the others aren't held up")
+  void publish_slowSubscriber() throws Exception {
+    CountDownLatch stuck = new CountDownLatch(1);
+    RecordingEmitter slow = new RecordingEmitter(stuck);
+    RecordingEmitter fast = new RecordingEmitter(null);
+    plotEventBroadcaster.register(slow, List.of());
+    plotEventBroadcaster.register(fast, List.of());
+
+    for (long plotId = 1; plotId <= EVENTS_COUNT; plotId++) {
+      plotEventBroadcaster.publish(Set.of(plotId), PlotEventType.ALERT_RAISED);
+      fast.awaitEvents((int) plotId);
+    }
+
+    assertThat(fast.events).hasSize(EVENTS_COUNT);
+    assertThat(slow.completed).isTrue();
+    assertThat(plotEventBroadcaster.subscribersCount()).isEqualTo(1);
+    stuck.countDown();
+  }
+
+  /**
+   * Emitter recording the events sent, optionally stuck on the first send like a client that stopped
+   * reading.
+   */
+  private static class RecordingEmitter extends SseEmitter {
+
+    private final List<String> events = new CopyOnWriteArrayList<>();
+
+    private final CountDownLatch stuck;
+
+    private volatile boolean completed;
+
+    RecordingEmitter(CountDownLatch stuck) {
+      this.stuck = stuck;
+    }
+
+    @Override
+    public void send(SseEventBuilder builder) throws IOException {
+      if (stuck != null) {
+        try {
+          stuck.await(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      String name = builder.build().stream()
+          .map(part -> part.getData().toString())
+          .filter(part -> part.startsWith("event:"))
+          .map(part -> part.substring("event:".length(), part.indexOf('\n')))
+          .findFirst()
+          .orElseThrow();
+      PlotEventDTO event = builder.build().stream()
+          .map(DataWithMediaType::getData)
+          .filter(PlotEventDTO.class::isInstance)
+          .map(PlotEventDTO.class::cast)
+          .findFirst()
+          .orElseThrow();
+      events.add(name + ":" + event.getPlotId());
+    }
+
+    @Override
+    public void complete() {
+      completed = true;
+    }
+
+    void awaitEvents(int count) throws InterruptedException {
+      long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+      while (events.size() < count && System.currentTimeMillis() < deadline) {
+        Thread.sleep(1);
+      }
+    }
+  }
+}
@@ -0,0 +1,160 @@
+package com.example.automaticirrigationsystem.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.automaticirrigationsystem.domain.enumeration.PlotEventType;
+import com.example.automaticirrigationsystem.dto.PlotEventDTO;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Integration tests for the {@link PlotEventRelay}.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class PlotEventRelayIT {
+
+  private static final long COMMITTED_PLOT_ID = 424242L;
+  private static final long ROLLED_BACK_PLOT_ID = 434343L;
+  private static final long FAILED_PLOT_ID = 454545L;
+  private static final long POISON_PLOT_ID = 464646L;
+  private static final long AFTER_POISON_PLOT_ID = 474747L;
+
+  @Autowired
+  private PlotEventBroadcaster plotEventBroadcaster;
+
+  @Autowired
+  private PlotEventRelay plotEventRelay;
+
+  @Autowired
+  private InProcessPlotEventSink inProcessPlotEventSink;
+
+  @Autowired
+  private TransactionTemplate transactionTemplate;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  private final List<PlotEventDTO> received = new CopyOnWriteArrayList<>();
+
+  private final Consumer<List<PlotEventDTO>> listener = received::addAll;
+
+  @AfterEach
+  public void removeListener() {
+    inProcessPlotEventSink.removeListener(listener);
+  }
+
+  @Test
+  @DisplayName("the committed events are relayed to the sinks, the rolled back ones aren't")
+  void relayCommittedEvents() {
+    inProcessPlotEventSink.addListener(listener);
+    transactionTemplate.executeWithoutResult(status -> {
+      plotEventBroadcaster.publish(List.of(ROLLED_BACK_PLOT_ID), PlotEventType.ALERT_RAISED);
+      status.setRollbackOnly();
+    });
+    transactionTemplate.executeWithoutResult(status -> plotEventBroadcaster
+        .publish(List.of(COMMITTED_PLOT_ID), PlotEventType.IRRIGATION_ENDED));
+
+    relayUntilReceived(COMMITTED_PLOT_ID);
+
+    assertThat(received)
+        .filteredOn(event -> event.getPlotId() == COMMITTED_PLOT_ID)
+        .extracting(PlotEventDTO::getType)
+        .containsExactly(PlotEventType.IRRIGATION_ENDED);
+    assertThat(received).noneMatch(event -> event.getPlotId() == ROLLED_BACK_PLOT_ID);
+  }
+
+  @Test
+  @DisplayName("a batch failing to be published stays in the outbox and is published again")
+  void relayFailedBatchAgain() {
+    AtomicInteger calls = new AtomicInteger();
+    Consumer<List<PlotEventDTO>> failingOnce = events -> {
+      if (calls.getAndIncrement() == 0) {
+        throw new IllegalStateException("sink unavailable");
+      }
+    };
+    inProcessPlotEventSink.addListener(failingOnce);
+    inProcessPlotEventSink.addListener(listener);
+    try {
+      plotEventBroadcaster.publish(List.of(FAILED_PLOT_ID), PlotEventType.SENSOR_CALLED);
+
+      relayUntilReceived(FAILED_PLOT_ID);
+    } finally {
+      inProcessPlotEventSink.removeListener(failingOnce);
+    }
+
+    assertThat(calls.get()).isGreaterThan(1);
+    assertThat(received).anyMatch(event -> event.getPlotId() == FAILED_PLOT_ID
+        && event.getType() == PlotEventType.SENSOR_CALLED);
+  }
+
+  @Test
+  @DisplayName("an event that keeps failing is moved to the dead letters, the next ones are relayed")
+  void relayPoisonEvent() {
+    Object relay = AopTestUtils.getUltimateTargetObject(plotEventRelay);
+    ReflectionTestUtils.setField(relay, "maxAttempts", 2);
+    Consumer<List<PlotEventDTO>> poisoned = events -> {
+      if (events.stream().anyMatch(event -> event.getPlotId() == POISON_PLOT_ID)) {
+        throw new IllegalStateException("poison event");
+      }
+    };
+    inProcessPlotEventSink.addListener(poisoned);
+    inProcessPlotEventSink.addListener(listener);
+    try {
+      plotEventBroadcaster.publish(List.of(POISON_PLOT_ID), PlotEventType.ALERT_RAISED);
+      for (int attempt = 0; attempt < 2; attempt++) {
+        long before = receivedCount(AFTER_POISON_PLOT_ID);
+        plotEventBroadcaster.publish(List.of(AFTER_POISON_PLOT_ID), PlotEventType.SENSOR_CALLED);
+        relayUntil(() -> receivedCount(AFTER_POISON_PLOT_ID) > before);
+      }
+    } finally {
+      inProcessPlotEventSink.removeListener(poisoned);
+      ReflectionTestUtils.setField(relay, "maxAttempts", 10);
+    }
+
+    assertThat(received).noneMatch(event -> event.getPlotId() == POISON_PLOT_ID);
+    assertThat(receivedCount(AFTER_POISON_PLOT_ID)).isEqualTo(2);
+    assertThat(jdbcTemplate.queryForObject(
+        "select count(*) from plot_event_outbox where plot_id = ?", Long.class, POISON_PLOT_ID))
+        .isZero();
+    assertThat(jdbcTemplate.queryForObject(
+        "select attempts from plot_event_dead_letter where plot_id = ?", Integer.class,
+        POISON_PLOT_ID)).isEqualTo(2);
+  }
+
+  /**
+   * Relays, alongside the scheduled relay, until an event of a plot is received.
+   */
+  private void relayUntilReceived(long plotId) {
+    relayUntil(() -> received.stream().anyMatch(event -> event.getPlotId() == plotId));
+  }
+
+  private long receivedCount(long plotId) {
+    return received.stream().filter(event -> event.getPlotId() == plotId).count();
+  }
+
+  private void relayUntil(BooleanSupplier done) {
+    long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+    while (!done.getAsBoolean() && System.currentTimeMillis() < deadline) {
+      try {
+        plotEventRelay.relay();
+      } catch (IllegalStateException e) {
+        // the batch stays in the outbox
+      }
+    }
+  }
+}
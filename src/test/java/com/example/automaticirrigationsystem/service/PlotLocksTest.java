@@ -0,0 +1,176 @@
+package com.example.automaticirrigationsystem.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Tests for the {@link PlotLocks}.
+ */
+class PlotLocksTest {
+
+  private static final int PLOTS_COUNT = 64;
+  private static final int THREADS_COUNT = 16;
+  private static final int TRANSITIONS_COUNT = 2000;
+  private static final int MAX_ATTEMPTS = 3;
+
+  private PlotLocks plotLocks;
+
+  @BeforeEach
+  public void initTest() {
+    plotLocks = new PlotLocks(new SimpleMeterRegistry());
+    ReflectionTestUtils.setField(plotLocks, "stripesCount", 16);
+    ReflectionTestUtils.setField(plotLocks, "timeout", 200L);
+    ReflectionTestUtils.setField(plotLocks, "maxAttempts", MAX_ATTEMPTS);
+    ReflectionTestUtils.setField(plotLocks, "backoff", 1L);
+    plotLocks.start();
+  }
+
+  @Test
+  @DisplayName("concurrent read-modify-write transitions of the same plots lose no update")
+  void runTransition_noLostUpdate() throws Exception {
+    // a plain map: every plot is only ever read and written holding its stripe
+    Map<Long, Integer> versions = new HashMap<>();
+    LongStream.range(0, PLOTS_COUNT).forEach(plotId -> versions.put(plotId, 0));
+    CountDownLatch go = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS_COUNT);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int thread = 0; thread < THREADS_COUNT; thread++) {
+      int first = thread;
+      futures.add(executor.submit(() -> {
+        go.await();
+        for (int i = 0; i < TRANSITIONS_COUNT; i++) {
+          long plotId = (first + i) % PLOTS_COUNT;
+          // every other transition moves two plots at once, in either order
+          List<Long> plotIds = i % 2 == 0 ? List.of(plotId)
+              : List.of((plotId + 7) % PLOTS_COUNT, plotId);
+          plotLocks.runTransition(plotIds, () -> {
+            plotIds.forEach(id -> {
+              int version = versions.get(id);
+              Thread.yield();
+              versions.put(id, version + 1);
+            });
+            return null;
+          });
+        }
+        return null;
+      }));
+    }
+    go.countDown();
+    for (Future<?> future : futures) {
+      future.get(30, TimeUnit.SECONDS);
+    }
+    executor.shutdown();
+
+    synchronized (versions) {
+      assertThat(versions.values().stream().mapToInt(Integer::intValue).sum())
+          .isEqualTo(THREADS_COUNT * TRANSITIONS_COUNT * 3 / 2);
+    }
+  }
+
+  @Test
+  @DisplayName("a conflicting transition is run again, up to the maximum number of attempts")
+  void runTransition_retriesConflicts() {
+    AtomicInteger attempts = new AtomicInteger();
+    assertThat(plotLocks.runTransition(List.of(1L), () -> {
+      if (attempts.incrementAndGet() < MAX_ATTEMPTS) {
+        throw new ObjectOptimisticLockingFailureException("Plot", 1L);
+      }
+      return "done";
+    })).isEqualTo("done");
+    assertThat(attempts.get()).isEqualTo(MAX_ATTEMPTS);
+
+    attempts.set(0);
+    assertThatThrownBy(() -> plotLocks.runTransition(List.of(1L), () -> {
+      attempts.incrementAndGet();
+      throw new ObjectOptimisticLockingFailureException("Plot", 1L);
+    })).isInstanceOf(ObjectOptimisticLockingFailureException.class);
+    assertThat(attempts.get()).isEqualTo(MAX_ATTEMPTS);
+
+    // other failures aren't run again
+    attempts.set(0);
+    assertThatThrownBy(() -> plotLocks.runTransition(List.of(1L), () -> {
+      attempts.incrementAndGet();
+      throw new IllegalStateException("not a conflict");
+    })).isInstanceOf(IllegalStateException.class);
+    assertThat(attempts.get()).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("a transition waiting too long for the lock of its plot gives up")
+  void runLocked_timesOut() throws Exception {
+    CountDownLatch locked = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    Future<?> holder = executor.submit(() -> plotLocks.runLocked(List.of(1L), () -> {
+      locked.countDown();
+      try {
+        return release.await(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+    }));
+    locked.await(10, TimeUnit.SECONDS);
+
+    assertThatThrownBy(() -> plotLocks.runLocked(List.of(1L), () -> null))
+        .isInstanceOf(CannotAcquireLockException.class);
+    // plots hashed to other stripes don't wait
+    List<Long> others = LongStream.range(2, 100).boxed()
+        .filter(plotId -> plotLocks.stripeOf(plotId) != plotLocks.stripeOf(1L))
+        .collect(Collectors.toList());
+    assertThat(plotLocks.runLocked(others, () -> "done")).isEqualTo("done");
+
+    release.countDown();
+    holder.get(10, TimeUnit.SECONDS);
+    executor.shutdown();
+    assertThat(plotLocks.runLocked(List.of(1L), () -> "done")).isEqualTo("done");
+  }
+
+  @Test
+  @DisplayName("an action after unlock runs once the outermost transition released its stripes")
+  void afterUnlock_runsOutsideStripes() {
+    List<String> steps = new ArrayList<>();
+    plotLocks.runLocked(List.of(1L), () -> plotLocks.runLocked(List.of(2L), () -> {
+      plotLocks.afterUnlock(() -> {
+        steps.add("after unlock");
+        // nothing held anymore: the stripes of other plots are taken without a cycle
+        assertThat(plotLocks.runLocked(List.of(3L), () -> steps.add("other plot"))).isTrue();
+      });
+      steps.add("transition");
+      return null;
+    }));
+    plotLocks.afterUnlock(() -> steps.add("outside transitions"));
+
+    assertThat(steps)
+        .containsExactly("transition", "after unlock", "other plot", "outside transitions");
+  }
+
+  @Test
+  @DisplayName("many plots are split in parts of the batch size")
+  void partition() {
+    ReflectionTestUtils.setField(plotLocks, "batchSize", 4);
+    List<Long> plotIds = LongStream.range(0, 10).boxed().collect(Collectors.toList());
+
+    assertThat(plotLocks.partition(plotIds))
+        .containsExactly(List.of(0L, 1L, 2L, 3L), List.of(4L, 5L, 6L, 7L), List.of(8L, 9L));
+  }
+}
@@ -0,0 +1,171 @@
+package com.example.automaticirrigationsystem.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.example.automaticirrigationsystem.domain.enumeration.Status;
+import com.example.automaticirrigationsystem.repository.PlotIrrigationState;
+import com.example.automaticirrigationsystem.repository.PlotRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Tests for the {@link PlotStateCache}.
+ */
+class PlotStateCacheTest {
+
+  private static final long PLOTS_COUNT = 10;
+
+  private PlotRepository plotRepository;
+  private MeterRegistry meterRegistry;
+  private PlotStateCache plotStateCache;
+
+  @BeforeEach
+  public void initTest() {
+    plotRepository = mock(PlotRepository.class);
+    when(plotRepository.findIrrigationStateByIdIn(anyCollection()))
+        .thenAnswer(invocation -> invocation.<Collection<Long>>getArgument(0).stream()
+            .filter(id -> id <= PLOTS_COUNT)
+            .map(PlotStateCacheTest::createState)
+            .collect(Collectors.toList()));
+    meterRegistry = new SimpleMeterRegistry();
+    plotStateCache = new PlotStateCache(plotRepository, meterRegistry);
+    plotStateCache.registerMeters();
+  }
+
+  @Test
+  @DisplayName("plots are loaded once, then served from the cache")
+  void getAll_readThrough() {
+    assertThat(plotStateCache.getAll(List.of(1L, 2L, 3L))).containsOnlyKeys(1L, 2L, 3L);
+    assertThat(plotStateCache.getAll(List.of(1L, 2L, 3L, 4L))).containsOnlyKeys(1L, 2L, 3L, 4L);
+    assertThat(plotStateCache.get(4L)).get()
+        .extracting(PlotIrrigationState::getSensorStatus).isEqualTo(Status.UP);
+
+    verify(plotRepository).findIrrigationStateByIdIn(List.of(1L, 2L, 3L));
+    verify(plotRepository).findIrrigationStateByIdIn(List.of(4L));
+    assertThat(count("plot.cache.requests", "result", "hit")).isEqualTo(4);
+    assertThat(count("plot.cache.requests", "result", "miss")).isEqualTo(4);
+  }
+
+  @Test
+  @DisplayName("plots that don't exist are not cached")
+  void get_missingPlot() {
+    assertThat(plotStateCache.get(PLOTS_COUNT + 1)).isEmpty();
+    assertThat(plotStateCache.get(PLOTS_COUNT + 1)).isEmpty();
+
+    verify(plotRepository, times(2)).findIrrigationStateByIdIn(List.of(PLOTS_COUNT + 1));
+    assertThat(plotStateCache.size()).isZero();
+  }
+
+  @Test
+  @DisplayName("the least recently used plots are evicted past the maximum size")
+  void getAll_maxSize() {
+    ReflectionTestUtils.setField(plotStateCache, "maxSize", 3);
+    plotStateCache.getAll(List.of(1L, 2L, 3L));
+    plotStateCache.get(1L);
+    plotStateCache.get(4L);
+
+    assertThat(plotStateCache.size()).isEqualTo(3);
+    assertThat(count("plot.cache.evictions", "cause", "size")).isEqualTo(1);
+    plotStateCache.getAll(List.of(1L, 3L, 4L));
+    assertThat(count("plot.cache.requests", "result", "hit")).isEqualTo(4);
+  }
+
+  @Test
+  @DisplayName("plots expire after the time to live")
+  void get_expired() {
+    ReflectionTestUtils.setField(plotStateCache, "ttl", 0L);
+    plotStateCache.get(1L);
+    plotStateCache.get(1L);
+
+    verify(plotRepository, times(2)).findIrrigationStateByIdIn(List.of(1L));
+    assertThat(count("plot.cache.evictions", "cause", "expired")).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("plots are evicted by id and by the id of their sensor")
+  void evict() {
+    plotStateCache.getAll(List.of(1L, 2L, 3L));
+
+    plotStateCache.evict(1L);
+    plotStateCache.evictSensors(List.of(sensorIdOf(2L)));
+
+    assertThat(plotStateCache.size()).isEqualTo(1);
+    plotStateCache.getAll(List.of(1L, 2L, 3L));
+    verify(plotRepository).findIrrigationStateByIdIn(List.of(1L, 2L));
+  }
+
+  @Test
+  @DisplayName("a load racing with an eviction is not cached")
+  void getAll_evictedWhileLoading() {
+    when(plotRepository.findIrrigationStateByIdIn(List.of(1L))).thenAnswer(invocation -> {
+      plotStateCache.evict(1L);
+      return List.of(createState(1L));
+    });
+
+    assertThat(plotStateCache.get(1L)).isPresent();
+    assertThat(plotStateCache.size()).isZero();
+  }
+
+  @Test
+  @DisplayName("a load racing with an eviction of its sensor is not cached")
+  void getAll_sensorEvictedWhileLoading() {
+    when(plotRepository.findIrrigationStateByIdIn(List.of(1L))).thenAnswer(invocation -> {
+      plotStateCache.evictSensors(List.of(sensorIdOf(1L)));
+      return List.of(createState(1L));
+    });
+
+    assertThat(plotStateCache.get(1L)).isPresent();
+    assertThat(plotStateCache.size()).isZero();
+  }
+
+  @Test
+  @DisplayName("a load racing with the eviction of other plots is cached")
+  void getAll_otherPlotEvictedWhileLoading() {
+    when(plotRepository.findIrrigationStateByIdIn(List.of(1L))).thenAnswer(invocation -> {
+      plotStateCache.evict(2L);
+      plotStateCache.evictSensors(List.of(sensorIdOf(3L)));
+      return List.of(createState(1L));
+    });
+
+    assertThat(plotStateCache.get(1L)).isPresent();
+    assertThat(plotStateCache.get(1L)).isPresent();
+    verify(plotRepository).findIrrigationStateByIdIn(List.of(1L));
+  }
+
+  @Test
+  @DisplayName("a disabled cache reads every plot from the repository")
+  void getAll_disabled() {
+    ReflectionTestUtils.setField(plotStateCache, "enabled", false);
+    plotStateCache.get(1L);
+    plotStateCache.get(1L);
+
+    verify(plotRepository, times(2)).findIrrigationStateByIdIn(List.of(1L));
+    assertThat(plotStateCache.size()).isZero();
+  }
+
+  private double count(String name, String tag, String value) {
+    return Objects.requireNonNull(meterRegistry.find(name).tag(tag, value).counter()).count();
+  }
+
+  private static long sensorIdOf(Long plotId) {
+    return plotId + 100;
+  }
+
+  private static PlotIrrigationState createState(Long plotId) {
+    return new CachedPlotState(plotId, 0, Status.UP, sensorIdOf(plotId), false, false, "", "",
+        0);
+  }
+}
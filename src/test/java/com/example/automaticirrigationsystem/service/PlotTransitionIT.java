@@ -0,0 +1,206 @@
+package com.example.automaticirrigationsystem.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.automaticirrigationsystem.domain.Plot;
+import com.example.automaticirrigationsystem.domain.Sensor;
+import com.example.automaticirrigationsystem.domain.Slot;
+import com.example.automaticirrigationsystem.domain.enumeration.CropType;
+import com.example.automaticirrigationsystem.domain.enumeration.IrrigationAction;
+import com.example.automaticirrigationsystem.domain.enumeration.Status;
+import com.example.automaticirrigationsystem.dto.PlotConfigDTO;
+import com.example.automaticirrigationsystem.exception.BadRequestException;
+import com.example.automaticirrigationsystem.exception.PlotHasAlreadyStartedToBeIrrigated;
+import com.example.automaticirrigationsystem.repository.PlotRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Integration tests for the plot transitions run concurrently on the same plot.
+ */
+@Slf4j
+@SpringBootTest
+@AutoConfigureMockMvc
+class PlotTransitionIT {
+
+  private static final int THREADS_COUNT = 8;
+  private static final int TRANSITIONS_COUNT = 25;
+  private static final int BATCH_PLOTS_COUNT = 1000;
+  /**
+   * Well below the lock timeout: a transition waiting on the locks of other plots fails the test.
+   */
+  private static final long MAX_TRANSITION_MILLIS = 2000;
+
+  @Autowired
+  private IrrigationService irrigationService;
+
+  @Autowired
+  private PlotService plotService;
+
+  @Autowired
+  private PlotRepository plotRepository;
+
+  @Autowired
+  private TransactionTemplate transactionTemplate;
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  private Long plotId;
+
+  @BeforeEach
+  public void initTest() {
+    plotId = transactionTemplate.execute(status -> plotRepository.save(createPlot()).getId());
+  }
+
+  @AfterEach
+  public void tearDown() {
+    plotService.delete(plotId);
+  }
+
+  @Test
+  @DisplayName("starts, ends and configurations racing on a plot are all applied, none is lost")
+  void concurrentTransitions() throws Exception {
+    long initialVersion = plotRepository.findById(plotId).orElseThrow().getVersion();
+    double initialTimeouts = lockTimeouts();
+    AtomicInteger applied = new AtomicInteger();
+    AtomicInteger turnedDown = new AtomicInteger();
+    CountDownLatch go = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS_COUNT);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int thread = 0; thread < THREADS_COUNT; thread++) {
+      int first = thread * TRANSITIONS_COUNT;
+      futures.add(executor.submit(() -> {
+        go.await();
+        for (int i = first; i < first + TRANSITIONS_COUNT; i++) {
+          try {
+            switch (i % 3) {
+              case 0:
+                irrigationService.startIrrigate(plotId);
+                break;
+              case 1:
+                irrigationService.endIrrigate(plotId);
+                break;
+              default:
+                // a water amount of its own, so that every configuration writes the plot
+                plotService.configurePlot(createConfig(i + 1), plotId);
+                break;
+            }
+            applied.incrementAndGet();
+          } catch (PlotHasAlreadyStartedToBeIrrigated | BadRequestException e) {
+            turnedDown.incrementAndGet();
+          }
+        }
+        return null;
+      }));
+    }
+    long startedAt = System.nanoTime();
+    go.countDown();
+    for (Future<?> future : futures) {
+      future.get(60, TimeUnit.SECONDS);
+    }
+    long elapsed = System.nanoTime() - startedAt;
+    executor.shutdown();
+
+    log.info("{} transitions of one plot on {} threads in {} ms, {} applied, {} turned down",
+        THREADS_COUNT * TRANSITIONS_COUNT, THREADS_COUNT, TimeUnit.NANOSECONDS.toMillis(elapsed),
+        applied.get(), turnedDown.get());
+    assertThat(applied.get() + turnedDown.get()).isEqualTo(THREADS_COUNT * TRANSITIONS_COUNT);
+    // every transition applied wrote the plot once, on top of the one before
+    Plot plot = plotRepository.findById(plotId).orElseThrow();
+    assertThat(plot.getVersion() - initialVersion).isEqualTo(applied.get());
+    // the transitions waited for each other, none gave up on the lock
+    assertThat(lockTimeouts()).isEqualTo(initialTimeouts);
+    assertThat(TimeUnit.NANOSECONDS.toMillis(elapsed))
+        .isLessThan(MAX_TRANSITION_MILLIS * THREADS_COUNT * TRANSITIONS_COUNT / 10);
+  }
+
+  @Test
+  @DisplayName("a batch of many plots doesn't hold up the transitions of a single plot")
+  void batchDoesNotHoldUpSinglePlot() throws Exception {
+    List<Long> batchPlotIds = transactionTemplate.execute(status -> {
+      List<Plot> plots = new ArrayList<>();
+      for (int i = 0; i < BATCH_PLOTS_COUNT; i++) {
+        plots.add(createPlot());
+      }
+      return plotRepository.saveAll(plots).stream()
+          .map(Plot::getId)
+          .collect(Collectors.toList());
+    });
+    double initialTimeouts = lockTimeouts();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<?> batch = executor.submit(() -> {
+        irrigationService.irrigateAll(IrrigationAction.START, batchPlotIds);
+        irrigationService.irrigateAll(IrrigationAction.END, batchPlotIds);
+      });
+      long maxElapsed = 0;
+      int transitions = 0;
+      while (!batch.isDone()) {
+        long startedAt = System.nanoTime();
+        irrigationService.startIrrigate(plotId);
+        irrigationService.endIrrigate(plotId);
+        maxElapsed = Math.max(maxElapsed, System.nanoTime() - startedAt);
+        transitions++;
+      }
+      batch.get(60, TimeUnit.SECONDS);
+
+      log.info("{} transitions of one plot while {} plots were started and ended, at most {} ms",
+          transitions * 2, BATCH_PLOTS_COUNT, TimeUnit.NANOSECONDS.toMillis(maxElapsed));
+      assertThat(TimeUnit.NANOSECONDS.toMillis(maxElapsed)).isLessThan(MAX_TRANSITION_MILLIS);
+      assertThat(lockTimeouts()).isEqualTo(initialTimeouts);
+    } finally {
+      executor.shutdown();
+      batchPlotIds.forEach(plotService::delete);
+    }
+  }
+
+  private double lockTimeouts() {
+    return meterRegistry.get("plot.lock.timeouts").counter().count();
+  }
+
+  private PlotConfigDTO createConfig(int waterAmount) {
+    PlotConfigDTO config = new PlotConfigDTO();
+    config.setCropType(CropType.RICE);
+    config.setWaterAmount(waterAmount);
+    config.setSlotsCount(2);
+    return config;
+  }
+
+  private Plot createPlot() {
+    Plot plot = new Plot();
+    plot.setPlotCode("contended-plot-" + System.nanoTime());
+    plot.setPlotLength(10D);
+    plot.setPlotWidth(10D);
+    plot.setIsIrrigated(false);
+    plot.setHasAlert(false);
+    plot.setSensorCallCount(0);
+    plot.setLastSensorCallTime("");
+    plot.setStartIrrigationTime("");
+    plot.setLastIrrigationTime("");
+    plot.setWaterAmount(0);
+    plot.setPlotSensor(new Sensor(null, "contended-sensor-" + System.nanoTime(), Status.UP, null));
+    Slot slot = new Slot();
+    slot.setStatus(Status.DOWN);
+    slot.setPlot(plot);
+    plot.getPlotTimerSlots().add(slot);
+    return plot;
+  }
+}
@@ -0,0 +1,274 @@
+package com.example.automaticirrigationsystem.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import com.example.automaticirrigationsystem.domain.Plot;
+import com.example.automaticirrigationsystem.domain.Sensor;
+import com.example.automaticirrigationsystem.domain.enumeration.Status;
+import com.example.automaticirrigationsystem.repository.PlotBatchRepository;
+import com.example.automaticirrigationsystem.repository.PlotRepository;
+import com.example.automaticirrigationsystem.repository.PlotSensorStatus;
+import com.example.automaticirrigationsystem.repository.SensorCallOutcome;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Concurrency tests for the {@link SensorCallingScheduler}.
+ */
+@Slf4j
+class SensorCallingSchedulerTest {
+
+  private static final int PLOTS_COUNT = 5000;
+  private static final int TRIES_COUNT = 3;
+  private static final int CALLERS_COUNT = 32;
+
+  private final Map<Long, Plot> plots = new ConcurrentHashMap<>();
+  /**
+   * Held shut, the sensor calls wait for it to open.
+   */
+  private final CountDownLatch sensorGate = new CountDownLatch(1);
+
+  private PlotAlertIndex plotAlertIndex;
+  private ThreadPoolTaskScheduler sensorRetryScheduler;
+  private ThreadPoolTaskExecutor sensorRetryExecutor;
+  private SensorCallingScheduler sensorCallingScheduler;
+
+  @BeforeEach
+  public void initTest() {
+    PlotRepository plotRepository = mock(PlotRepository.class, withSettings().stubOnly());
+    when(plotRepository.findSensorStatusByIdIn(anyCollection()))
+        .thenAnswer(invocation -> {
+          assertThat(sensorGate.await(30, TimeUnit.SECONDS)).isTrue();
+          return invocation.<Collection<Long>>getArgument(0).stream()
+              .map(plots::get)
+              .filter(Objects::nonNull)
+              .map(SensorCallingSchedulerTest::toSensorStatus)
+              .collect(Collectors.toList());
+        });
+    PlotBatchRepository plotBatchRepository =
+        mock(PlotBatchRepository.class, withSettings().stubOnly());
+    when(plotBatchRepository.startIrrigation(anyCollection(), anyString()))
+        .thenAnswer(invocation -> {
+          Collection<Long> plotIds = invocation.getArgument(0);
+          plotIds.forEach(id -> {
+            Plot plot = plots.get(id);
+            plot.setSensorCallCount(0);
+            plot.setHasAlert(false);
+            plot.setIsIrrigated(true);
+          });
+          return plotIds.size();
+        });
+    doAnswer(invocation -> {
+      List<SensorCallOutcome> outcomes = invocation.getArgument(0);
+      outcomes.forEach(outcome -> {
+        Plot plot = plots.get(outcome.getPlotId());
+        plot.setSensorCallCount(outcome.getSensorCallCount());
+        plot.setHasAlert(outcome.isHasAlert());
+      });
+      return null;
+    }).when(plotBatchRepository).recordSensorCalls(anyList(), anyString());
+
+    plotAlertIndex = new PlotAlertIndex(plotRepository, new SimpleMeterRegistry());
+
+    sensorRetryScheduler = new ThreadPoolTaskScheduler();
+    sensorRetryScheduler.setPoolSize(2);
+    sensorRetryScheduler.initialize();
+    sensorRetryExecutor = new ThreadPoolTaskExecutor();
+    sensorRetryExecutor.setCorePoolSize(8);
+    sensorRetryExecutor.setQueueCapacity(PLOTS_COUNT * 2);
+    sensorRetryExecutor.initialize();
+
+    PlotLocks plotLocks = new PlotLocks(new SimpleMeterRegistry());
+    plotLocks.start();
+
+    sensorCallingScheduler = new SensorCallingScheduler(plotRepository, plotBatchRepository,
+        mock(PlotStateCache.class, withSettings().stubOnly()), plotAlertIndex,
+        mock(PlotEventBroadcaster.class, withSettings().stubOnly()),
+        new WaterSupply(plotRepository, new SimpleMeterRegistry()), plotLocks,
+        new TransactionTemplate(mock(PlatformTransactionManager.class,
+            withSettings().stubOnly())), sensorRetryScheduler, sensorRetryExecutor,
+        new SimpleMeterRegistry());
+    ReflectionTestUtils.setField(sensorCallingScheduler, "triesCount", TRIES_COUNT);
+    ReflectionTestUtils.setField(sensorCallingScheduler, "triesInterval", 10L);
+    ReflectionTestUtils.setField(sensorCallingScheduler, "pollInterval", 5L);
+    ReflectionTestUtils.setField(sensorCallingScheduler, "batchSize", 500);
+    sensorCallingScheduler.startPolling();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    sensorCallingScheduler.stopPolling();
+    sensorRetryScheduler.shutdown();
+    sensorRetryExecutor.shutdown();
+  }
+
+  @Test
+  @DisplayName("every plot gets the full tries budget when thousands of plots retry at once")
+  void tryToConnectToSensor_concurrentPlots() throws Exception {
+    sensorGate.countDown();
+    for (long id = 1; id <= PLOTS_COUNT; id++) {
+      plots.put(id, createPlot(id, Status.DOWN));
+    }
+
+    callConcurrently(new ArrayList<>(plots.values()));
+
+    awaitUntilSettled();
+    assertThat(plots.values()).allSatisfy(plot -> {
+      assertThat(plot.getSensorCallCount()).isEqualTo(TRIES_COUNT);
+      assertThat(plot.getHasAlert()).isTrue();
+      assertThat(plot.getIsIrrigated()).isFalse();
+    });
+    assertThat(plotAlertIndex.getAlertPlotIds())
+        .containsExactlyInAnyOrderElementsOf(plots.keySet());
+  }
+
+  @Test
+  @DisplayName("plots whose sensor is back UP are irrigated while the others raise an alert")
+  void tryToConnectToSensor_mixedSensors() throws Exception {
+    sensorGate.countDown();
+    for (long id = 1; id <= PLOTS_COUNT; id++) {
+      plots.put(id, createPlot(id, id % 2 == 0 ? Status.UP : Status.DOWN));
+    }
+
+    callConcurrently(new ArrayList<>(plots.values()));
+
+    awaitUntilSettled();
+    assertThat(plots.values()).allSatisfy(plot -> {
+      if (plot.getPlotSensor().getStatus() == Status.UP) {
+        assertThat(plot.getIsIrrigated()).isTrue();
+        assertThat(plot.getSensorCallCount()).isZero();
+        assertThat(plot.getHasAlert()).isFalse();
+      } else {
+        assertThat(plot.getIsIrrigated()).isFalse();
+        assertThat(plot.getSensorCallCount()).isEqualTo(TRIES_COUNT);
+        assertThat(plot.getHasAlert()).isTrue();
+      }
+    });
+    assertThat(plotAlertIndex.getAlertPlotIds()).containsExactlyInAnyOrderElementsOf(
+        plots.values().stream()
+            .filter(Plot::getHasAlert)
+            .map(Plot::getId)
+            .collect(Collectors.toList()));
+  }
+
+  @Test
+  @DisplayName("concurrent calls for the same plot join the sensor calls already in flight")
+  void tryToConnectToSensor_samePlot() throws Exception {
+    Plot plot = createPlot(1L, Status.DOWN);
+    plots.put(1L, plot);
+    List<Plot> toCall = new ArrayList<>();
+    for (int i = 0; i < PLOTS_COUNT; i++) {
+      toCall.add(plot);
+    }
+
+    // the first sensor call waits until every caller got its result, none can miss the calls
+    Set<CompletableFuture<Status>> results = callConcurrently(toCall);
+    sensorGate.countDown();
+
+    assertThat(results).hasSize(1);
+    assertThat(results.iterator().next().get(30, TimeUnit.SECONDS)).isEqualTo(Status.DOWN);
+    awaitUntilSettled();
+    assertThat(plot.getSensorCallCount()).isEqualTo(TRIES_COUNT);
+    assertThat(plot.getHasAlert()).isTrue();
+  }
+
+  private Set<CompletableFuture<Status>> callConcurrently(List<Plot> toCall) throws Exception {
+    ExecutorService callers = Executors.newFixedThreadPool(CALLERS_COUNT);
+    CountDownLatch startGate = new CountDownLatch(1);
+    List<Future<CompletableFuture<Status>>> calls = new ArrayList<>();
+    for (Plot plot : toCall) {
+      calls.add(callers.submit(() -> {
+        startGate.await();
+        return sensorCallingScheduler.tryToConnectToSensor(plot);
+      }));
+    }
+    startGate.countDown();
+    Set<CompletableFuture<Status>> results = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (Future<CompletableFuture<Status>> call : calls) {
+      results.add(call.get(30, TimeUnit.SECONDS));
+    }
+    callers.shutdown();
+    return results;
+  }
+
+  private void awaitUntilSettled() throws InterruptedException {
+    long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(60);
+    while (System.currentTimeMillis() < deadline && plots.values().stream()
+        .anyMatch(plot -> !plot.getHasAlert() && !plot.getIsIrrigated())) {
+      Thread.sleep(50);
+    }
+    // terminating the pools publishes the last writes of the sensor calls to this thread
+    sensorRetryScheduler.getScheduledExecutor().shutdown();
+    sensorRetryExecutor.getThreadPoolExecutor().shutdown();
+    sensorRetryExecutor.getThreadPoolExecutor().awaitTermination(10, TimeUnit.SECONDS);
+    log.info("{} plots settled", plots.size());
+  }
+
+  private static PlotSensorStatus toSensorStatus(Plot plot) {
+    return new PlotSensorStatus() {
+      @Override
+      public Long getId() {
+        return plot.getId();
+      }
+
+      @Override
+      public Integer getSensorCallCount() {
+        return plot.getSensorCallCount();
+      }
+
+      @Override
+      public Status getSensorStatus() {
+        return plot.getPlotSensor().getStatus();
+      }
+
+      @Override
+      public Integer getSlotsCount() {
+        return plot.getPlotTimerSlots().size();
+      }
+    };
+  }
+
+  private Plot createPlot(Long id, Status sensorStatus) {
+    Plot plot = new Plot();
+    plot.setId(id);
+    plot.setPlotCode("plot-" + id);
+    plot.setIsIrrigated(false);
+    plot.setHasAlert(false);
+    plot.setSensorCallCount(0);
+    plot.setLastSensorCallTime("");
+    plot.setPlotSensor(new Sensor(id, "sensor-" + id, sensorStatus, plot));
+    return plot;
+  }
+}
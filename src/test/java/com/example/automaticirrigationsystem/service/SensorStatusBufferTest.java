@@ -0,0 +1,198 @@
+package com.example.automaticirrigationsystem.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import com.example.automaticirrigationsystem.domain.enumeration.Status;
+import com.example.automaticirrigationsystem.repository.SensorBatchRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Tests for the {@link SensorStatusBuffer} write-behind.
+ */
+class SensorStatusBufferTest {
+
+  private static final int SENSORS_COUNT = 100;
+  private static final int REPORTS_COUNT = 200;
+  private static final int CALLERS_COUNT = 16;
+
+  private final Map<Long, Status> sensors = new ConcurrentHashMap<>();
+  private final List<Integer> batches = new CopyOnWriteArrayList<>();
+  private final AtomicInteger failures = new AtomicInteger();
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private ThreadPoolTaskScheduler scheduler;
+  private ThreadPoolTaskExecutor executor;
+  private SensorStatusBuffer sensorStatusBuffer;
+
+  @BeforeEach
+  public void initTest() {
+    SensorBatchRepository sensorBatchRepository =
+        mock(SensorBatchRepository.class, withSettings().stubOnly());
+    when(sensorBatchRepository.updateStatuses(anyMap())).thenAnswer(invocation -> {
+      Map<Long, Status> statuses = invocation.getArgument(0);
+      if (failures.getAndUpdate(count -> Math.max(count - 1, 0)) > 0) {
+        throw new QueryTimeoutException("sensor table locked");
+      }
+      batches.add(statuses.size());
+      sensors.putAll(statuses);
+      return statuses.size();
+    });
+
+    scheduler = new ThreadPoolTaskScheduler();
+    scheduler.initialize();
+    executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(2);
+    executor.initialize();
+
+    sensorStatusBuffer = new SensorStatusBuffer(sensorBatchRepository,
+        mock(PlotStateCache.class), scheduler, executor, meterRegistry);
+    ReflectionTestUtils.setField(sensorStatusBuffer, "enabled", true);
+    // long enough for the interval flush to stay out of the way
+    ReflectionTestUtils.setField(sensorStatusBuffer, "flushInterval", 60_000L);
+    ReflectionTestUtils.setField(sensorStatusBuffer, "batchSize", 1000);
+    ReflectionTestUtils.setField(sensorStatusBuffer, "capacity", 1000);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    sensorStatusBuffer.stop();
+    scheduler.shutdown();
+    executor.shutdown();
+  }
+
+  @Test
+  @DisplayName("only the last status reported by each sensor is written, on shutdown")
+  void offer_lastWriteWins() throws Exception {
+    sensorStatusBuffer.start();
+    ExecutorService callers = Executors.newFixedThreadPool(CALLERS_COUNT);
+    CountDownLatch startGate = new CountDownLatch(1);
+    List<Future<?>> calls = new ArrayList<>();
+    for (int caller = 0; caller < CALLERS_COUNT; caller++) {
+      calls.add(callers.submit(() -> {
+        startGate.await();
+        for (int report = 0; report < REPORTS_COUNT; report++) {
+          for (long id = 1; id <= SENSORS_COUNT; id++) {
+            sensorStatusBuffer.offer(id, Status.UP);
+          }
+        }
+        return null;
+      }));
+    }
+    startGate.countDown();
+    for (Future<?> call : calls) {
+      call.get(30, TimeUnit.SECONDS);
+    }
+    callers.shutdown();
+    for (long id = 1; id <= SENSORS_COUNT; id++) {
+      sensorStatusBuffer.offer(id, Status.DOWN);
+    }
+    assertThat(sensors).isEmpty();
+    assertThat(sensorStatusBuffer.getPendingStatus(1L)).contains(Status.DOWN);
+
+    sensorStatusBuffer.stop();
+
+    assertThat(batches).containsExactly(SENSORS_COUNT);
+    assertThat(sensors).hasSize(SENSORS_COUNT);
+    assertThat(sensors.values()).containsOnly(Status.DOWN);
+    assertThat(sensorStatusBuffer.getPendingStatus(1L)).isEmpty();
+  }
+
+  @Test
+  @DisplayName("a full batch is written without waiting for the interval")
+  void offer_batchSize() throws Exception {
+    ReflectionTestUtils.setField(sensorStatusBuffer, "batchSize", 10);
+    sensorStatusBuffer.start();
+
+    for (long id = 1; id <= 10; id++) {
+      sensorStatusBuffer.offer(id, Status.UP);
+    }
+
+    long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+    while (sensors.size() < 10 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(sensors).hasSize(10);
+  }
+
+  @Test
+  @DisplayName("the statuses are written on the interval")
+  void offer_flushInterval() throws Exception {
+    ReflectionTestUtils.setField(sensorStatusBuffer, "flushInterval", 20L);
+    sensorStatusBuffer.start();
+
+    sensorStatusBuffer.offer(1L, Status.UP);
+
+    long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+    while (sensors.isEmpty() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(sensors).containsEntry(1L, Status.UP);
+  }
+
+  @Test
+  @DisplayName("a full buffer makes room by writing a batch before buffering more")
+  void offer_capacity() {
+    ReflectionTestUtils.setField(sensorStatusBuffer, "capacity", 5);
+    sensorStatusBuffer.start();
+
+    for (long id = 1; id <= 6; id++) {
+      sensorStatusBuffer.offer(id, Status.UP);
+    }
+
+    assertThat(batches).containsExactly(5);
+    assertThat(sensorStatusBuffer.getPendingStatus(6L)).contains(Status.UP);
+  }
+
+  @Test
+  @DisplayName("a full buffer whose batch can't be written doesn't grow, the status is written now")
+  void offer_capacityFlushFailed() {
+    ReflectionTestUtils.setField(sensorStatusBuffer, "capacity", 5);
+    sensorStatusBuffer.start();
+    for (long id = 1; id <= 5; id++) {
+      sensorStatusBuffer.offer(id, Status.UP);
+    }
+
+    failures.set(1);
+    sensorStatusBuffer.offer(6L, Status.UP);
+
+    assertThat(batches).containsExactly(1);
+    assertThat(sensors).containsOnlyKeys(6L);
+    assertThat(sensorStatusBuffer.getPendingStatus(6L)).isEmpty();
+    assertThat(pendingCount()).isEqualTo(5);
+
+    failures.set(2);
+    assertThatThrownBy(() -> sensorStatusBuffer.offer(7L, Status.UP))
+        .isInstanceOf(QueryTimeoutException.class);
+
+    assertThat(sensors).containsOnlyKeys(6L);
+    assertThat(pendingCount()).isEqualTo(5);
+  }
+
+  private double pendingCount() {
+    return meterRegistry.get("sensor.status.pending").gauge().value();
+  }
+}
@@ -0,0 +1,140 @@
+package com.example.automaticirrigationsystem.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.example.automaticirrigationsystem.domain.Plot;
+import com.example.automaticirrigationsystem.domain.Sensor;
+import com.example.automaticirrigationsystem.domain.Slot;
+import com.example.automaticirrigationsystem.domain.enumeration.Status;
+import com.example.automaticirrigationsystem.dto.SensorDTO;
+import com.example.automaticirrigationsystem.exception.SensorCantBeReachedException;
+import com.example.automaticirrigationsystem.repository.PlotRepository;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Integration tests for the plots waiting for the {@link WaterSupply}.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class WaterSupplyIT {
+
+  @Autowired
+  private IrrigationService irrigationService;
+
+  @Autowired
+  private PlotService plotService;
+
+  @Autowired
+  private SensorService sensorService;
+
+  @Autowired
+  private SensorCallingScheduler sensorCallingScheduler;
+
+  @Autowired
+  private WaterSupply waterSupply;
+
+  @Autowired
+  private PlotRepository plotRepository;
+
+  @Autowired
+  private TransactionTemplate transactionTemplate;
+
+  private Long irrigatedPlotId;
+
+  private Long waitingPlotId;
+
+  @BeforeEach
+  public void initTest() {
+    // room for the single slot of one plot
+    ReflectionTestUtils.setField(target(waterSupply), "capacity", waterSupply.drawOf(1));
+    ReflectionTestUtils.setField(target(sensorCallingScheduler), "triesCount", 50);
+    ReflectionTestUtils.setField(target(sensorCallingScheduler), "triesInterval", 200L);
+    irrigatedPlotId = transactionTemplate.execute(
+        status -> plotRepository.save(createPlot("irrigated", Status.UP)).getId());
+    waitingPlotId = transactionTemplate.execute(
+        status -> plotRepository.save(createPlot("waiting", Status.DOWN)).getId());
+  }
+
+  @AfterEach
+  public void tearDown() {
+    plotService.delete(irrigatedPlotId);
+    plotService.delete(waitingPlotId);
+    ReflectionTestUtils.setField(target(waterSupply), "capacity", 0L);
+    ReflectionTestUtils.setField(target(sensorCallingScheduler), "triesCount", 2);
+    ReflectionTestUtils.setField(target(sensorCallingScheduler), "triesInterval", 30000L);
+  }
+
+  @Test
+  @DisplayName("a plot whose sensor is back UP while the supply is full starts once water frees")
+  void sensorReachedWhileSupplyFull() throws Exception {
+    irrigationService.startIrrigate(irrigatedPlotId);
+    assertThatThrownBy(() -> irrigationService.startIrrigate(waitingPlotId))
+        .isInstanceOf(SensorCantBeReachedException.class);
+    awaitSensorCalled(waitingPlotId);
+
+    SensorDTO sensor = new SensorDTO();
+    sensor.setId(plotRepository.findById(waitingPlotId).orElseThrow().getPlotSensor().getId());
+    sensor.setStatus(Status.UP);
+    sensorService.partialUpdate(sensor);
+    assertThat(sensorCallingScheduler.tryToConnectToSensor(waitingPlotId)
+        .get(10, TimeUnit.SECONDS)).isEqualTo(Status.UP);
+
+    Plot waiting = plotRepository.findById(waitingPlotId).orElseThrow();
+    assertThat(waiting.getIsIrrigated()).isFalse();
+    assertThat(waiting.getSensorCallCount()).isZero();
+    assertThat(waterSupply.queuedCount()).isEqualTo(1);
+
+    irrigationService.endIrrigate(irrigatedPlotId);
+
+    waiting = plotRepository.findById(waitingPlotId).orElseThrow();
+    assertThat(waiting.getIsIrrigated()).isTrue();
+    assertThat(waiting.getHasAlert()).isFalse();
+    assertThat(waterSupply.queuedCount()).isZero();
+  }
+
+  private void awaitSensorCalled(Long plotId) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+    while (System.currentTimeMillis() < deadline
+        && plotRepository.findById(plotId).orElseThrow().getSensorCallCount() == 0) {
+      Thread.sleep(50);
+    }
+    assertThat(plotRepository.findById(plotId).orElseThrow().getSensorCallCount()).isPositive();
+  }
+
+  private static Object target(Object bean) {
+    return AopTestUtils.getUltimateTargetObject(bean);
+  }
+
+  private Plot createPlot(String name, Status sensorStatus) {
+    Plot plot = new Plot();
+    plot.setPlotCode(name + "-plot-" + System.nanoTime());
+    plot.setPlotLength(10D);
+    plot.setPlotWidth(10D);
+    plot.setIsIrrigated(false);
+    plot.setHasAlert(false);
+    plot.setSensorCallCount(0);
+    plot.setLastSensorCallTime("");
+    plot.setStartIrrigationTime("");
+    plot.setLastIrrigationTime("");
+    plot.setWaterAmount(0);
+    plot.setPlotSensor(
+        new Sensor(null, name + "-sensor-" + System.nanoTime(), sensorStatus, null));
+    Slot slot = new Slot();
+    slot.setStatus(Status.DOWN);
+    slot.setPlot(plot);
+    plot.getPlotTimerSlots().add(slot);
+    return plot;
+  }
+}
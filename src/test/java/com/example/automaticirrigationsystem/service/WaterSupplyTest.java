@@ -0,0 +1,131 @@
+package com.example.automaticirrigationsystem.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import com.example.automaticirrigationsystem.repository.PlotRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Tests for the {@link WaterSupply}.
+ */
+class WaterSupplyTest {
+
+  private static final long CAPACITY = 100;
+  private static final int PLOTS_COUNT = 2000;
+  private static final int THREADS_COUNT = 16;
+
+  private WaterSupply waterSupply;
+
+  @BeforeEach
+  public void initTest() {
+    waterSupply = new WaterSupply(mock(PlotRepository.class), new SimpleMeterRegistry());
+    ReflectionTestUtils.setField(waterSupply, "capacity", CAPACITY);
+    ReflectionTestUtils.setField(waterSupply, "slotFlowRate", 10.0);
+    waterSupply.start();
+  }
+
+  @Test
+  @DisplayName("the plots not fitting in the capacity left wait and are admitted in arrival order")
+  void admit_queuesBeyondCapacity() {
+    assertThat(waterSupply.drawOf(4)).isEqualTo(40);
+    assertThat(waterSupply.admit(1L, 40)).isTrue();
+    assertThat(waterSupply.admit(2L, 40)).isTrue();
+    assertThat(waterSupply.admit(3L, 40)).isFalse();
+    assertThat(waterSupply.admit(4L, 10)).isFalse();
+    // an admitted plot doesn't draw twice, a waiting one keeps its place
+    assertThat(waterSupply.admit(1L, 40)).isTrue();
+    assertThat(waterSupply.admit(3L, 40)).isFalse();
+    assertThat(waterSupply.getActiveDraw()).isEqualTo(80);
+    assertThat(waterSupply.queuedCount()).isEqualTo(2);
+
+    assertThat(waterSupply.release(List.of(1L))).containsExactly(3L, 4L);
+    assertThat(waterSupply.getActiveDraw()).isEqualTo(90);
+    assertThat(waterSupply.queuedCount()).isZero();
+
+    assertThat(waterSupply.admit(5L, 20)).isFalse();
+    // ending a waiting plot takes it off the queue
+    assertThat(waterSupply.release(List.of(5L))).isEmpty();
+    assertThat(waterSupply.queuedCount()).isZero();
+  }
+
+  @Test
+  @DisplayName("a plot drawing more than the capacity is admitted alone")
+  void admit_largerThanCapacity() {
+    assertThat(waterSupply.admit(1L, CAPACITY * 2)).isTrue();
+    assertThat(waterSupply.admit(2L, 1)).isFalse();
+    assertThat(waterSupply.admit(3L, CAPACITY * 3)).isFalse();
+
+    assertThat(waterSupply.release(List.of(1L))).containsExactly(2L);
+    assertThat(waterSupply.release(List.of(2L))).containsExactly(3L);
+    assertThat(waterSupply.getActiveDraw()).isEqualTo(CAPACITY * 3);
+
+    waterSupply.cancel(List.of(3L));
+    assertThat(waterSupply.getActiveDraw()).isZero();
+  }
+
+  @Test
+  @DisplayName("concurrent starts and ends never draw beyond the capacity, nor lose a plot")
+  void admit_concurrently() throws Exception {
+    Set<Long> startedOnce = ConcurrentHashMap.newKeySet();
+    ConcurrentLinkedQueue<Long> irrigated = new ConcurrentLinkedQueue<>();
+    AtomicLong maxDraw = new AtomicLong();
+    CountDownLatch go = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS_COUNT);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int thread = 0; thread < THREADS_COUNT; thread++) {
+      long first = (long) thread * PLOTS_COUNT;
+      futures.add(executor.submit(() -> {
+        go.await();
+        for (long plotId = first; plotId < first + PLOTS_COUNT; plotId++) {
+          if (waterSupply.admit(plotId, 1 + plotId % 30)) {
+            assertThat(startedOnce.add(plotId)).isTrue();
+            irrigated.add(plotId);
+          }
+          maxDraw.accumulateAndGet(waterSupply.getActiveDraw(), Math::max);
+          // end one of the irrigated plots, starting the waiting ones it admits
+          end(irrigated.poll(), startedOnce, irrigated);
+        }
+        return null;
+      }));
+    }
+    go.countDown();
+    for (Future<?> future : futures) {
+      future.get(30, TimeUnit.SECONDS);
+    }
+    executor.shutdown();
+    while (!irrigated.isEmpty()) {
+      end(irrigated.poll(), startedOnce, irrigated);
+    }
+
+    assertThat(maxDraw.get()).isLessThanOrEqualTo(CAPACITY);
+    assertThat(startedOnce).hasSize(THREADS_COUNT * PLOTS_COUNT);
+    assertThat(waterSupply.getActiveDraw()).isZero();
+    assertThat(waterSupply.queuedCount()).isZero();
+  }
+
+  private void end(Long plotId, Set<Long> startedOnce, Collection<Long> irrigated) {
+    if (plotId != null) {
+      for (Long admitted : waterSupply.release(List.of(plotId))) {
+        assertThat(startedOnce.add(admitted)).isTrue();
+        irrigated.add(admitted);
+      }
+    }
+  }
+}
@@ -1,11 +1,15 @@
 package com.example.automaticirrigationsystem.web.rest;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import com.example.automaticirrigationsystem.service.PlotAlertIndex;
+import com.example.automaticirrigationsystem.service.PlotStateCache;
+import java.util.List;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeEach;
@@ -15,6 +19,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -34,6 +39,15 @@ class AlertingControllerIT {
   @Autowired
   private MockMvc restAlertingMockMvc;
 
+  @Autowired
+  private PlotAlertIndex plotAlertIndex;
+
+  @Autowired
+  private PlotStateCache plotStateCache;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
   @AfterAll
   static void done() {
     log.info("Integration Tests Executed");
@@ -73,4 +87,35 @@ class AlertingControllerIT {
         .andExpect(jsonPath("$.hasAlert").value("false"));
   }
 
+  @Test
+  @Transactional
+  @DisplayName("a plot whose alert is fixed doesn't show up with the plots with alert")
+  void showUpPlotsWithAlert_afterFix() throws Exception {
+
+    restAlertingMockMvc
+        .perform(get(ENTITY_API_URL_OFF_ID, 3L).contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk());
+
+    restAlertingMockMvc
+        .perform(get(ENTITY_API_URL).contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$[?(@.id == 3)]").isEmpty());
+  }
+
+  @Test
+  @DisplayName("a plot whose alert is fixed leaves the alert index once committed")
+  void fixPlotAlert_committed() throws Exception {
+    try {
+      restAlertingMockMvc
+          .perform(get(ENTITY_API_URL_OFF_ID, 3L).contentType(MediaType.APPLICATION_JSON))
+          .andExpect(status().isOk());
+
+      assertThat(plotAlertIndex.getAlertPlotIds()).doesNotContain(3L);
+    } finally {
+      jdbcTemplate.update("update plot set has_alert = true where id = 3");
+      plotAlertIndex.raise(List.of(3L));
+      plotStateCache.evict(3L);
+    }
+  }
+
 }
@@ -1,6 +1,9 @@
 package com.example.automaticirrigationsystem.web.rest;
 
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.is;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
@@ -32,6 +35,8 @@ class IrrigationControllerIT {
   private static final String ENTITY_API_URL_END = "/api/irrigate/end";
   private static final String ENTITY_API_URL_END_ID = ENTITY_API_URL_END + "/{id}";
 
+  private static final String ENTITY_API_URL_BATCH = "/api/irrigate/batch";
+
   private static final String ENTITY_API_URL_PLOT = "/api/plots";
   private static final String ENTITY_API_URL_PLOT_ID = ENTITY_API_URL_PLOT + "/{id}";
 
@@ -120,4 +125,55 @@ class IrrigationControllerIT {
         .andExpect(content().contentType("text/plain;charset=UTF-8"))
         .andExpect(content().string("plot doesn't exist!"));
   }
+
+  @Test
+  @Transactional
+  @DisplayName("start and end irrigate many plots at once with an outcome per plot")
+  void batchPlotIrrigation() throws Exception {
+
+    restIrrigateMockMvc
+        .perform(post(ENTITY_API_URL_BATCH).contentType(MediaType.APPLICATION_JSON)
+            .content("{\"action\":\"START\",\"plotIds\":[1,3,10,1]}"))
+        .andExpect(status().isOk())
+        .andDo(print())
+        .andExpect(content().contentType("application/json"))
+        .andExpect(jsonPath("$.length()").value(3))
+        .andExpect(jsonPath("$[0].plotId").value(1))
+        .andExpect(jsonPath("$[0].outcome").value("STARTED"))
+        .andExpect(jsonPath("$[1].plotId").value(3))
+        .andExpect(jsonPath("$[1].outcome").value("ALERT_ON"))
+        .andExpect(jsonPath("$[2].plotId").value(10))
+        .andExpect(jsonPath("$[2].outcome").value("NOT_FOUND"));
+
+    restIrrigateMockMvc
+        .perform(get(ENTITY_API_URL_PLOT_ID, 1L).contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.isIrrigated").value("true"))
+        .andExpect(jsonPath("$.plotTimerSlots[*].status").value(everyItem(is("UP"))));
+
+    restIrrigateMockMvc
+        .perform(post(ENTITY_API_URL_BATCH).contentType(MediaType.APPLICATION_JSON)
+            .content("{\"action\":\"END\",\"plotIds\":[1,3]}"))
+        .andExpect(status().isOk())
+        .andDo(print())
+        .andExpect(jsonPath("$[0].outcome").value("ENDED"))
+        .andExpect(jsonPath("$[1].outcome").value("NOT_STARTED"));
+
+    restIrrigateMockMvc
+        .perform(get(ENTITY_API_URL_PLOT_ID, 1L).contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.isIrrigated").value("false"))
+        .andExpect(jsonPath("$.plotTimerSlots[*].status").value(everyItem(is("DOWN"))));
+  }
+
+  @Test
+  @Transactional
+  @DisplayName("reject a batch without plots")
+  void batchPlotIrrigation_noPlots() throws Exception {
+
+    restIrrigateMockMvc
+        .perform(post(ENTITY_API_URL_BATCH).contentType(MediaType.APPLICATION_JSON)
+            .content("{\"action\":\"START\",\"plotIds\":[]}"))
+        .andExpect(status().isBadRequest());
+  }
 }
@@ -0,0 +1,64 @@
+package com.example.automaticirrigationsystem.web.rest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.example.automaticirrigationsystem.domain.enumeration.PlotEventType;
+import com.example.automaticirrigationsystem.service.PlotEventBroadcaster;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+/**
+ * Integration tests for the {@link PlotEventController} REST controller.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class PlotEventControllerIT {
+
+  private static final String ENTITY_API_URL = "/api/plots/events";
+
+  @Autowired
+  private MockMvc restPlotEventMockMvc;
+
+  @Autowired
+  private PlotEventBroadcaster plotEventBroadcaster;
+
+  @Test
+  @DisplayName("the events of the subscribed plots are pushed as server-sent events")
+  void streamPlotEvents() throws Exception {
+    MvcResult mvcResult = restPlotEventMockMvc
+        .perform(get(ENTITY_API_URL).param("plotId", "1", "3")
+            .accept(MediaType.TEXT_EVENT_STREAM))
+        .andExpect(status().isOk())
+        .andExpect(request().asyncStarted())
+        .andReturn();
+
+    plotEventBroadcaster.publish(List.of(1L, 2L), PlotEventType.IRRIGATION_STARTED);
+    plotEventBroadcaster.publish(List.of(3L), PlotEventType.ALERT_CLEARED);
+
+    MockHttpServletResponse response = mvcResult.getResponse();
+    long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+    while (!response.getContentAsString().contains("ALERT_CLEARED")
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    String events = response.getContentAsString();
+    assertThat(response.getContentType()).startsWith(MediaType.TEXT_EVENT_STREAM_VALUE);
+    assertThat(events)
+        .contains("event:IRRIGATION_STARTED\ndata:{\"plotId\":1,\"type\":\"IRRIGATION_STARTED\"")
+        .contains("event:ALERT_CLEARED\ndata:{\"plotId\":3,\"type\":\"ALERT_CLEARED\"")
+        .doesNotContain("\"plotId\":2");
+    mvcResult.getRequest().getAsyncContext().complete();
+  }
+}
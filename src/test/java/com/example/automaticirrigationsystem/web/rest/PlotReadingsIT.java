@@ -0,0 +1,187 @@
+package com.example.automaticirrigationsystem.web.rest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.example.automaticirrigationsystem.domain.enumeration.Resolution;
+import com.example.automaticirrigationsystem.repository.SensorReading;
+import com.example.automaticirrigationsystem.repository.SensorReadingRepository;
+import com.example.automaticirrigationsystem.service.ReadingRollupService;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Integration tests for the roll-up of the sensor readings and the
+ * {@code GET /api/plots/:id/readings} range queries.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class PlotReadingsIT {
+
+  private static final String ENTITY_API_URL = "/api/plots/{id}/readings";
+  private static final long DAY = Duration.ofDays(1).toMillis();
+  private static final long READING_INTERVAL = Duration.ofMinutes(10).toMillis();
+
+  @Autowired
+  private MockMvc restReadingsMockMvc;
+
+  @Autowired
+  private SensorReadingRepository sensorReadingRepository;
+
+  @Autowired
+  private ReadingRollupService readingRollupService;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  private long now;
+  private long start;
+  private Long plotId;
+
+  @BeforeEach
+  public void initTest() {
+    now = System.currentTimeMillis();
+    // two full days of readings, ending the day before today
+    start = Resolution.DAY.bucketStart(now) - 3 * DAY;
+    plotId = jdbcTemplate.queryForObject("select id from plot where code = 'plot-1'", Long.class);
+  }
+
+  @Test
+  @Transactional
+  @DisplayName("readings are rolled up and served at the finest resolution within the limit")
+  void getPlotReadings() throws Exception {
+    appendReadings();
+    jdbcTemplate.update("update sensor_reading_watermark set watermark = 0");
+
+    readingRollupService.rollUp(now);
+
+    restReadingsMockMvc
+        .perform(get(ENTITY_API_URL, plotId)
+            .param("from", String.valueOf(start))
+            .param("to", String.valueOf(start + 2 * DAY)))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.resolution").value("HOUR"))
+        .andExpect(jsonPath("$.points", hasSize(48)))
+        .andExpect(jsonPath("$.points[0].time").value(start))
+        .andExpect(jsonPath("$.points[0].count").value(6))
+        .andExpect(jsonPath("$.points[0].min").value(0D))
+        .andExpect(jsonPath("$.points[0].max").value(50D))
+        .andExpect(jsonPath("$.points[0].average").value(25D));
+
+    restReadingsMockMvc
+        .perform(get(ENTITY_API_URL, plotId)
+            .param("from", String.valueOf(now - 365 * DAY))
+            .param("to", String.valueOf(now)))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.resolution").value("DAY"))
+        .andExpect(jsonPath("$.points", hasSize(3)))
+        .andExpect(jsonPath("$.points[0].time").value(start - 7 * DAY))
+        .andExpect(jsonPath("$.points[0].count").value(1))
+        .andExpect(jsonPath("$.points[1].count").value(144))
+        .andExpect(jsonPath("$.points[2].count").value(144));
+
+    restReadingsMockMvc
+        .perform(get(ENTITY_API_URL, plotId)
+            .param("from", String.valueOf(start + DAY))
+            .param("to", String.valueOf(start + DAY + READING_INTERVAL * 3))
+            .param("resolution", "MINUTE"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.points", hasSize(3)))
+        .andExpect(jsonPath("$.points[1].average").value(10D));
+
+    // the raw readings past their retention are deleted once rolled up
+    assertThat(jdbcTemplate.queryForObject(
+        "select count(*) from sensor_reading where read_at < ?", Long.class, start))
+        .isZero();
+    assertThat(jdbcTemplate.queryForObject(
+        "select count(*) from sensor_reading where read_at >= ?", Long.class, start))
+        .isEqualTo(288L);
+  }
+
+  @Test
+  @Transactional
+  @DisplayName("readings pushed behind the watermarks are merged into the rolled-up buckets")
+  void getPlotReadings_lateReading() throws Exception {
+    appendReadings();
+    jdbcTemplate.update("update sensor_reading_watermark set watermark = 0");
+    readingRollupService.rollUp(now);
+    String sensorCode = jdbcTemplate.queryForObject(
+        "select s.code from sensor s join plot p on p.sensor_id = s.id where p.id = ?",
+        String.class, plotId);
+
+    restReadingsMockMvc
+        .perform(post("/api/telemetry").contentType(MediaType.APPLICATION_JSON)
+            .content("[[\"" + sensorCode + "\"," + (start + 5 * 60_000) + ",100,\"UP\"]]"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.accepted").value(1));
+
+    restReadingsMockMvc
+        .perform(get(ENTITY_API_URL, plotId)
+            .param("from", String.valueOf(start))
+            .param("to", String.valueOf(start + 2 * DAY)))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.points[0].count").value(7))
+        .andExpect(jsonPath("$.points[0].max").value(100D))
+        .andExpect(jsonPath("$.points[1].count").value(6));
+
+    restReadingsMockMvc
+        .perform(get(ENTITY_API_URL, plotId)
+            .param("from", String.valueOf(start))
+            .param("to", String.valueOf(start + 2 * DAY))
+            .param("resolution", "DAY"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.points[0].count").value(145))
+        .andExpect(jsonPath("$.points[1].count").value(144));
+  }
+
+  @Test
+  @Transactional
+  @DisplayName("reject the ranges that would return too many points")
+  void getPlotReadings_tooManyPoints() throws Exception {
+    restReadingsMockMvc
+        .perform(get(ENTITY_API_URL, plotId)
+            .param("from", String.valueOf(now - 365 * DAY))
+            .param("to", String.valueOf(now))
+            .param("resolution", "MINUTE"))
+        .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  @Transactional
+  @DisplayName("get the readings of a plot that doesn't exist")
+  void getPlotReadings_notFound() throws Exception {
+    restReadingsMockMvc
+        .perform(get(ENTITY_API_URL, Long.MAX_VALUE)
+            .param("from", String.valueOf(start))
+            .param("to", String.valueOf(now)))
+        .andExpect(status().isNotFound());
+  }
+
+  private void appendReadings() {
+    Long sensorId = jdbcTemplate.queryForObject(
+        "select sensor_id from plot where id = ?", Long.class, plotId);
+    List<SensorReading> readings = new ArrayList<>();
+    for (long readAt = start; readAt < start + 2 * DAY; readAt += READING_INTERVAL) {
+      // moisture cycles through 0, 10, ..., 50 within every hour
+      double moisture = (readAt - start) / READING_INTERVAL % 6 * 10;
+      readings.add(new SensorReading(sensorId, readAt, moisture, null));
+    }
+    readings.add(new SensorReading(sensorId, start - 7 * DAY, 99D, null));
+    sensorReadingRepository.appendAll(readings);
+  }
+}
@@ -1,13 +1,18 @@
 package com.example.automaticirrigationsystem.web.rest;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasItem;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.example.automaticirrigationsystem.domain.Plot;
@@ -18,6 +23,8 @@ import com.example.automaticirrigationsystem.dto.PlotConfigDTO;
 import com.example.automaticirrigationsystem.dto.PlotDTO;
 import com.example.automaticirrigationsystem.repository.PlotRepository;
 import com.example.automaticirrigationsystem.service.mapper.PlotMapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicLong;
@@ -28,8 +35,10 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.transaction.annotation.Transactional;
 
 /**
@@ -67,6 +76,9 @@ class PlotResourceControllerIT {
     @Autowired
     private MockMvc restPlotMockMvc;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
     private Plot plot;
 
 
@@ -160,6 +172,156 @@ class PlotResourceControllerIT {
             .andExpect(jsonPath("$.[*].plotWidth").value(hasItem(DEFAULT_WIDTH)));
     }
 
+    @Test
+    @Transactional
+    void importPlotsFromJson() throws Exception {
+        String plots = "["
+            + "{\"plotCode\":\"imported-plot-1\",\"plotLength\":10,\"plotWidth\":5,"
+            + "\"cropType\":\"RICE\",\"waterAmount\":40,\"slotsCount\":3,"
+            + "\"sensorCode\":\"imported-sensor-1\",\"sensorStatus\":\"UP\"},"
+            + "{\"plotCode\":\"imported-plot-2\",\"plotLength\":10},"
+            + "{\"plotCode\":\"plot-1\",\"plotLength\":10,\"plotWidth\":5}"
+            + "]";
+
+        restPlotMockMvc
+            .perform(post(ENTITY_API_URL + "/import")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(plots))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.imported").value(1))
+            .andExpect(jsonPath("$.rejected").value(2))
+            .andExpect(jsonPath("$.errors[0].row").value(2))
+            .andExpect(jsonPath("$.errors[0].message").value(containsString("plotWidth")))
+            .andExpect(jsonPath("$.errors[1].row").value(3))
+            .andExpect(jsonPath("$.errors[1].message").value("plotCode plot-1 already exists"));
+
+        Plot imported = plotRepository.findAll().stream()
+            .filter(p -> "imported-plot-1".equals(p.getPlotCode()))
+            .findFirst()
+            .orElseThrow();
+        assertThat(imported.getCropType()).isEqualTo(CropType.RICE);
+        assertThat(imported.getWaterAmount()).isEqualTo(40);
+        assertThat(imported.getIsIrrigated()).isFalse();
+        assertThat(imported.getPlotSensor().getSensorCode()).isEqualTo("imported-sensor-1");
+        assertThat(imported.getPlotSensor().getStatus()).isEqualTo(Status.UP);
+        assertThat(imported.getPlotTimerSlots()).hasSize(3)
+            .allSatisfy(slot -> assertThat(slot.getStatus()).isEqualTo(Status.DOWN));
+
+        // the ids handed out over JDBC don't collide with the ones of the entities
+        plotRepository.saveAndFlush(plot);
+        assertThat(plot.getId()).isNotEqualTo(imported.getId());
+    }
+
+    @Test
+    @Transactional
+    void importPlotsFromJsonSkipsNonObjects() throws Exception {
+        String plots = "["
+            + "42,"
+            + "{\"plotCode\":\"imported-plot-1\",\"plotLength\":10,\"plotWidth\":5},"
+            + "[{\"plotCode\":\"imported-plot-2\"}],"
+            + "\"imported-plot-3\","
+            + "{\"plotCode\":\"imported-plot-4\",\"plotLength\":10,\"plotWidth\":5}"
+            + "]";
+
+        restPlotMockMvc
+            .perform(post(ENTITY_API_URL + "/import")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(plots))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.imported").value(2))
+            .andExpect(jsonPath("$.rejected").value(3))
+            .andExpect(jsonPath("$.errors[*].row").value(contains(1, 3, 4)))
+            .andExpect(jsonPath("$.errors[0].message")
+                .value("expected a plot object but found '42'"));
+
+        assertThat(plotRepository.findAll())
+            .extracting(Plot::getPlotCode)
+            .filteredOn(code -> code.startsWith("imported-plot"))
+            .containsExactlyInAnyOrder("imported-plot-1", "imported-plot-4");
+    }
+
+    @Test
+    @Transactional
+    void importPlotsFromCsv() throws Exception {
+        String plots = "plotCode,plotLength,plotWidth,slotsCount,sensorCode,sensorStatus\n"
+            + "imported-plot-1,10,5,2,imported-sensor-1,DOWN\n"
+            + "imported-plot-2,10,5\n"
+            + "imported-plot-3,10,5,2,imported-sensor-3,MAYBE\n"
+            + "imported-plot-1,20,5,2,,\n";
+
+        restPlotMockMvc
+            .perform(post(ENTITY_API_URL + "/import")
+                .contentType("text/csv")
+                .content(plots))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.imported").value(1))
+            .andExpect(jsonPath("$.rejected").value(3))
+            .andExpect(jsonPath("$.errors[*].row").value(contains(2, 3, 4)))
+            .andExpect(jsonPath("$.errors[2].message")
+                .value("plotCode imported-plot-1 already exists"));
+
+        assertThat(plotRepository.findAll())
+            .filteredOn(p -> p.getPlotCode().startsWith("imported-plot"))
+            .singleElement()
+            .satisfies(p -> assertThat(p.getPlotTimerSlots()).hasSize(2));
+    }
+
+    @Test
+    @Transactional
+    void getAllPlotsWithCursor() throws Exception {
+        // Initialize the database
+        plotRepository.saveAndFlush(plot);
+        Plot nextPlot = new Plot();
+        nextPlot.setPlotCode(UPDATED_CODE);
+        nextPlot.setPlotLength(UPDATED_LENGTH);
+        nextPlot.setPlotWidth(UPDATED_WIDTH);
+        plotRepository.saveAndFlush(nextPlot);
+
+        // Get the first plot after the cursor, the next link points after it
+        restPlotMockMvc
+            .perform(get(ENTITY_API_URL + "?after={after}&limit=1", plot.getId() - 1))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$[0].id").value(plot.getId().intValue()))
+            .andExpect(header().doesNotExist("X-Total-Count"))
+            .andExpect(header().string(HttpHeaders.LINK,
+                containsString("after=" + plot.getId() + "&limit=1>; rel=\"next\"")));
+
+        // The last plot has no next link, the total count is only given on demand
+        restPlotMockMvc
+            .perform(get(ENTITY_API_URL + "?after={after}&limit=1&count=true", plot.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].id").value(nextPlot.getId().intValue()))
+            .andExpect(header().exists("X-Total-Count"))
+            .andExpect(header().doesNotExist(HttpHeaders.LINK));
+    }
+
+    @Test
+    void streamAllPlots() throws Exception {
+        // The plots are written from another thread, only the committed seed plots are visible
+        MvcResult result = restPlotMockMvc
+            .perform(get(ENTITY_API_URL + "/stream"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        String body = restPlotMockMvc
+            .perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+            .andReturn().getResponse().getContentAsString();
+
+        List<PlotDTO> plots = new ArrayList<>();
+        for (String line : body.split("\n")) {
+            plots.add(objectMapper.readValue(line, PlotDTO.class));
+        }
+        assertThat(plots).extracting(PlotDTO::getPlotCode)
+            .contains("plot-1", "plot-2", "plot-3");
+        assertThat(plots).extracting(PlotDTO::getId).isSorted();
+        assertThat(plots.get(0).getPlotSensor()).isNotNull();
+        assertThat(plots.get(0).getPlotTimerSlots()).isNotEmpty();
+    }
+
     @Test
     @Transactional
     void getPlot() throws Exception {
@@ -215,6 +377,75 @@ class PlotResourceControllerIT {
         assertThat(testPlot.getPlotTimerSlots()).hasSize(SLOTS_COUNT);
     }
 
+    @Test
+    @Transactional
+    void reconfigurePlotSlots() throws Exception {
+        // Initialize the database
+        plotRepository.saveAndFlush(plot);
+
+        configurePlotSlots(SLOTS_COUNT);
+        List<Long> slotIds = slotIdsOf(plot.getId());
+        assertThat(slotIds).hasSize(SLOTS_COUNT);
+
+        // Fewer slots keep the first ones
+        configurePlotSlots(4);
+        assertThat(slotIdsOf(plot.getId())).containsExactlyElementsOf(slotIds.subList(0, 4));
+
+        // More slots add new ones after them, all DOWN
+        configurePlotSlots(6);
+        List<Long> grownSlotIds = slotIdsOf(plot.getId());
+        assertThat(grownSlotIds).hasSize(6).startsWith(slotIds.subList(0, 4).toArray(Long[]::new));
+        assertThat(plotRepository.findById(plot.getId()).orElseThrow().getPlotTimerSlots())
+            .allSatisfy(slot -> assertThat(slot.getStatus()).isEqualTo(Status.DOWN));
+    }
+
+    @Test
+    @Transactional
+    void checkSlotsCountIsValid() throws Exception {
+        // Initialize the database
+        plotRepository.saveAndFlush(plot);
+        configurePlotSlots(SLOTS_COUNT);
+
+        for (int slotsCount : new int[]{-1, Plot.MAX_SLOTS + 1}) {
+            PlotConfigDTO plotConfigDTO = new PlotConfigDTO();
+            plotConfigDTO.setCropType(CROP_TYPE);
+            plotConfigDTO.setSlotsCount(slotsCount);
+            plotConfigDTO.setWaterAmount(WATER_AMOUNT);
+
+            restPlotMockMvc
+                .perform(
+                    put(ENTITY_API_CONFIG_URL, plot.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(TestUtil.convertObjectToJsonBytes(plotConfigDTO))
+                )
+                .andExpect(status().isBadRequest());
+        }
+        assertThat(slotIdsOf(plot.getId())).hasSize(SLOTS_COUNT);
+    }
+
+    private void configurePlotSlots(int slotsCount) throws Exception {
+        PlotConfigDTO plotConfigDTO = new PlotConfigDTO();
+        plotConfigDTO.setCropType(CROP_TYPE);
+        plotConfigDTO.setSlotsCount(slotsCount);
+        plotConfigDTO.setWaterAmount(WATER_AMOUNT);
+
+        restPlotMockMvc
+            .perform(
+                put(ENTITY_API_CONFIG_URL, plot.getId())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(plotConfigDTO))
+            )
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.plotTimerSlots.length()").value(slotsCount));
+    }
+
+    private List<Long> slotIdsOf(Long plotId) {
+        return em.createQuery("select s.id from Slot s where s.plot.id = :plotId order by s.id",
+                Long.class)
+            .setParameter("plotId", plotId)
+            .getResultList();
+    }
+
 
     @Test
     @Transactional
@@ -1,12 +1,14 @@
 package com.example.automaticirrigationsystem.web.rest;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasItem;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -16,6 +18,7 @@ import com.example.automaticirrigationsystem.domain.enumeration.Status;
 import com.example.automaticirrigationsystem.dto.SensorDTO;
 import com.example.automaticirrigationsystem.repository.PlotRepository;
 import com.example.automaticirrigationsystem.repository.SensorRepository;
+import com.example.automaticirrigationsystem.service.SensorStatusBuffer;
 import com.example.automaticirrigationsystem.service.mapper.SensorMapper;
 import java.util.List;
 import java.util.Random;
@@ -28,7 +31,10 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -67,6 +73,9 @@ class SensorResourceControllerIT {
   @Autowired
   private MockMvc restSensorMockMvc;
 
+  @Autowired
+  private SensorStatusBuffer sensorStatusBuffer;
+
   private Sensor sensor;
 
   @AfterAll
@@ -124,6 +133,36 @@ class SensorResourceControllerIT {
         .andExpect(jsonPath("$.[*].status").value(hasItem(DEFAULT_STATUS.toString())));
   }
 
+  @Test
+  @Transactional
+  void getAllSensorsWithCursor() throws Exception {
+    // Initialize the database
+    sensorRepository.saveAndFlush(sensor);
+    Sensor nextSensor = new Sensor();
+    nextSensor.setSensorCode(UPDATED_CODE);
+    nextSensor.setStatus(UPDATED_STATUS);
+    sensorRepository.saveAndFlush(nextSensor);
+
+    // Get the first sensor after the cursor, the next link points after it
+    restSensorMockMvc
+        .perform(get(ENTITY_API_URL + "?after={after}&limit=1", sensor.getId() - 1))
+        .andExpect(status().isOk())
+        .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+        .andExpect(jsonPath("$.length()").value(1))
+        .andExpect(jsonPath("$[0].id").value(sensor.getId().intValue()))
+        .andExpect(header().doesNotExist("X-Total-Count"))
+        .andExpect(header().string(HttpHeaders.LINK,
+            containsString("after=" + sensor.getId() + "&limit=1>; rel=\"next\"")));
+
+    // The last sensor has no next link, the total count is only given on demand
+    restSensorMockMvc
+        .perform(get(ENTITY_API_URL + "?after={after}&limit=1&count=true", sensor.getId()))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$[0].id").value(nextSensor.getId().intValue()))
+        .andExpect(header().exists("X-Total-Count"))
+        .andExpect(header().doesNotExist(HttpHeaders.LINK));
+  }
+
   @Test
   @Transactional
   void getSensor() throws Exception {
@@ -204,6 +243,30 @@ class SensorResourceControllerIT {
   }
 
 
+  @Test
+  @Transactional
+  void updateNonExistingSensorStatusBuffered() throws Exception {
+    Object buffer = AopTestUtils.getUltimateTargetObject(sensorStatusBuffer);
+    ReflectionTestUtils.setField(buffer, "enabled", true);
+    try {
+      SensorDTO sensorDTO = new SensorDTO();
+      sensorDTO.setStatus(UPDATED_STATUS);
+      Long sensorId = count.incrementAndGet();
+
+      restSensorMockMvc
+          .perform(
+              put(ENTITY_API_URL_ID, sensorId)
+                  .contentType(MediaType.APPLICATION_JSON)
+                  .content(TestUtil.convertObjectToJsonBytes(sensorDTO))
+          )
+          .andExpect(status().isNotFound());
+
+      assertThat(sensorStatusBuffer.getPendingStatus(sensorId)).isEmpty();
+    } finally {
+      ReflectionTestUtils.setField(buffer, "enabled", false);
+    }
+  }
+
   @Test
   @Transactional
   void updateWithMissingIdPathParamSensor() throws Exception {
@@ -0,0 +1,193 @@
+package com.example.automaticirrigationsystem.web.rest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.example.automaticirrigationsystem.domain.Plot;
+import com.example.automaticirrigationsystem.domain.Sensor;
+import com.example.automaticirrigationsystem.domain.enumeration.Status;
+import com.example.automaticirrigationsystem.repository.PlotRepository;
+import com.example.automaticirrigationsystem.service.PlotService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Integration tests for the {@link TelemetryController} REST controller.
+ */
+@Slf4j
+@SpringBootTest
+@AutoConfigureMockMvc
+class TelemetryControllerIT {
+
+  private static final String ENTITY_API_URL = "/api/telemetry";
+  private static final long READ_AT = 1_700_000_000_000L;
+  private static final int READINGS_COUNT = 20_000;
+
+  @Autowired
+  private MockMvc restTelemetryMockMvc;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  private PlotRepository plotRepository;
+
+  @Autowired
+  private PlotService plotService;
+
+  @Autowired
+  private TransactionTemplate transactionTemplate;
+
+  @Test
+  @Transactional
+  @DisplayName("readings of known sensors are appended, the others are rejected")
+  void pushReadings() throws Exception {
+    String readings = "["
+        + "[\"sensor-1\"," + READ_AT + ",41.5,\"UP\"],"
+        + "[\"sensor-1\"," + (READ_AT + 1000) + ",40,\"DOWN\"],"
+        + "[\"sensor-2\"," + READ_AT + ",12.25,null],"
+        + "[\"sensor-unknown\"," + READ_AT + ",12.25,\"UP\"],"
+        + "[\"sensor-2\",\"yesterday\",12.25,\"UP\"],"
+        + "{\"sensorCode\":\"sensor-2\"},"
+        + "[\"sensor-2\"," + READ_AT + ",12.25,\"MAYBE\"]"
+        + "]";
+
+    restTelemetryMockMvc
+        .perform(post(ENTITY_API_URL).contentType(MediaType.APPLICATION_JSON).content(readings))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.accepted").value(3))
+        .andExpect(jsonPath("$.rejected").value(4));
+
+    assertThat(jdbcTemplate.queryForList(
+        "select moisture from sensor_reading where sensor_id = 1 order by read_at", Double.class))
+        .containsExactly(41.5, 40D);
+    assertThat(jdbcTemplate.queryForObject(
+        "select count(*) from sensor_reading where sensor_id = 2 and status is null", Long.class))
+        .isEqualTo(1L);
+  }
+
+  @Test
+  @Transactional
+  @DisplayName("a batch larger than a chunk is appended chunk by chunk")
+  void pushReadings_manyChunks() throws Exception {
+    StringBuilder readings = new StringBuilder("[");
+    for (int i = 0; i < READINGS_COUNT; i++) {
+      readings.append(i == 0 ? "" : ",")
+          .append("[\"sensor-").append(i % 3 + 1).append("\",").append(READ_AT + i)
+          .append(",").append(i % 100).append(",\"UP\"]");
+    }
+    readings.append("]");
+
+    long start = System.nanoTime();
+    restTelemetryMockMvc
+        .perform(post(ENTITY_API_URL).contentType(MediaType.APPLICATION_JSON)
+            .content(readings.toString()))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.accepted").value(READINGS_COUNT))
+        .andExpect(jsonPath("$.rejected").value(0));
+    log.info("{} readings pushed in {} ms", READINGS_COUNT, (System.nanoTime() - start) / 1_000_000);
+
+    assertThat(jdbcTemplate.queryForObject(
+        "select count(*) from sensor_reading where read_at >= ?", Long.class, READ_AT))
+        .isEqualTo(READINGS_COUNT);
+  }
+
+  @Test
+  @DisplayName("readings of a deleted sensor are rejected, a sensor recreated gets them")
+  void pushReadings_sensorDeleted() throws Exception {
+    String sensorCode = "telemetry-sensor-" + System.nanoTime();
+    String reading = "[[\"" + sensorCode + "\"," + READ_AT + ",10,\"UP\"]]";
+    Long deletedPlotId = createPlot(sensorCode);
+    Long deletedSensorId = sensorIdOf(deletedPlotId);
+    pushReading(reading, 1);
+
+    plotService.delete(deletedPlotId);
+    pushReading(reading, 0);
+
+    Long plotId = createPlot(sensorCode);
+    Long sensorId = sensorIdOf(plotId);
+    try {
+      pushReading(reading, 1);
+      assertThat(jdbcTemplate.queryForObject(
+          "select count(*) from sensor_reading where sensor_id = ?", Long.class, sensorId))
+          .isEqualTo(1L);
+    } finally {
+      plotService.delete(plotId);
+      jdbcTemplate.update(
+          "delete from sensor_reading where sensor_id in (?, ?)", deletedSensorId, sensorId);
+    }
+  }
+
+  @Test
+  @Transactional
+  @DisplayName("readings before a malformed one are appended once, the batch is pushed again as is")
+  void pushReadings_malformedThenPushedAgain() throws Exception {
+    String readings = "[[\"sensor-3\"," + READ_AT + ",10,\"UP\"],"
+        + "[\"sensor-3\"," + (READ_AT + 1000) + ",20,\"UP\"],";
+
+    restTelemetryMockMvc
+        .perform(post(ENTITY_API_URL).contentType(MediaType.APPLICATION_JSON)
+            .content(readings + "[\"sensor-3\","))
+        .andExpect(status().isBadRequest())
+        .andExpect(content().string(containsString("after 2 accepted")));
+    restTelemetryMockMvc
+        .perform(post(ENTITY_API_URL).contentType(MediaType.APPLICATION_JSON)
+            .content(readings + "[\"sensor-3\"," + (READ_AT + 2000) + ",30,\"UP\"]]"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.accepted").value(3));
+
+    assertThat(jdbcTemplate.queryForList(
+        "select moisture from sensor_reading where sensor_id = 3 order by read_at", Double.class))
+        .containsExactly(10D, 20D, 30D);
+  }
+
+  @Test
+  @Transactional
+  @DisplayName("reject readings that are not a JSON array")
+  void pushReadings_notAnArray() throws Exception {
+    restTelemetryMockMvc
+        .perform(post(ENTITY_API_URL).contentType(MediaType.APPLICATION_JSON)
+            .content("{\"sensorCode\":\"sensor-1\"}"))
+        .andExpect(status().isBadRequest());
+  }
+
+  private void pushReading(String reading, int accepted) throws Exception {
+    restTelemetryMockMvc
+        .perform(post(ENTITY_API_URL).contentType(MediaType.APPLICATION_JSON).content(reading))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.accepted").value(accepted));
+  }
+
+  private Long sensorIdOf(Long plotId) {
+    return plotRepository.findById(plotId).orElseThrow().getPlotSensor().getId();
+  }
+
+  private Long createPlot(String sensorCode) {
+    Plot plot = new Plot();
+    plot.setPlotCode("telemetry-plot-" + System.nanoTime());
+    plot.setPlotLength(10D);
+    plot.setPlotWidth(10D);
+    plot.setIsIrrigated(false);
+    plot.setHasAlert(false);
+    plot.setSensorCallCount(0);
+    plot.setLastSensorCallTime("");
+    plot.setStartIrrigationTime("");
+    plot.setLastIrrigationTime("");
+    plot.setWaterAmount(0);
+    plot.setPlotSensor(new Sensor(null, sensorCode, Status.UP, null));
+    return transactionTemplate.execute(status -> plotRepository.save(plot).getId());
+  }
+}